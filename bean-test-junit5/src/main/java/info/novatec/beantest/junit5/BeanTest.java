@@ -0,0 +1,44 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.junit5;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/**
+ * Marks a JUnit Jupiter test class as bean test.
+ * <p>
+ * The fields of the test instance annotated with {@link javax.inject.Inject} are injected before each test. Since all
+ * bean tests share the CDI container of the JVM, they hold the lock {@link BeanTestJupiterExtension#CONTAINER_LOCK}: when
+ * Jupiter's parallel execution is enabled, bean tests run one after the other while other tests still run in parallel.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Documented
+@Inherited
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(BeanTestJupiterExtension.class)
+@ResourceLock(BeanTestJupiterExtension.CONTAINER_LOCK)
+public @interface BeanTest {
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.junit5;
+
+import info.novatec.beantest.api.ContainerConfiguration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.ClassDescriptor;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.ClassOrdererContext;
+
+/**
+ * Orders test classes so that classes with the same {@link ContainerConfiguration} are executed one after the other.
+ * <p>
+ * Enable it in <code>junit-platform.properties</code>:
+ * <pre>
+ * junit.jupiter.testclass.order.default=info.novatec.beantest.junit5.BeanTestClassOrderer
+ * </pre>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class BeanTestClassOrderer implements ClassOrderer {
+
+    @Override
+    public void orderClasses(ClassOrdererContext context) {
+        final Map<ContainerConfiguration, Integer> groupIndexes = new HashMap<ContainerConfiguration, Integer>();
+        for (ClassDescriptor descriptor : context.getClassDescriptors()) {
+            ContainerConfiguration configuration = getConfiguration(descriptor);
+            if (!groupIndexes.containsKey(configuration)) {
+                groupIndexes.put(configuration, groupIndexes.size());
+            }
+        }
+        // The sort is stable, so the classes of a group keep their relative order.
+        context.getClassDescriptors().sort(Comparator.comparingInt(
+                (ClassDescriptor descriptor) -> groupIndexes.get(getConfiguration(descriptor))));
+    }
+
+    private static ContainerConfiguration getConfiguration(ClassDescriptor descriptor) {
+        return ContainerConfiguration.of(descriptor.getTestClass());
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.junit5;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.api.ContainerConfiguration;
+import info.novatec.beantest.impact.TestImpactAnalysis;
+import org.apache.deltaspike.core.api.provider.BeanProvider;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ConditionEvaluationResult;
+import org.junit.jupiter.api.extension.ExecutionCondition;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+
+/**
+ * JUnit Jupiter extension for bean tests.
+ * <p>
+ * The booted CDI container is kept in the root {@link ExtensionContext.Store}, so it is shared by all test classes with
+ * the same {@link ContainerConfiguration} and shut down when the test plan has been executed. Between tests only the
+ * contexts of the container are restarted. Use {@link BeanTestClassOrderer} to run test classes with the same
+ * configuration one after the other.
+ * <p>
+ * If the {@link TestImpactAnalysis} is enabled, the graphs of the test classes are recorded and the test classes which
+ * are not affected by a change are disabled.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ * @see BeanTest
+ */
+public class BeanTestJupiterExtension implements ExecutionCondition, BeforeAllCallback, AfterAllCallback, BeforeEachCallback,
+        AfterEachCallback {
+
+    /**
+     * Key of the resource lock held by every bean test.
+     */
+    public static final String CONTAINER_LOCK = "info.novatec.beantest.container";
+
+    private static final Namespace NAMESPACE = Namespace.create(BeanTestJupiterExtension.class);
+
+    @Override
+    public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+        if (context.getTestMethod().isPresent() || !context.getTestClass().isPresent()
+                || TestImpactAnalysis.isAffected(context.getTestClass().get())) {
+            return ConditionEvaluationResult.enabled(null);
+        }
+        return ConditionEvaluationResult.disabled(context.getTestClass().get().getName() + " is not affected by any change");
+    }
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        TestImpactAnalysis.testClassStarted(context.getRequiredTestClass());
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        if (context.getExecutionException().isPresent()) {
+            TestImpactAnalysis.testFailed();
+        }
+        TestImpactAnalysis.testClassFinished();
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        BeanProviderHelper beanProviderHelper = getContainerSession(context).getBeanProviderHelper();
+        beanProviderHelper.configure(ContainerConfiguration.of(context.getRequiredTestClass()));
+        // Boots the container or restarts its contexts on the current thread.
+        beanProviderHelper.getBeanManager();
+        BeanProvider.injectFields(context.getRequiredTestInstance());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        if (context.getExecutionException().isPresent()) {
+            TestImpactAnalysis.testFailed();
+        }
+        getContainerSession(context).getBeanProviderHelper().release();
+    }
+
+    private static ContainerSession getContainerSession(ExtensionContext context) {
+        return context.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(ContainerSession.class);
+    }
+
+    /**
+     * Enables container reuse for the whole test plan and shuts the container down once the root store is closed.
+     */
+    static class ContainerSession implements ExtensionContext.Store.CloseableResource {
+
+        private final BeanProviderHelper beanProviderHelper;
+
+        ContainerSession() {
+            beanProviderHelper = BeanProviderHelper.getInstance();
+            beanProviderHelper.setContainerReuse(true);
+        }
+
+        BeanProviderHelper getBeanProviderHelper() {
+            return beanProviderHelper;
+        }
+
+        @Override
+        public void close() {
+            beanProviderHelper.setContainerReuse(false);
+            beanProviderHelper.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.junit5.demo;
+
+import java.util.List;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Demo EJB Service.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MyJupiterEJBService {
+
+    @PersistenceContext
+    EntityManager em;
+
+    public void save(String name) {
+        MyJupiterEntity entity = new MyJupiterEntity();
+        entity.setName(name);
+        em.persist(entity);
+    }
+
+    public List<MyJupiterEntity> getAllEntities() {
+        return em.createQuery("Select e from MyJupiterEntity as e", MyJupiterEntity.class).getResultList();
+    }
+
+}
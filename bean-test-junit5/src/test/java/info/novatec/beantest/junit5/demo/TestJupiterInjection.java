@@ -0,0 +1,53 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.junit5.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import info.novatec.beantest.junit5.BeanTest;
+import javax.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test verifies that EJBs are injected into Jupiter test instances and that every test gets a fresh database,
+ * although the container is booted only once.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@BeanTest
+public class TestJupiterInjection {
+
+    @Inject
+    MyJupiterEJBService service;
+
+    @Test
+    public void shouldInjectEJB() {
+        assertNotNull(service);
+    }
+
+    @Test
+    public void shouldPersistEntity() {
+        service.save("Hello");
+        assertEquals(1, service.getAllEntities().size());
+    }
+
+    @Test
+    public void shouldStartWithEmptyDatabase() {
+        service.save("World");
+        assertEquals(1, service.getAllEntities().size());
+    }
+
+}
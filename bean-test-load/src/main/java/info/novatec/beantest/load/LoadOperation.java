@@ -0,0 +1,38 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.load;
+
+/**
+ * Operation executed repeatedly by a {@link LoadTest}.
+ *
+ * @param <T>
+ *            the type of the bean under load.
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public interface LoadOperation<T> {
+
+    /**
+     * Executes the operation once. An exception counts as error of the load test.
+     *
+     * @param bean
+     *            the bean reference of the executing thread.
+     * @throws Exception
+     *             if the operation fails.
+     */
+    void execute(T bean) throws Exception;
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.load;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.SharedEntityManagerFactory;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.enterprise.context.RequestScoped;
+import javax.persistence.EntityManagerFactory;
+import org.HdrHistogram.Histogram;
+import org.apache.deltaspike.cdise.api.ContextControl;
+import org.apache.deltaspike.core.api.provider.BeanProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives a business method of a bean with several concurrent threads and measures throughput and latency.
+ * <p>
+ * Every thread starts its own request context, so it gets its own bean instances and entity manager and every call
+ * runs through the {@link info.novatec.beantest.transactions.TransactionalInterceptor} in its own transaction. All
+ * threads share the entity manager factory (and thus the database) of the calling test.
+ * 
+ * <pre>
+ * LoadTestResult result = LoadTest.of(MyEJBService.class).threads(8).duration(10, TimeUnit.SECONDS)
+ *         .run(new LoadOperation&lt;MyEJBService&gt;() {
+ *             public void execute(MyEJBService service) {
+ *                 service.callOtherServiceAndPersistAnEntity();
+ *             }
+ *         });
+ * result.assertNoErrors().assertLatencyBelow(99, 20, TimeUnit.MILLISECONDS);
+ * </pre>
+ * 
+ * Each thread executes the next operation as soon as the previous one has finished, so the latencies don't include
+ * any waiting time of requests which would have arrived in the meantime at a fixed rate.
+ *
+ * @param <T>
+ *            the type of the bean under load.
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class LoadTest<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+    private final Class<T> beanClass;
+
+    private final Annotation[] qualifiers;
+
+    private int threads = 1;
+
+    private boolean virtualThreads;
+
+    private long durationNanos;
+
+    private long operations;
+
+    private long warmupNanos;
+
+    private LoadTest(Class<T> beanClass, Annotation... qualifiers) {
+        this.beanClass = beanClass;
+        this.qualifiers = qualifiers;
+    }
+
+    /**
+     * Creates a load test for the given bean.
+     *
+     * @param <T>
+     *            the type of the bean.
+     * @param beanClass
+     *            the class of the bean under load.
+     * @param qualifiers
+     *            qualifiers for narrowing the bean instance. This attribute is not required.
+     * @return the load test.
+     */
+    public static <T> LoadTest<T> of(Class<T> beanClass, Annotation... qualifiers) {
+        return new LoadTest<T>(beanClass, qualifiers);
+    }
+
+    /**
+     * Sets the number of concurrent threads (default 1).
+     *
+     * @param threads
+     *            the number of threads.
+     * @return this load test.
+     */
+    public LoadTest<T> threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Uses virtual threads instead of platform threads. Requires JDK 21 or later.
+     *
+     * @return this load test.
+     */
+    public LoadTest<T> virtualThreads() {
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * Runs the load test for the given time (after the warm-up).
+     *
+     * @param duration
+     *            the duration.
+     * @param unit
+     *            the unit of the duration.
+     * @return this load test.
+     */
+    public LoadTest<T> duration(long duration, TimeUnit unit) {
+        this.durationNanos = unit.toNanos(duration);
+        this.operations = 0;
+        return this;
+    }
+
+    /**
+     * Runs the load test until the given number of operations have been executed by all threads together (after the
+     * warm-up).
+     *
+     * @param operations
+     *            the number of operations.
+     * @return this load test.
+     */
+    public LoadTest<T> operations(long operations) {
+        this.operations = operations;
+        this.durationNanos = 0;
+        return this;
+    }
+
+    /**
+     * Executes operations for the given time before the measurement starts, for example to let the JIT compile the
+     * code under load.
+     *
+     * @param warmup
+     *            the duration of the warm-up.
+     * @param unit
+     *            the unit of the duration.
+     * @return this load test.
+     */
+    public LoadTest<T> warmup(long warmup, TimeUnit unit) {
+        this.warmupNanos = unit.toNanos(warmup);
+        return this;
+    }
+
+    /**
+     * Runs the load test and waits until all threads have finished.
+     *
+     * @param operation
+     *            the operation executed by the threads.
+     * @return the result of the load test.
+     */
+    public LoadTestResult run(LoadOperation<? super T> operation) {
+        if (durationNanos <= 0 && operations <= 0) {
+            throw new IllegalStateException("Either a duration or a number of operations is required");
+        }
+        EntityManagerFactory emf = BeanProviderHelper.getInstance().getBean(EntityManagerProducer.class).getEntityManagerFactory();
+        Execution execution = new Execution(operation, emf);
+        ThreadFactory threadFactory = virtualThreads ? virtualThreadFactory() : null;
+        List<Thread> workers = new ArrayList<Thread>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = threadFactory == null ? new Thread(execution, "bean-test-load-" + i) : threadFactory.newThread(execution);
+            workers.add(worker);
+            worker.start();
+        }
+        return execution.await(workers);
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+        }
+    }
+
+    /**
+     * State of one run, shared by all worker threads.
+     */
+    private final class Execution implements Runnable {
+
+        private final LoadOperation<? super T> operation;
+
+        private final EntityManagerFactory emf;
+
+        private final CountDownLatch ready = new CountDownLatch(threads);
+
+        private final CountDownLatch start = new CountDownLatch(1);
+
+        private final AtomicLong remainingOperations = new AtomicLong(operations);
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicReference<Throwable> firstError = new AtomicReference<Throwable>();
+
+        private final AtomicReference<Throwable> workerFailure = new AtomicReference<Throwable>();
+
+        private final List<Histogram> histograms = new ArrayList<Histogram>();
+
+        private volatile long measurementStart;
+
+        private volatile long measurementEnd;
+
+        Execution(LoadOperation<? super T> operation, EntityManagerFactory emf) {
+            this.operation = operation;
+            this.emf = emf;
+        }
+
+        @Override
+        public void run() {
+            Histogram histogram = new Histogram(3);
+            synchronized (histograms) {
+                histograms.add(histogram);
+            }
+            SharedEntityManagerFactory.bind(emf);
+            ContextControl contextControl = BeanProvider.getContextualReference(ContextControl.class);
+            contextControl.startContext(RequestScoped.class);
+            try {
+                T bean;
+                try {
+                    bean = BeanProvider.getContextualReference(beanClass, qualifiers);
+                } finally {
+                    ready.countDown();
+                }
+                start.await();
+                while (System.nanoTime() < measurementStart) {
+                    execute(bean, null);
+                }
+                while (hasNextOperation()) {
+                    execute(bean, histogram);
+                }
+            } catch (Throwable e) {
+                workerFailure.compareAndSet(null, e);
+            } finally {
+                contextControl.stopContext(RequestScoped.class);
+                SharedEntityManagerFactory.unbind();
+            }
+        }
+
+        private boolean hasNextOperation() {
+            if (operations > 0) {
+                return remainingOperations.getAndDecrement() > 0;
+            }
+            return System.nanoTime() < measurementEnd;
+        }
+
+        private void execute(T bean, Histogram histogram) {
+            long start = System.nanoTime();
+            try {
+                operation.execute(bean);
+            } catch (Exception e) {
+                if (histogram != null) {
+                    errors.incrementAndGet();
+                    firstError.compareAndSet(null, e);
+                }
+            }
+            if (histogram != null) {
+                histogram.recordValue(System.nanoTime() - start);
+            }
+        }
+
+        LoadTestResult await(List<Thread> workers) {
+            try {
+                ready.await();
+                measurementStart = System.nanoTime() + warmupNanos;
+                measurementEnd = measurementStart + durationNanos;
+                start.countDown();
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the load test", e);
+            }
+            long elapsedNanos = System.nanoTime() - measurementStart;
+            if (workerFailure.get() != null) {
+                throw new IllegalStateException("Load test thread failed", workerFailure.get());
+            }
+            Histogram latencies = new Histogram(3);
+            for (Histogram histogram : histograms) {
+                latencies.add(histogram);
+            }
+            LoadTestResult result = new LoadTestResult(threads, latencies, errors.get(), elapsedNanos, firstError.get());
+            LOGGER.info("Load test of {} finished: {}", beanClass.getName(), result);
+            return result;
+        }
+    }
+
+}
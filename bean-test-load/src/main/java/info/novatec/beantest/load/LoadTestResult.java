@@ -0,0 +1,203 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.load;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Throughput and latency distribution of a {@link LoadTest}.
+ * <p>
+ * The assertion methods throw an {@link AssertionError}, so they can be used like JUnit assertions and chained:
+ * <code>result.assertNoErrors().assertLatencyBelow(99, 20, TimeUnit.MILLISECONDS);</code>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class LoadTestResult {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final int threads;
+
+    private final Histogram latencies;
+
+    private final long errors;
+
+    private final long elapsedNanos;
+
+    private final Throwable firstError;
+
+    LoadTestResult(int threads, Histogram latencies, long errors, long elapsedNanos, Throwable firstError) {
+        this.threads = threads;
+        this.latencies = latencies;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.firstError = firstError;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the number of measured operations, including the failed ones.
+     *
+     * @return the number of operations.
+     */
+    public long getOperations() {
+        return latencies.getTotalCount();
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the first exception thrown by an operation.
+     *
+     * @return the first exception, or <code>null</code> if there were no errors.
+     */
+    public Throwable getFirstError() {
+        return firstError;
+    }
+
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the throughput in operations per second.
+     *
+     * @return the throughput.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getOperations() * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the operations completed.
+     *
+     * @param percentile
+     *            the percentile, for example 99.9.
+     * @param unit
+     *            the unit of the returned latency.
+     * @return the latency in the given unit.
+     */
+    public double getLatency(double percentile, TimeUnit unit) {
+        return latencies.getValueAtPercentile(percentile) / (double) unit.toNanos(1);
+    }
+
+    /**
+     * Returns a copy of the latency histogram. The values are recorded in nanoseconds.
+     *
+     * @return the latency histogram.
+     */
+    public Histogram getHistogram() {
+        return latencies.copy();
+    }
+
+    /**
+     * Asserts that no operation threw an exception.
+     *
+     * @return this result.
+     */
+    public LoadTestResult assertNoErrors() {
+        if (errors > 0) {
+            AssertionError error = new AssertionError(errors + " of " + getOperations() + " operations failed");
+            error.initCause(firstError);
+            throw error;
+        }
+        return this;
+    }
+
+    /**
+     * Asserts that the latency of the given percentile is below the given value, for example
+     * <code>assertLatencyBelow(99, 20, TimeUnit.MILLISECONDS)</code> for p99 &lt; 20ms.
+     *
+     * @param percentile
+     *            the percentile.
+     * @param maximum
+     *            the exclusive upper bound of the latency.
+     * @param unit
+     *            the unit of the upper bound.
+     * @return this result.
+     */
+    public LoadTestResult assertLatencyBelow(double percentile, long maximum, TimeUnit unit) {
+        double latency = getLatency(percentile, unit);
+        if (latency >= maximum) {
+            throw new AssertionError(String.format(Locale.ROOT, "%s latency was %.3f %s, expected less than %d %s",
+                    percentileName(percentile), latency, unit, maximum, unit));
+        }
+        return this;
+    }
+
+    /**
+     * Asserts that the throughput is at least the given number of operations per second.
+     *
+     * @param operationsPerSecond
+     *            the minimum throughput.
+     * @return this result.
+     */
+    public LoadTestResult assertThroughputAtLeast(double operationsPerSecond) {
+        if (getThroughput() < operationsPerSecond) {
+            throw new AssertionError(String.format(Locale.ROOT, "Throughput was %.1f operations/s, expected at least %.1f",
+                    getThroughput(), operationsPerSecond));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the result as JSON object. Durations are in milliseconds, the throughput in operations per second.
+     *
+     * @return the JSON representation.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"threads\":").append(threads);
+        json.append(",\"operations\":").append(getOperations());
+        json.append(",\"errors\":").append(errors);
+        json.append(",\"elapsedMs\":").append(format(elapsedNanos / NANOS_PER_MILLI));
+        json.append(",\"throughput\":").append(format(getThroughput()));
+        json.append(",\"latencyMs\":{");
+        json.append("\"min\":").append(format(latencies.getMinValue() / NANOS_PER_MILLI));
+        json.append(",\"mean\":").append(format(latencies.getMean() / NANOS_PER_MILLI));
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            json.append(",\"").append(percentileName(percentile)).append("\":");
+            json.append(format(getLatency(percentile, TimeUnit.MILLISECONDS)));
+        }
+        json.append(",\"max\":").append(format(latencies.getMaxValue() / NANOS_PER_MILLI));
+        return json.append("}}").toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    private static String percentileName(double percentile) {
+        String name = String.valueOf(percentile);
+        return "p" + (name.endsWith(".0") ? name.substring(0, name.length() - 2) : name);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+}
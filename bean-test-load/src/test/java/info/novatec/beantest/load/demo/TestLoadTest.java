@@ -0,0 +1,84 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.load.demo;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.load.LoadOperation;
+import info.novatec.beantest.load.LoadTest;
+import info.novatec.beantest.load.LoadTestResult;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * This test verifies that a load test calls the bean concurrently, with one transaction per operation and the entity
+ * manager factory of the test.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestLoadTest extends BaseBeanTest {
+
+    @Test
+    public void shouldPersistAnEntityPerOperation() {
+        LoadTestResult result = LoadTest.of(MyLoadEJBService.class).threads(4).operations(200).run(new LoadOperation<MyLoadEJBService>() {
+
+            @Override
+            public void execute(MyLoadEJBService service) {
+                service.save("load");
+            }
+        });
+
+        result.assertNoErrors().assertLatencyBelow(99, 10, TimeUnit.SECONDS);
+        assertThat(result.getOperations(), is(200L));
+        assertThat(result.getThroughput(), greaterThan(0.0));
+        assertThat(getBean(MyLoadEJBService.class).getAllEntities(), hasSize(200));
+    }
+
+    @Test
+    public void shouldCountErrorsAndRollbackTheirTransactions() {
+        LoadTestResult result = LoadTest.of(MyLoadEJBService.class).threads(2).duration(200, TimeUnit.MILLISECONDS).run(new LoadOperation<MyLoadEJBService>() {
+
+            @Override
+            public void execute(MyLoadEJBService service) {
+                service.attemptToSaveAndThrowException("load");
+            }
+        });
+
+        assertThat(result.getErrors(), is(result.getOperations()));
+        assertThat(result.getFirstError(), instanceOf(IllegalStateException.class));
+        assertThat(result.toJson(), containsString("\"errors\":" + result.getErrors()));
+        assertThat(getBean(MyLoadEJBService.class).getAllEntities(), is(empty()));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void shouldFailLatencyAssertion() {
+        LoadTest.of(MyLoadEJBService.class).operations(10).run(new LoadOperation<MyLoadEJBService>() {
+
+            @Override
+            public void execute(MyLoadEJBService service) throws InterruptedException {
+                Thread.sleep(2);
+            }
+        }).assertLatencyBelow(50, 1, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -16,9 +16,12 @@
 
 package info.novatec.beantest.api;
 
+import info.novatec.beantest.impact.TestImpactRule;
 import java.lang.annotation.Annotation;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
 
 /**
  * Base class for initializing the {@link  BeanProviderHelper}
@@ -26,17 +29,27 @@ import org.junit.Before;
  * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
  */
 public abstract class BaseBeanTest {
+
+    /**
+     * Skips the test class if it is not affected by a change, see {@link info.novatec.beantest.impact.TestImpactAnalysis}.
+     */
+    @ClassRule
+    public static final TestImpactRule TEST_CLASS_IMPACT = new TestImpactRule();
+
+    @Rule
+    public final TestImpactRule testImpact = new TestImpactRule();
     
     private BeanProviderHelper bm;
     
     @Before
     public void initilaize() {
         bm = BeanProviderHelper.getInstance();
+        bm.configure(ContainerConfiguration.of(getClass()));
     }
 
     @After
     public void cleanUp() {
-        bm.shutdown();
+        bm.release();
     }
     
     protected <T> T getBean(Class<T> beanClass, Annotation... qualifiers) {
@@ -0,0 +1,204 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.api;
+
+import info.novatec.beantest.concurrent.AsyncEvents;
+import info.novatec.beantest.impact.TestImpactAnalysis;
+import info.novatec.beantest.producers.InMemoryDatabases;
+import info.novatec.beantest.startup.ConcurrentBootstrap;
+import java.lang.annotation.Annotation;
+import javax.enterprise.inject.spi.BeanManager;
+import org.apache.deltaspike.cdise.api.CdiContainer;
+import org.apache.deltaspike.cdise.api.CdiContainerLoader;
+import org.apache.deltaspike.core.api.provider.BeanProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point to obtain bean references.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class BeanProviderHelper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BeanProviderHelper.class);
+
+    private  CdiContainer cdiContainer;
+    private static final BeanProviderHelper INSTANCE= new BeanProviderHelper();
+
+    private volatile ContainerConfiguration configuration = ContainerConfiguration.DEFAULT;
+
+    private boolean containerReuse;
+
+    private boolean contextsActive;
+
+    public static BeanProviderHelper getInstance() {
+        return INSTANCE;
+    }
+    
+    private BeanProviderHelper() {
+    }
+    
+    /**
+     * Starts the CDI Container and initializes its contexts.
+     */
+    private void bootstrapCdiContainer() {
+        CdiContainer container = CdiContainerLoader.getCdiContainer();
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(ConcurrentBootstrap.getBootClassLoader(contextClassLoader));
+        try {
+            container.boot();
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+        container.getContextControl().startContexts();
+        cdiContainer = container;
+        contextsActive = true;
+        LOGGER.info("CDI container booted with configuration {}", configuration);
+    }
+
+    /**
+     * Sets the configuration the container should be booted with.
+     * <p>
+     * If a container is already running with a different configuration, it is shut down. The next call to
+     * {@link #getBean(Class, Annotation...)} boots a new one. Settings which are not part of the fingerprint (like the
+     * persistence context strategy) are applied to the running container.
+     *
+     * @param newConfiguration
+     *            the configuration of the container.
+     */
+    public synchronized void configure(ContainerConfiguration newConfiguration) {
+        if (!configuration.equals(newConfiguration)) {
+            shutdown();
+        }
+        configuration = newConfiguration;
+    }
+
+    /**
+     * Returns the configuration of the current (or next) container.
+     *
+     * @return the container configuration.
+     */
+    public ContainerConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Enables or disables container reuse. While enabled, {@link #release()} keeps the container running.
+     *
+     * @param containerReuse
+     *            <code>true</code> if the container should be kept running between tests.
+     */
+    public synchronized void setContainerReuse(boolean containerReuse) {
+        this.containerReuse = containerReuse;
+    }
+
+    /**
+     * Releases the container after a test. The beans the test exercised are passed to the {@link TestImpactAnalysis}
+     * before.
+     * <p>
+     * If container reuse is enabled, only the contexts are stopped. They are started again on the thread that uses the
+     * container next, so that the next test gets new bean instances (and a new entity manager) without booting the
+     * container again. Otherwise, the container is shut down.
+     */
+    public synchronized void release() {
+        if (containerReuse && cdiContainer != null) {
+            TestImpactAnalysis.containerReleasing(cdiContainer.getBeanManager());
+            if (contextsActive) {
+                cdiContainer.getContextControl().stopContexts();
+                contextsActive = false;
+            }
+        } else {
+            shutdown();
+        }
+    }
+
+    /**
+     * Boots the container if required and makes sure its contexts are active.
+     */
+    private synchronized void ensureContainerIsRunning() {
+        if (cdiContainer == null) {
+            bootstrapCdiContainer();
+        } else if (!contextsActive) {
+            cdiContainer.getContextControl().startContexts();
+            contextsActive = true;
+        }
+    }
+
+
+    /**
+     * Returns a reference of the given bean class.
+     * 
+     * @param <T>
+     *            the type of the bean.
+     * @param beanClass
+     *            the class of the bean whose reference should be returned.
+     * @param qualifiers
+     *            qualifiers for narrowing the bean instance. This attribute is not required.
+     * @return the reference of the given bean class.
+     */
+    public <T> T getBean(Class<T> beanClass, Annotation... qualifiers) {
+        ensureContainerIsRunning();
+        TestImpactAnalysis.beanRequested(beanClass, qualifiers);
+        return BeanProvider.getContextualReference(beanClass, qualifiers);
+    }
+
+     /**
+     * Returns the reference of the {@link BeanManager}.
+     * 
+     * @return the reference of the {@link BeanManager}.
+     */
+    public BeanManager getBeanManager() {
+        ensureContainerIsRunning();
+        return cdiContainer.getBeanManager();
+    }
+
+    /**
+     * Shuts down the underlying container and resets the configuration to {@link ContainerConfiguration#DEFAULT}. The
+     * pending notifications of asynchronous observers are awaited before, see {@link AsyncEvents}. The in-memory
+     * databases which are no longer used by an entity manager factory are dropped, unless they are pooled.
+     *
+     * @see InMemoryDatabases
+     */
+    public synchronized void shutdown() {
+        if (cdiContainer != null) {
+            try {
+                TestImpactAnalysis.containerReleasing(cdiContainer.getBeanManager());
+                AsyncEvents.drain(cdiContainer.getBeanManager());
+                fireShutdownEvent();
+            } finally {
+                cdiContainer.shutdown();
+                cdiContainer = null;
+                contextsActive = false;
+                InMemoryDatabases.dropIdleDatabases(false);
+            }
+
+        }
+        configuration = ContainerConfiguration.DEFAULT;
+    }
+    
+    /**
+     * Fires a {@link ContainerShutdown} CDI event before the CDI container shuts down in order to clean up resources (for example an
+     * EntityManager).
+     */
+    private void fireShutdownEvent() {
+        CdiContainerShutdown containerShutdown = new CdiContainerShutdown();
+        getBeanManager().fireEvent(containerShutdown);
+    }
+
+    
+}
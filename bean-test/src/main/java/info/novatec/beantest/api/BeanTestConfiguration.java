@@ -0,0 +1,88 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.api;
+
+import info.novatec.beantest.producers.DatabaseBackend;
+import info.novatec.beantest.producers.JpaProfile;
+import info.novatec.beantest.producers.PersistenceUnitBackend;
+import info.novatec.beantest.transactions.PersistenceContextStrategy;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the container configuration a bean test class needs.
+ * <p>
+ * Test classes without this annotation run against the default configuration, i.e. no additional alternatives and the
+ * "beanTestPU" persistence unit. Test classes declaring the same configuration can share one booted CDI container (see
+ * {@link BeanTestSuite}).
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Documented
+@Inherited
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BeanTestConfiguration {
+
+    /**
+     * Alternatives (for example mock producers annotated with {@link javax.enterprise.inject.Alternative}) that should be
+     * enabled for the test class.
+     */
+    Class<?>[] alternatives() default {};
+
+    /**
+     * Name of the persistence unit the entity managers should be created for.
+     */
+    String persistenceUnit() default ContainerConfiguration.DEFAULT_PERSISTENCE_UNIT;
+
+    /**
+     * Settings of the entity manager factory and the entity managers, for example to enable JDBC batching.
+     */
+    JpaProfile jpaProfile() default JpaProfile.STANDARD;
+
+    /**
+     * Whether the entity manager factory should only map the entities of the persistence unit which are reachable from
+     * the beans using a persistence context, instead of all of them. This speeds up the startup of tests with large
+     * persistence units.
+     */
+    boolean reachableEntitiesOnly() default false;
+
+    /**
+     * Whether only the beans reachable from the injection points of the test class should be deployed. All the other
+     * classes of the bean archives, apart from interceptors, decorators, extensions and beans declaring producers or
+     * observers, are vetoed. This speeds up the bean validation and proxy generation of large deployments, but the
+     * container can't be shared with other test classes anymore.
+     */
+    boolean reachableBeansOnly() default false;
+
+    /**
+     * Database the entity manager factories connect to, for example the in-memory H2 database of the
+     * {@link info.novatec.beantest.producers.H2Backend}. By default, the backend given by the system property
+     * <code>beantest.database</code> is used, or the database of the persistence unit if it is not set.
+     */
+    Class<? extends DatabaseBackend> database() default PersistenceUnitBackend.class;
+
+    /**
+     * What happens to the persistence context when a transaction completes. Beans may override it with
+     * {@link info.novatec.beantest.transactions.PersistenceContextRetention}.
+     */
+    PersistenceContextStrategy persistenceContext() default PersistenceContextStrategy.CLEAR;
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.api;
+
+import info.novatec.beantest.producers.InMemoryDatabases;
+import info.novatec.beantest.transactions.TransactionMetrics;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Suite runner that minimizes the number of CDI container boots.
+ * <p>
+ * The test classes listed in {@link Suite.SuiteClasses} are grouped by their {@link ContainerConfiguration} and run
+ * group by group, so that all classes sharing a configuration run against one booted container. Between test methods
+ * only the contexts of the container are restarted. The order of the groups is the order in which their first class
+ * appears in {@link Suite.SuiteClasses}.
+ * <p>
+ * At the end of the suite, all the in-memory databases without an open entity manager factory are dropped, including
+ * the pooled ones (see {@link InMemoryDatabases}).
+ * <p>
+ * With the system property <code>beantest.metrics.dump=true</code>, the {@link TransactionMetrics} are logged at the
+ * end of the suite.
+ * <p>
+ * Usage:
+ * <pre>
+ * &#064;RunWith(BeanTestSuite.class)
+ * &#064;SuiteClasses({TestA.class, TestB.class})
+ * public class MySuite {
+ * }
+ * </pre>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class BeanTestSuite extends Suite {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BeanTestSuite.class);
+
+    public BeanTestSuite(Class<?> klass, RunnerBuilder builder) throws InitializationError {
+        super(klass, groupByConfiguration(builder.runners(klass, getSuiteClasses(klass))));
+    }
+
+    private static Class<?>[] getSuiteClasses(Class<?> klass) throws InitializationError {
+        SuiteClasses annotation = klass.getAnnotation(SuiteClasses.class);
+        if (annotation == null) {
+            throw new InitializationError(String.format("class '%s' must have a SuiteClasses annotation", klass.getName()));
+        }
+        return annotation.value();
+    }
+
+    /**
+     * Reorders the given runners so that runners of test classes with the same configuration are adjacent.
+     */
+    private static List<Runner> groupByConfiguration(List<Runner> runners) {
+        Map<ContainerConfiguration, List<Runner>> groups = new LinkedHashMap<ContainerConfiguration, List<Runner>>();
+        for (Runner runner : runners) {
+            ContainerConfiguration configuration = getConfiguration(runner);
+            List<Runner> group = groups.get(configuration);
+            if (group == null) {
+                group = new ArrayList<Runner>();
+                groups.put(configuration, group);
+            }
+            group.add(runner);
+        }
+        List<Runner> groupedRunners = new ArrayList<Runner>(runners.size());
+        for (List<Runner> group : groups.values()) {
+            groupedRunners.addAll(group);
+        }
+        return groupedRunners;
+    }
+
+    private static ContainerConfiguration getConfiguration(Runner runner) {
+        Class<?> testClass = runner.getDescription().getTestClass();
+        return testClass == null ? ContainerConfiguration.DEFAULT : ContainerConfiguration.of(testClass);
+    }
+
+    @Override
+    public void run(RunNotifier notifier) {
+        BeanProviderHelper beanProviderHelper = BeanProviderHelper.getInstance();
+        beanProviderHelper.setContainerReuse(true);
+        try {
+            super.run(notifier);
+        } finally {
+            beanProviderHelper.setContainerReuse(false);
+            beanProviderHelper.shutdown();
+            InMemoryDatabases.dropIdleDatabases(true);
+            if (Boolean.getBoolean(TransactionMetrics.DUMP_PROPERTY)) {
+                LOGGER.info("Transaction metrics of the suite:{}{}", System.getProperty("line.separator"), TransactionMetrics.dump());
+            }
+        }
+    }
+
+}
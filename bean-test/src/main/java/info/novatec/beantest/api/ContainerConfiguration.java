@@ -0,0 +1,189 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.api;
+
+import info.novatec.beantest.producers.DatabaseBackend;
+import info.novatec.beantest.producers.DatabaseBackends;
+import info.novatec.beantest.producers.JpaProfile;
+import info.novatec.beantest.producers.PersistenceUnitBackend;
+import info.novatec.beantest.transactions.PersistenceContextStrategy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable description of the configuration a CDI container is booted with.
+ * <p>
+ * Two configurations are equal if their fingerprints are equal. A booted container can be reused for every test class
+ * whose configuration has the same fingerprint. The persistence context strategy is not part of the fingerprint, since
+ * it doesn't require a new container.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ * @see BeanTestConfiguration
+ */
+public final class ContainerConfiguration {
+
+    public static final String DEFAULT_PERSISTENCE_UNIT = "beanTestPU";
+
+    public static final ContainerConfiguration DEFAULT = new ContainerConfiguration(new Class<?>[0], DEFAULT_PERSISTENCE_UNIT,
+            JpaProfile.STANDARD, false, null, DatabaseBackends.getDefault(), PersistenceContextStrategy.CLEAR);
+
+    private static final Comparator<Class<?>> CLASS_NAME_COMPARATOR = new Comparator<Class<?>>() {
+
+        @Override
+        public int compare(Class<?> first, Class<?> second) {
+            return first.getName().compareTo(second.getName());
+        }
+    };
+
+    private final List<Class<?>> alternatives;
+
+    private final String persistenceUnit;
+
+    private final JpaProfile jpaProfile;
+
+    private final boolean reachableEntitiesOnly;
+
+    private final Class<?> reachableBeansRoot;
+
+    private final Class<? extends DatabaseBackend> databaseBackend;
+
+    private final PersistenceContextStrategy persistenceContextStrategy;
+
+    private final String fingerprint;
+
+    private ContainerConfiguration(Class<?>[] alternatives, String persistenceUnit, JpaProfile jpaProfile,
+            boolean reachableEntitiesOnly, Class<?> reachableBeansRoot, Class<? extends DatabaseBackend> databaseBackend,
+            PersistenceContextStrategy persistenceContextStrategy) {
+        Class<?>[] sortedAlternatives = alternatives.clone();
+        Arrays.sort(sortedAlternatives, CLASS_NAME_COMPARATOR);
+        this.alternatives = Collections.unmodifiableList(Arrays.asList(sortedAlternatives));
+        this.persistenceUnit = persistenceUnit;
+        this.jpaProfile = jpaProfile;
+        this.reachableEntitiesOnly = reachableEntitiesOnly;
+        this.reachableBeansRoot = reachableBeansRoot;
+        this.databaseBackend = databaseBackend;
+        this.persistenceContextStrategy = persistenceContextStrategy;
+        this.fingerprint = createFingerprint();
+    }
+
+    /**
+     * Returns the configuration declared by the given test class via {@link BeanTestConfiguration}.
+     *
+     * @param testClass
+     *            the test class whose configuration should be returned.
+     * @return the declared configuration or {@link #DEFAULT} if the test class doesn't declare any.
+     */
+    public static ContainerConfiguration of(Class<?> testClass) {
+        BeanTestConfiguration configuration = testClass.getAnnotation(BeanTestConfiguration.class);
+        if (configuration == null) {
+            return DEFAULT;
+        }
+        Class<? extends DatabaseBackend> databaseBackend = configuration.database();
+        if (databaseBackend == PersistenceUnitBackend.class) {
+            databaseBackend = DatabaseBackends.getDefault();
+        }
+        return new ContainerConfiguration(configuration.alternatives(), configuration.persistenceUnit(), configuration.jpaProfile(),
+                configuration.reachableEntitiesOnly(), configuration.reachableBeansOnly() ? testClass : null, databaseBackend,
+                configuration.persistenceContext());
+    }
+
+    private String createFingerprint() {
+        StringBuilder builder = new StringBuilder("pu=").append(persistenceUnit).append(";jpa=").append(jpaProfile)
+                .append(";entities=").append(reachableEntitiesOnly ? "reachable" : "all").append(";beans=")
+                .append(reachableBeansRoot != null ? "reachable:" + reachableBeansRoot.getName() : "all").append(";database=")
+                .append(databaseBackend.getName()).append(";alternatives=");
+        for (Class<?> alternative : alternatives) {
+            builder.append(alternative.getName()).append(',');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the alternatives to be enabled, sorted by class name.
+     *
+     * @return the alternatives to be enabled.
+     */
+    public List<Class<?>> getAlternatives() {
+        return alternatives;
+    }
+
+    public String getPersistenceUnit() {
+        return persistenceUnit;
+    }
+
+    public JpaProfile getJpaProfile() {
+        return jpaProfile;
+    }
+
+    public boolean isReachableEntitiesOnly() {
+        return reachableEntitiesOnly;
+    }
+
+    public boolean isReachableBeansOnly() {
+        return reachableBeansRoot != null;
+    }
+
+    /**
+     * Returns the test class whose injection points determine the deployed beans, if only the reachable beans should be
+     * deployed.
+     *
+     * @return the test class, or <code>null</code> if all the beans are deployed.
+     */
+    public Class<?> getReachableBeansRoot() {
+        return reachableBeansRoot;
+    }
+
+    public Class<? extends DatabaseBackend> getDatabaseBackend() {
+        return databaseBackend;
+    }
+
+    public PersistenceContextStrategy getPersistenceContextStrategy() {
+        return persistenceContextStrategy;
+    }
+
+    /**
+     * Returns a string that identifies this configuration.
+     *
+     * @return the fingerprint of this configuration.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ContainerConfiguration)) {
+            return false;
+        }
+        return fingerprint.equals(((ContainerConfiguration) obj).fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return fingerprint.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return fingerprint;
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.spi.Context;
+import javax.enterprise.event.ObserverException;
+import javax.enterprise.inject.Typed;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the events to the {@link ObservesAsync asynchronous observers} on a bounded thread pool.
+ * <p>
+ * Every notification runs in its own request context with the entity manager factory of the firing thread, like the
+ * tasks of the {@link ManagedExecutor}, so the observers of converted EJBs get new bean instances and start their own
+ * transactions. The number of threads is given by the system property <code>beantest.events.threads</code> (default:
+ * the number of processors) and the number of queued notifications by <code>beantest.events.queue</code> (default:
+ * 1000). If the queue is full, the firing thread waits for a free slot, unless it is an event thread itself: since
+ * waiting could then deadlock the thread pool, the notification runs right away on the firing thread, within the request
+ * context of the notifying observer.
+ * <p>
+ * Since the firing thread doesn't wait for the observers, a test awaits them with {@link #awaitQuiescence(long, TimeUnit)}
+ * before its assertions. Events fired by asynchronous observers are awaited as well. Exceptions thrown by the observers
+ * are rethrown there. Before the container shuts down, the pending notifications are awaited for up to
+ * <code>beantest.events.shutdownTimeout</code> milliseconds (default: 10000).
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@ApplicationScoped
+@Typed(AsyncEvents.class)
+public class AsyncEvents {
+
+    /**
+     * System property for the number of threads.
+     */
+    public static final String THREADS_PROPERTY = "beantest.events.threads";
+
+    /**
+     * System property for the maximum number of queued notifications.
+     */
+    public static final String QUEUE_PROPERTY = "beantest.events.queue";
+
+    /**
+     * System property for the milliseconds to await the pending notifications before the container shuts down.
+     */
+    public static final String SHUTDOWN_TIMEOUT_PROPERTY = "beantest.events.shutdownTimeout";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncEvents.class);
+
+    private static final AtomicInteger DISPATCHER_NUMBER = new AtomicInteger();
+
+    /**
+     * Marks the event threads.
+     */
+    private static final ThreadLocal<Boolean> EVENT_THREAD = new ThreadLocal<Boolean>();
+
+    private final Object lock = new Object();
+
+    private final List<Throwable> failures = new ArrayList<Throwable>();
+
+    private int pendingNotifications;
+
+    private ThreadPoolExecutor workers;
+
+    /**
+     * Returns the worker threads, which are started on demand.
+     */
+    private synchronized ThreadPoolExecutor getWorkers() {
+        if (workers == null) {
+            final int dispatcherNumber = DISPATCHER_NUMBER.incrementAndGet();
+            int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+            workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(Integer.getInteger(QUEUE_PROPERTY, 1000)), new ThreadFactory() {
+
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            Thread thread = new Thread(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    EVENT_THREAD.set(Boolean.TRUE);
+                                    runnable.run();
+                                }
+                            }, "bean-test-events-" + dispatcherNumber + "-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new WaitForFreeSlot());
+        }
+        return workers;
+    }
+
+    /**
+     * Queues the notification of an asynchronous observer. It runs in its own request context.
+     *
+     * @param notification
+     *            the notification.
+     */
+    void deliver(Runnable notification) {
+        synchronized (lock) {
+            pendingNotifications++;
+        }
+        QueuedNotification queuedNotification = new QueuedNotification(notification, ContextualTask.of(notification));
+        try {
+            getWorkers().execute(queuedNotification);
+        } catch (RejectedExecutionException e) {
+            queuedNotification.cancel();
+            throw e;
+        }
+    }
+
+    private void failed(Throwable failure) {
+        synchronized (lock) {
+            failures.add(failure);
+        }
+    }
+
+    private void completed() {
+        synchronized (lock) {
+            pendingNotifications--;
+            if (pendingNotifications == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queued or running notifications.
+     *
+     * @return the number of pending notifications.
+     */
+    public int getPendingNotifications() {
+        synchronized (lock) {
+            return pendingNotifications;
+        }
+    }
+
+    /**
+     * Waits until all the notifications of asynchronous observers have completed, including the ones of events fired
+     * while waiting.
+     *
+     * @param timeout
+     *            the maximum time to wait.
+     * @param unit
+     *            the unit of the timeout.
+     * @return <code>true</code> if all the notifications have completed, <code>false</code> if the timeout elapsed
+     *         before.
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     * @throws ObserverException
+     *             if observers failed since the last call. It is caused by the first failure; all of them are logged.
+     */
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (pendingNotifications > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            if (!failures.isEmpty()) {
+                Throwable failure = failures.get(0);
+                int count = failures.size();
+                failures.clear();
+                throw new ObserverException(count + " asynchronous observer notifications failed", failure);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Awaits the pending notifications and stops the worker threads, if the asynchronous events of the given container
+     * have been used. It is called before the container shuts down, since the notifications may use the entity manager
+     * factory of the test.
+     *
+     * @param beanManager
+     *            the bean manager of the container.
+     */
+    public static void drain(BeanManager beanManager) {
+        Bean<?> bean = beanManager.resolve(beanManager.getBeans(AsyncEvents.class));
+        if (bean == null) {
+            return;
+        }
+        Context context = beanManager.getContext(ApplicationScoped.class);
+        AsyncEvents asyncEvents = (AsyncEvents) context.get(bean);
+        if (asyncEvents == null) {
+            return;
+        }
+        try {
+            if (!asyncEvents.awaitQuiescence(Long.getLong(SHUTDOWN_TIMEOUT_PROPERTY, 10000L), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("{} asynchronous observer notifications did not complete before the container shut down",
+                        asyncEvents.getPendingNotifications());
+            }
+        } catch (ObserverException e) {
+            LOGGER.warn("Asynchronous observers failed before the container shut down", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        asyncEvents.close();
+    }
+
+    /**
+     * Stops the worker threads. Running notifications are interrupted. Notifications queued afterwards start new
+     * threads.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (workers != null) {
+            List<Runnable> pendingTasks = workers.shutdownNow();
+            for (Runnable pendingTask : pendingTasks) {
+                ((QueuedNotification) pendingTask).cancel();
+            }
+            if (!pendingTasks.isEmpty()) {
+                LOGGER.warn("{} asynchronous observer notifications were not executed before the container shut down", pendingTasks.size());
+            }
+            workers = null;
+        }
+    }
+
+    /**
+     * Notification of an asynchronous observer, which records its outcome.
+     */
+    private final class QueuedNotification implements Runnable {
+
+        private final Runnable notification;
+
+        private final ContextualTask contextualNotification;
+
+        QueuedNotification(Runnable notification, ContextualTask contextualNotification) {
+            this.notification = notification;
+            this.contextualNotification = contextualNotification;
+        }
+
+        @Override
+        public void run() {
+            try {
+                contextualNotification.run();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Asynchronous observer {} failed", notification, e);
+                failed(e);
+            } catch (Error e) {
+                LOGGER.warn("Asynchronous observer {} failed", notification, e);
+                failed(e);
+            } finally {
+                completed();
+            }
+        }
+
+        /**
+         * Drops the notification, which will not run.
+         */
+        void cancel() {
+            contextualNotification.cancel();
+            completed();
+        }
+    }
+
+    /**
+     * Blocks the firing thread until the queue has a free slot. An event thread runs the notification itself instead,
+     * since all the event threads might be waiting for a free slot otherwise.
+     */
+    private static final class WaitForFreeSlot implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The asynchronous events have been shut down");
+            }
+            if (EVENT_THREAD.get() != null) {
+                task.run();
+                return;
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for a free slot", e);
+            }
+        }
+    }
+
+}
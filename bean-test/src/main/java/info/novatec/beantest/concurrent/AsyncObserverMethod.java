@@ -0,0 +1,182 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.concurrent;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.enterprise.context.Dependent;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.event.ObserverException;
+import javax.enterprise.event.Reception;
+import javax.enterprise.event.TransactionPhase;
+import javax.enterprise.inject.spi.AnnotatedMethod;
+import javax.enterprise.inject.spi.AnnotatedParameter;
+import javax.enterprise.inject.spi.AnnotatedType;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.DefinitionException;
+import javax.enterprise.inject.spi.ObserverMethod;
+
+/**
+ * Observer method for a parameter annotated with {@link ObservesAsync}. It is registered by the
+ * {@link info.novatec.beantest.extension.BeanTestExtension} and hands the events over to {@link AsyncEvents}.
+ *
+ * @param <T>
+ *            the observed event type.
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class AsyncObserverMethod<T> implements ObserverMethod<T> {
+
+    private final Bean<?> bean;
+
+    private final Method method;
+
+    private final Type observedType;
+
+    private final Set<Annotation> observedQualifiers;
+
+    private final BeanManager beanManager;
+
+    private AsyncObserverMethod(Bean<?> bean, Method method, Type observedType, Set<Annotation> observedQualifiers, BeanManager beanManager) {
+        this.bean = bean;
+        this.method = method;
+        this.observedType = observedType;
+        this.observedQualifiers = observedQualifiers;
+        this.beanManager = beanManager;
+    }
+
+    /**
+     * Returns the asynchronous observer methods of the given bean.
+     *
+     * @param bean
+     *            the bean.
+     * @param annotatedType
+     *            the annotated type of the bean.
+     * @param beanManager
+     *            the bean manager.
+     * @return the observer methods, empty if the bean has none.
+     * @throws DefinitionException
+     *             if an observer method is private or has more than the event parameter.
+     */
+    public static List<ObserverMethod<?>> of(Bean<?> bean, AnnotatedType<?> annotatedType, BeanManager beanManager) {
+        List<ObserverMethod<?>> observerMethods = new ArrayList<ObserverMethod<?>>();
+        for (AnnotatedMethod<?> annotatedMethod : annotatedType.getMethods()) {
+            for (AnnotatedParameter<?> parameter : annotatedMethod.getParameters()) {
+                if (parameter.isAnnotationPresent(ObservesAsync.class)) {
+                    observerMethods.add(create(bean, annotatedMethod, parameter, beanManager));
+                }
+            }
+        }
+        return observerMethods;
+    }
+
+    private static ObserverMethod<?> create(Bean<?> bean, AnnotatedMethod<?> annotatedMethod, AnnotatedParameter<?> parameter, BeanManager beanManager) {
+        Method method = annotatedMethod.getJavaMember();
+        if (Modifier.isPrivate(method.getModifiers())) {
+            throw new DefinitionException("Asynchronous observer method " + method + " must not be private");
+        }
+        if (annotatedMethod.getParameters().size() != 1) {
+            throw new DefinitionException("Asynchronous observer method " + method + " must only have the event parameter");
+        }
+        Set<Annotation> qualifiers = new LinkedHashSet<Annotation>();
+        for (Annotation annotation : parameter.getAnnotations()) {
+            if (beanManager.isQualifier(annotation.annotationType())) {
+                qualifiers.add(annotation);
+            }
+        }
+        method.setAccessible(true);
+        return new AsyncObserverMethod<Object>(bean, method, parameter.getBaseType(), Collections.unmodifiableSet(qualifiers), beanManager);
+    }
+
+    @Override
+    public Class<?> getBeanClass() {
+        return bean.getBeanClass();
+    }
+
+    @Override
+    public Type getObservedType() {
+        return observedType;
+    }
+
+    @Override
+    public Set<Annotation> getObservedQualifiers() {
+        return observedQualifiers;
+    }
+
+    @Override
+    public Reception getReception() {
+        return Reception.ALWAYS;
+    }
+
+    @Override
+    public TransactionPhase getTransactionPhase() {
+        return TransactionPhase.IN_PROGRESS;
+    }
+
+    /**
+     * Hands the event over to {@link AsyncEvents}, which invokes the observer method on a bean instance of its own
+     * request context.
+     */
+    @Override
+    public void notify(final T event) {
+        Bean<?> asyncEventsBean = beanManager.resolve(beanManager.getBeans(AsyncEvents.class));
+        AsyncEvents asyncEvents = (AsyncEvents) beanManager.getReference(asyncEventsBean, AsyncEvents.class,
+                beanManager.createCreationalContext(asyncEventsBean));
+        asyncEvents.deliver(new Runnable() {
+
+            @Override
+            public void run() {
+                invoke(event);
+            }
+
+            @Override
+            public String toString() {
+                return method.getDeclaringClass().getSimpleName() + "." + method.getName() + "(" + event + ")";
+            }
+        });
+    }
+
+    private void invoke(T event) {
+        CreationalContext<?> creationalContext = beanManager.createCreationalContext(bean);
+        try {
+            Type referenceType = bean.getTypes().contains(method.getDeclaringClass()) ? method.getDeclaringClass() : bean.getBeanClass();
+            method.invoke(beanManager.getReference(bean, referenceType, creationalContext), event);
+        } catch (InvocationTargetException e) {
+            throw new ObserverException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new ObserverException(e);
+        } finally {
+            if (Dependent.class.equals(bean.getScope())) {
+                creationalContext.release();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncObserverMethod[" + method + "]";
+    }
+
+}
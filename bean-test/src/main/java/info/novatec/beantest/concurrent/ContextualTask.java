@@ -0,0 +1,135 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.concurrent;
+
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.SharedEntityManagerFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.persistence.EntityManagerFactory;
+import org.apache.deltaspike.cdise.api.ContextControl;
+import org.apache.deltaspike.core.api.provider.BeanManagerProvider;
+import org.apache.deltaspike.core.api.provider.BeanProvider;
+
+/**
+ * Runs a task in a new request context with the entity manager factory of the submitting thread, which is kept open
+ * until the task has completed or has been cancelled (see {@link SharedEntityManagerFactory#retain(EntityManagerFactory)}).
+ * <p>
+ * If a request context is active already, for example because a full {@link AsyncEvents} queue made an event thread
+ * run a notification itself, the task runs within it.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+final class ContextualTask implements Runnable {
+
+    private final Runnable task;
+
+    private final EntityManagerFactory emf;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private ContextualTask(Runnable task, EntityManagerFactory emf) {
+        this.task = task;
+        this.emf = emf;
+    }
+
+    /**
+     * Wraps the given task. It must be called on the submitting thread.
+     *
+     * @param task
+     *            the task.
+     * @return the task running in its own request context.
+     */
+    static ContextualTask of(Runnable task) {
+        EntityManagerFactory emf = getCurrentEntityManagerFactory();
+        if (emf != null) {
+            SharedEntityManagerFactory.retain(emf);
+        }
+        return new ContextualTask(task, emf);
+    }
+
+    /**
+     * Returns the entity manager factory of the request context of the current thread, or <code>null</code> if there is
+     * no active request context or it has no entity manager producer yet. No producer is created, since it would build
+     * an entity manager factory just to share it.
+     */
+    private static EntityManagerFactory getCurrentEntityManagerFactory() {
+        if (!isRequestContextActive()) {
+            return null;
+        }
+        BeanManager beanManager = BeanManagerProvider.getInstance().getBeanManager();
+        Bean<?> bean = beanManager.resolve(beanManager.getBeans(EntityManagerProducer.class));
+        if (bean == null) {
+            return null;
+        }
+        EntityManagerProducer producer = (EntityManagerProducer) beanManager.getContext(RequestScoped.class).get(bean);
+        return producer != null ? producer.getEntityManagerFactory() : null;
+    }
+
+    private static boolean isRequestContextActive() {
+        BeanManager beanManager = BeanManagerProvider.getInstance().getBeanManager();
+        try {
+            return beanManager.getContext(RequestScoped.class).isActive();
+        } catch (ContextNotActiveException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (isRequestContextActive()) {
+                task.run();
+            } else {
+                runInNewRequestContext();
+            }
+        } finally {
+            release();
+        }
+    }
+
+    private void runInNewRequestContext() {
+        if (emf != null) {
+            SharedEntityManagerFactory.bind(emf);
+        }
+        ContextControl contextControl = BeanProvider.getContextualReference(ContextControl.class);
+        contextControl.startContext(RequestScoped.class);
+        try {
+            task.run();
+        } finally {
+            contextControl.stopContext(RequestScoped.class);
+            SharedEntityManagerFactory.unbind();
+        }
+    }
+
+    /**
+     * Releases the entity manager factory of a task which will not run.
+     */
+    void cancel() {
+        release();
+    }
+
+    private void release() {
+        if (emf != null && released.compareAndSet(false, true)) {
+            SharedEntityManagerFactory.release(emf);
+        }
+    }
+
+}
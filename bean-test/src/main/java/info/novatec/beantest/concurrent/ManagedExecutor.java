@@ -0,0 +1,150 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.concurrent;
+
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.SharedEntityManagerFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Typed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor for code under test which runs tasks on worker threads.
+ * <p>
+ * The converted EJBs and the {@link EntityManagerProducer} are request scoped, so a plain worker thread has no active
+ * request context, or it would share the non thread-safe entity manager of the submitting thread. This executor runs
+ * every task in its own request context instead: request scoped bean references, including the ones created on the
+ * submitting thread, resolve to new instances with their own entity manager, and every business method call starts
+ * its own transaction on the worker thread. If the submitting thread has used its entity manager factory already, it is
+ * shared with the tasks (see {@link SharedEntityManagerFactory}), so they work on the same database, and it is only
+ * closed once the tasks have completed. Since the tasks commit their own transactions, they don't see uncommitted
+ * changes of the submitting transaction.
+ * <p>
+ * Inject it into the beans or get it with <code>getBean(ManagedExecutor.class)</code>. The number of threads is given by
+ * the system property <code>beantest.executor.threads</code> (default: the number of processors). The threads are
+ * stopped when the container shuts down.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@ApplicationScoped
+@Typed(ManagedExecutor.class)
+public class ManagedExecutor extends AbstractExecutorService {
+
+    /**
+     * System property for the number of threads.
+     */
+    public static final String THREADS_PROPERTY = "beantest.executor.threads";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ManagedExecutor.class);
+
+    private static final AtomicInteger EXECUTOR_NUMBER = new AtomicInteger();
+
+    private ExecutorService workers;
+
+    /**
+     * Returns the worker threads, which are started on demand.
+     */
+    private synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            final int executorNumber = EXECUTOR_NUMBER.incrementAndGet();
+            workers = Executors.newFixedThreadPool(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                    new ThreadFactory() {
+
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "bean-test-executor-" + executorNumber + "-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return workers;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        getWorkers().execute(ContextualTask.of(command));
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Stops the worker threads. The returned tasks no longer keep the entity manager factory of their submitting thread
+     * open.
+     */
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        if (workers == null) {
+            return Collections.<Runnable> emptyList();
+        }
+        List<Runnable> pendingTasks = workers.shutdownNow();
+        for (Runnable pendingTask : pendingTasks) {
+            ((ContextualTask) pendingTask).cancel();
+        }
+        return pendingTasks;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return workers != null && workers.isShutdown();
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return workers != null && workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        ExecutorService currentWorkers;
+        synchronized (this) {
+            currentWorkers = workers;
+        }
+        return currentWorkers == null || currentWorkers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Stops the worker threads when the container shuts down. Running tasks are interrupted.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (workers != null) {
+            List<Runnable> pendingTasks = shutdownNow();
+            if (!pendingTasks.isEmpty()) {
+                LOGGER.warn("{} tasks were not executed before the container shut down", pendingTasks.size());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.concurrent;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the event parameter of an asynchronous observer method, like <code>javax.enterprise.event.ObservesAsync</code>
+ * of CDI 2.0.
+ * <p>
+ * The events are fired as usual, with <code>Event.fire()</code> or <code>BeanManager.fireEvent()</code>. The synchronous
+ * observers are notified on the firing thread, while the asynchronous ones are notified by the {@link AsyncEvents}
+ * threads, every notification in its own request context. The qualifiers of the event parameter narrow the observed
+ * events. The observer method must not be private and must not have other parameters.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ObservesAsync {
+
+}
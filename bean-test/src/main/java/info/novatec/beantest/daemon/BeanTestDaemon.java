@@ -0,0 +1,269 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.daemon;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.extension.BeanTestExtension;
+import info.novatec.beantest.producers.EntityManagerFactoryCache;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.transactions.TransactionMetrics;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-lived process that keeps a booted CDI container (and its entity manager factory) warm between test runs.
+ * <p>
+ * The daemon listens on a local socket for test class names sent by {@link BeanTestDaemonClient}. The test and bean
+ * classes are loaded from the class directories given on the command line (for example <i>target/classes</i> and
+ * <i>target/test-classes</i>). These directories must not be part of the daemon's own class path.
+ * <p>
+ * Before every run the daemon compares the content hashes of the class directories with those of the previous run:
+ * <ul>
+ * <li>Nothing changed: the class loader and the booted container are reused.
+ * <li>Only bean or test classes changed: the container is rebooted with the changed classes, which are loaded by a new
+ * class loader. The persistent classes and the cached entity manager factories are kept. The caches referring to the
+ * previous classes (for example the {@link TransactionMetrics}) are cleared, so the previous class loader can be
+ * garbage collected.
+ * <li>A persistent class, a class referenced by one or another resource (for example persistence.xml) changed: the
+ * entity manager factories are rebuilt as well.
+ * </ul>
+ * <p>
+ * Usage: <code>java -cp &lt;bean-test and its dependencies&gt; info.novatec.beantest.daemon.BeanTestDaemon
+ * target/classes target/test-classes</code>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class BeanTestDaemon {
+
+    /**
+     * System property to set the port of the daemon.
+     */
+    public static final String PORT_PROPERTY = "beantest.daemon.port";
+
+    public static final int DEFAULT_PORT = 9123;
+
+    static final String END_OF_REQUEST = "";
+
+    static final String END_OF_RESPONSE = "END";
+
+    static final String RESULT_PREFIX = "RESULT";
+
+    static final String SHUTDOWN_COMMAND = "SHUTDOWN";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BeanTestDaemon.class);
+
+    private final int port;
+
+    private final List<File> classDirectories;
+
+    private EntityClassLoader entityClassLoader;
+
+    private URLClassLoader classLoader;
+
+    private ClassDirectorySnapshot snapshot;
+
+    private boolean running = true;
+
+    public BeanTestDaemon(int port, List<File> classDirectories) {
+        this.port = port;
+        this.classDirectories = classDirectories;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<File> classDirectories = new ArrayList<File>();
+        for (String arg : args) {
+            classDirectories.add(new File(arg));
+        }
+        new BeanTestDaemon(getPort(), classDirectories).run();
+    }
+
+    static int getPort() {
+        return Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+    }
+
+    /**
+     * Handles requests until a shutdown command is received.
+     *
+     * @throws IOException
+     *             if the server socket cannot be opened.
+     */
+    public void run() throws IOException {
+        boolean entityManagerFactoryCacheEnabled = EntityManagerFactoryCache.isEnabled();
+        BeanProviderHelper.getInstance().setContainerReuse(true);
+        EntityManagerFactoryCache.setEnabled(true);
+        ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getByName(null));
+        LOGGER.info("BeanTest daemon listening on port {}", port);
+        try {
+            while (running) {
+                Socket socket = serverSocket.accept();
+                try {
+                    handle(socket);
+                } catch (IOException e) {
+                    LOGGER.warn("Error when handling request", e);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Error when handling request", e);
+                } catch (LinkageError e) {
+                    LOGGER.warn("Error when handling request", e);
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            serverSocket.close();
+            BeanProviderHelper.getInstance().setContainerReuse(false);
+            shutdownContainer();
+            EntityManagerFactoryCache.clear();
+            EntityManagerFactoryCache.setEnabled(entityManagerFactoryCacheEnabled);
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+        List<String> classNames = new ArrayList<String>();
+        String line = reader.readLine();
+        while (line != null && !END_OF_REQUEST.equals(line)) {
+            if (SHUTDOWN_COMMAND.equals(line)) {
+                running = false;
+                writer.println(END_OF_RESPONSE);
+                return;
+            }
+            classNames.add(line.trim());
+            line = reader.readLine();
+        }
+        runTests(classNames, writer);
+        writer.println(END_OF_RESPONSE);
+    }
+
+    private void runTests(List<String> classNames, PrintWriter writer) {
+        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            ClassLoader testClassLoader = getTestClassLoader();
+            Thread.currentThread().setContextClassLoader(testClassLoader);
+            Class<?>[] testClasses = new Class<?>[classNames.size()];
+            for (int i = 0; i < testClasses.length; i++) {
+                testClasses[i] = Class.forName(classNames.get(i), true, testClassLoader);
+            }
+            Result result = new JUnitCore().run(testClasses);
+            for (Failure failure : result.getFailures()) {
+                writer.println(failure.getTestHeader());
+                writer.println(failure.getTrace());
+            }
+            writer.println(String.format("%s run=%d failures=%d ignored=%d time=%dms", RESULT_PREFIX, result.getRunCount(),
+                    result.getFailureCount(), result.getIgnoreCount(), result.getRunTime()));
+        } catch (ClassNotFoundException e) {
+            writer.println(String.format("%s error=class not found: %s", RESULT_PREFIX, e.getMessage()));
+        } catch (IOException e) {
+            writer.println(String.format("%s error=%s", RESULT_PREFIX, e.getMessage()));
+        } catch (RuntimeException e) {
+            reportError(e, writer);
+        } catch (LinkageError e) {
+            // For example a static initializer that failed, or a class which refers to a missing one.
+            reportError(e, writer);
+        } finally {
+            Thread.currentThread().setContextClassLoader(previousClassLoader);
+        }
+    }
+
+    private static void reportError(Throwable error, PrintWriter writer) {
+        LOGGER.warn("Error when running tests", error);
+        writer.println(String.format("%s error=%s", RESULT_PREFIX, error));
+    }
+
+    /**
+     * Returns the class loader for the class directories. New class loaders are created (and the running container is
+     * shut down) if the content of the class directories has changed since the last run.
+     */
+    private ClassLoader getTestClassLoader() throws IOException {
+        ClassDirectorySnapshot currentSnapshot = ClassDirectorySnapshot.of(classDirectories);
+        if (snapshot == null) {
+            createClassLoaders(currentSnapshot, true);
+            return classLoader;
+        }
+        Set<String> changedPaths = currentSnapshot.getChangedPaths(snapshot);
+        if (!changedPaths.isEmpty()) {
+            boolean reloadPersistentClasses = currentSnapshot.affectsPersistenceUnits(snapshot, changedPaths);
+            LOGGER.info("{} files have changed, the container will be rebuilt (entity manager factories: {})",
+                    changedPaths.size(), reloadPersistentClasses ? "rebuilt" : "kept");
+            shutdownContainer();
+            if (reloadPersistentClasses) {
+                EntityManagerFactoryCache.clear();
+            }
+            releaseClassLoaders();
+            createClassLoaders(currentSnapshot, reloadPersistentClasses);
+        }
+        return classLoader;
+    }
+
+    /**
+     * Clears the static caches of Bean Testing whose keys refer to the classes of the current class loaders, so that
+     * the replaced class loaders can be garbage collected. The transaction metrics start over as well.
+     */
+    private static void releaseClassLoaders() {
+        TransactionMetrics.reset();
+        BeanTestExtension.clearBeanGraphs();
+        EntityManagerProducer.clearReachableEntities();
+    }
+
+    private void createClassLoaders(ClassDirectorySnapshot currentSnapshot, boolean reloadPersistentClasses)
+            throws MalformedURLException {
+        URL[] urls = new URL[classDirectories.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = classDirectories.get(i).toURI().toURL();
+        }
+        if (reloadPersistentClasses) {
+            entityClassLoader = new EntityClassLoader(urls, currentSnapshot.getPersistentClassClosure(),
+                    BeanTestDaemon.class.getClassLoader());
+        }
+        classLoader = new URLClassLoader(urls, entityClassLoader);
+        snapshot = currentSnapshot;
+    }
+
+    /**
+     * Shuts down the container with the class loader of the test classes as context class loader, so that its resources
+     * can still be resolved.
+     */
+    private void shutdownContainer() {
+        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader != null) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+        }
+        try {
+            BeanProviderHelper.getInstance().shutdown();
+        } finally {
+            Thread.currentThread().setContextClassLoader(previousClassLoader);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Thin client that sends test class names to a running {@link BeanTestDaemon} and prints the results.
+ * <p>
+ * Usage: <code>java -cp bean-test.jar info.novatec.beantest.daemon.BeanTestDaemonClient my.TestClass [my.OtherTestClass...]</code><br>
+ * Pass <code>SHUTDOWN</code> instead of test class names to stop the daemon. The exit code is <code>0</code> if all
+ * tests passed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class BeanTestDaemonClient {
+
+    private BeanTestDaemonClient() {
+        // Empty on purpose.
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.exit(send(BeanTestDaemon.getPort(), args, System.out) ? 0 : 1);
+    }
+
+    /**
+     * Sends the given test class names, or the shutdown command, to the daemon and prints its response.
+     *
+     * @param port
+     *            the port of the daemon.
+     * @param args
+     *            the test class names, or <code>SHUTDOWN</code>.
+     * @param out
+     *            the stream the response is printed to.
+     * @return <code>true</code> if all tests passed or the daemon was shut down.
+     * @throws IOException
+     *             if the daemon cannot be reached.
+     */
+    static boolean send(int port, String[] args, PrintStream out) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        boolean successful = false;
+        try {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+            for (String className : args) {
+                writer.println(className);
+            }
+            writer.println(BeanTestDaemon.END_OF_REQUEST);
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String line = reader.readLine();
+            while (line != null && !BeanTestDaemon.END_OF_RESPONSE.equals(line)) {
+                out.println(line);
+                if (line.startsWith(BeanTestDaemon.RESULT_PREFIX)) {
+                    successful = line.contains(" failures=0 ");
+                }
+                line = reader.readLine();
+            }
+            if (args.length == 1 && BeanTestDaemon.SHUTDOWN_COMMAND.equals(args[0])) {
+                successful = true;
+            }
+        } finally {
+            socket.close();
+        }
+        return successful;
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.daemon;
+
+import info.novatec.beantest.extension.ClassFiles;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Content hashes of all the files in a set of class directories.
+ * <p>
+ * The snapshot also knows which classes are persistent (i.e. annotated with <code>@Entity</code>,
+ * <code>@Embeddable</code> or <code>@MappedSuperclass</code>), and which classes of the class directories they
+ * reference, directly or transitively (for example enums, attribute converters and value types). Both are detected by
+ * reading the constant pools of the class files, so the classes don't have to be loaded.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+final class ClassDirectorySnapshot {
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private static final List<String> PERSISTENCE_ANNOTATION_DESCRIPTORS = Arrays.asList("Ljavax/persistence/Entity;",
+            "Ljavax/persistence/Embeddable;", "Ljavax/persistence/MappedSuperclass;");
+
+    /**
+     * File path relative to its class directory -> CRC32 of its content.
+     */
+    private final Map<String, Long> hashes = new HashMap<String, Long>();
+
+    private final Set<String> persistentClassNames = new HashSet<String>();
+
+    /**
+     * Class name -> names of the classes it may reference, including classes outside of the class directories.
+     */
+    private final Map<String, Set<String>> references = new HashMap<String, Set<String>>();
+
+    private final Set<String> persistentClassClosure = new HashSet<String>();
+
+    private ClassDirectorySnapshot() {
+    }
+
+    /**
+     * Reads all the files of the given class directories.
+     *
+     * @param classDirectories
+     *            the class directories.
+     * @return the snapshot of the class directories.
+     * @throws IOException
+     *             if a file cannot be read.
+     */
+    static ClassDirectorySnapshot of(List<File> classDirectories) throws IOException {
+        ClassDirectorySnapshot snapshot = new ClassDirectorySnapshot();
+        for (File classDirectory : classDirectories) {
+            snapshot.add(classDirectory, "");
+        }
+        snapshot.closePersistentClasses();
+        return snapshot;
+    }
+
+    private void add(File file, String relativePath) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                add(child, relativePath.isEmpty() ? child.getName() : relativePath + '/' + child.getName());
+            }
+            return;
+        }
+        byte[] content = read(file);
+        CRC32 checksum = new CRC32();
+        checksum.update(content);
+        hashes.put(relativePath, checksum.getValue());
+        if (relativePath.endsWith(CLASS_FILE_EXTENSION)) {
+            String className = toClassName(relativePath);
+            try {
+                if (!Collections.disjoint(ClassFiles.getConstantPoolStrings(content), PERSISTENCE_ANNOTATION_DESCRIPTORS)) {
+                    persistentClassNames.add(className);
+                }
+                references.put(className, ClassFiles.getReferencedClassNames(content));
+            } catch (IOException e) {
+                // Not a valid class file (for example truncated while it is being compiled), its hash still counts.
+                references.put(className, Collections.<String>emptySet());
+            }
+        }
+    }
+
+    /**
+     * Adds the classes of the class directories which are referenced by the persistent classes, directly or
+     * transitively.
+     */
+    private void closePersistentClasses() {
+        Deque<String> pending = new ArrayDeque<String>(persistentClassNames);
+        while (!pending.isEmpty()) {
+            String className = pending.pop();
+            if (persistentClassClosure.add(className)) {
+                for (String referencedClassName : references.get(className)) {
+                    if (references.containsKey(referencedClassName) && !persistentClassClosure.contains(referencedClassName)) {
+                        pending.push(referencedClassName);
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int read = 0;
+            while (offset < content.length && read >= 0) {
+                read = input.read(content, offset, content.length - offset);
+                offset += Math.max(read, 0);
+            }
+        } finally {
+            input.close();
+        }
+        return content;
+    }
+
+    private static String toClassName(String classFilePath) {
+        return classFilePath.substring(0, classFilePath.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+    }
+
+    Set<String> getPersistentClassNames() {
+        return Collections.unmodifiableSet(persistentClassNames);
+    }
+
+    /**
+     * Returns the persistent classes and the classes of the class directories they reference, directly or transitively.
+     *
+     * @return the class names.
+     */
+    Set<String> getPersistentClassClosure() {
+        return Collections.unmodifiableSet(persistentClassClosure);
+    }
+
+    /**
+     * Returns the paths of the files that were added, removed or modified compared to the given older snapshot.
+     *
+     * @param previous
+     *            the older snapshot.
+     * @return the changed paths.
+     */
+    Set<String> getChangedPaths(ClassDirectorySnapshot previous) {
+        Set<String> changedPaths = new HashSet<String>();
+        for (Map.Entry<String, Long> entry : hashes.entrySet()) {
+            if (!entry.getValue().equals(previous.hashes.get(entry.getKey()))) {
+                changedPaths.add(entry.getKey());
+            }
+        }
+        for (String path : previous.hashes.keySet()) {
+            if (!hashes.containsKey(path)) {
+                changedPaths.add(path);
+            }
+        }
+        return changedPaths;
+    }
+
+    /**
+     * Returns <code>true</code> if one of the changed paths is a persistent class or a class referenced by one (in this
+     * or the older snapshot) or not a class at all (for example persistence.xml or beans.xml).
+     *
+     * @param previous
+     *            the older snapshot.
+     * @param changedPaths
+     *            the paths that changed since the older snapshot.
+     * @return <code>true</code> if the entity manager factories must be rebuilt.
+     */
+    boolean affectsPersistenceUnits(ClassDirectorySnapshot previous, Set<String> changedPaths) {
+        for (String path : changedPaths) {
+            if (!path.endsWith(CLASS_FILE_EXTENSION)) {
+                return true;
+            }
+            String className = toClassName(path);
+            if (persistentClassClosure.contains(className) || previous.persistentClassClosure.contains(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.daemon;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Set;
+
+/**
+ * Class loader that only defines the persistent classes of the class directories, along with the classes of the class
+ * directories they reference (see {@link ClassDirectorySnapshot#getPersistentClassClosure()}).
+ * <p>
+ * It is the parent of the class loader of the remaining (bean and test) classes. Thus, the persistent classes, and the
+ * cached entity manager factories built for them, survive a redeployment of the beans. Resources are not exposed, so
+ * that the bean archives of the class directories are only discovered once, by the child class loader.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+class EntityClassLoader extends URLClassLoader {
+
+    private final Set<String> classNames;
+
+    EntityClassLoader(URL[] classDirectories, Set<String> classNames, ClassLoader parent) {
+        super(classDirectories, parent);
+        this.classNames = classNames;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (!classNames.contains(name)) {
+            throw new ClassNotFoundException(name);
+        }
+        return super.findClass(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        return null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) {
+        return Collections.enumeration(Collections.<URL>emptyList());
+    }
+
+}
@@ -16,10 +16,14 @@
 package info.novatec.beantest.extension;
 
 import info.novatec.beantest.transactions.Transactional;
+import java.util.Collections;
+import javax.annotation.Priority;
 import javax.ejb.Singleton;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.RequestScoped;
+import javax.enterprise.inject.Any;
 import javax.inject.Inject;
+import javax.interceptor.Interceptor;
 import org.apache.deltaspike.core.util.metadata.AnnotationInstanceProvider;
 
 /**
@@ -38,5 +42,8 @@ public final class AnnotationInstances {
     public static final Inject INJECT = AnnotationInstanceProvider.of(Inject.class);
     public static final Singleton SINGLETON = AnnotationInstanceProvider.of(Singleton.class);
     public static final ApplicationScoped APPLICATION_SCOPED = AnnotationInstanceProvider.of(ApplicationScoped.class);
+    public static final Any ANY = AnnotationInstanceProvider.of(Any.class);
+    public static final Priority APPLICATION_PRIORITY = AnnotationInstanceProvider.of(Priority.class,
+            Collections.singletonMap("value", Interceptor.Priority.APPLICATION));
     
 }
@@ -0,0 +1,396 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.extension;
+
+import info.novatec.beantest.concurrent.ObservesAsync;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import javax.annotation.Resource;
+import javax.decorator.Decorator;
+import javax.ejb.EJB;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Disposes;
+import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.spi.Extension;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The beans reachable from the injection points of a test class.
+ * <p>
+ * The roots of the graph are the classes the test class refers to, i.e. the classes passed to <code>getBean</code> and
+ * the types of its injected fields, as well as the beans that are always deployed: interceptors, decorators,
+ * extensions, beans declaring producers or (asynchronous) observers (events reach them without an injection point)
+ * and the classes of Bean Testing, DeltaSpike and Weld. The graph is closed over the types of the injection points (<code>@Inject</code>,
+ * <code>@EJB</code> and <code>@Resource</code> fields, constructors and initializers as well as the parameters of
+ * producer, disposer and observer methods): every class of a bean archive assignable to one of these types is
+ * reachable. Programmatic lookups, for example via <code>BeanProvider</code>, are not followed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+final class BeanGraph {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BeanGraph.class);
+
+    private static final String BEANS_XML = "META-INF/beans.xml";
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private static final String[] CONTAINER_PACKAGES = {"org.apache.deltaspike.", "org.jboss.weld."};
+
+    @SuppressWarnings("unchecked")
+    private static final List<Class<? extends Annotation>> INJECTION_ANNOTATIONS = Collections.unmodifiableList(
+            Arrays.<Class<? extends Annotation>> asList(Inject.class, EJB.class, Resource.class));
+
+    private static final ConcurrentMap<Class<?>, BeanGraph> GRAPHS = new ConcurrentHashMap<Class<?>, BeanGraph>();
+
+    private final Set<String> beanArchiveClassNames;
+
+    private final Set<String> reachableClassNames;
+
+    private BeanGraph(Set<String> beanArchiveClassNames, Set<String> reachableClassNames) {
+        this.beanArchiveClassNames = beanArchiveClassNames;
+        this.reachableClassNames = reachableClassNames;
+    }
+
+    /**
+     * Returns the bean graph of the given test class. The graph is cached, since it only changes with the classes.
+     *
+     * @param testClass
+     *            the test class.
+     * @return the bean graph.
+     */
+    static BeanGraph of(Class<?> testClass) {
+        BeanGraph graph = GRAPHS.get(testClass);
+        if (graph == null) {
+            graph = computeOnce(testClass);
+        }
+        return graph;
+    }
+
+    /**
+     * Removes the cached bean graphs, which refer to their test classes.
+     */
+    static void clear() {
+        GRAPHS.clear();
+    }
+
+    /**
+     * Computes the bean graph of the given test class, unless another thread did it in the meantime. The annotated
+     * types are processed concurrently during the bootstrap, but the graph must only be computed once.
+     */
+    private static synchronized BeanGraph computeOnce(Class<?> testClass) {
+        BeanGraph graph = GRAPHS.get(testClass);
+        if (graph == null) {
+            long start = System.nanoTime();
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            List<Class<?>> beanArchiveClasses = getBeanArchiveClasses(classLoader != null ? classLoader : BeanGraph.class.getClassLoader());
+            graph = compute(testClass, beanArchiveClasses);
+            GRAPHS.put(testClass, graph);
+            LOGGER.info("{} of {} classes of the bean archives are reachable from {} ({} ms)", graph.reachableClassNames.size(),
+                    graph.beanArchiveClassNames.size(), testClass.getName(), (System.nanoTime() - start) / 1000000);
+        }
+        return graph;
+    }
+
+    /**
+     * Computes the bean graph of the given test class.
+     *
+     * @param testClass
+     *            the test class.
+     * @param beanArchiveClasses
+     *            the classes of the bean archives.
+     * @return the bean graph.
+     */
+    static BeanGraph compute(Class<?> testClass, Collection<Class<?>> beanArchiveClasses) {
+        Map<String, Class<?>> candidates = new HashMap<String, Class<?>>();
+        for (Class<?> candidate : beanArchiveClasses) {
+            candidates.put(candidate.getName(), candidate);
+        }
+
+        LinkedList<Class<?>> queue = new LinkedList<Class<?>>();
+        for (Class<?> type = testClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (String className : ClassFiles.getReferencedClassNames(type)) {
+                Class<?> candidate = candidates.get(className);
+                if (candidate != null) {
+                    queue.add(candidate);
+                }
+            }
+        }
+        for (Class<?> candidate : beanArchiveClasses) {
+            if (isAlwaysDeployed(candidate)) {
+                queue.add(candidate);
+            }
+        }
+
+        Set<String> reachable = new LinkedHashSet<String>();
+        Map<Class<?>, List<Class<?>>> assignableCandidates = new HashMap<Class<?>, List<Class<?>>>();
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.removeFirst();
+            if (!reachable.add(type.getName())) {
+                continue;
+            }
+            for (Class<?> injectedType : getInjectedTypes(type)) {
+                List<Class<?>> assignable = assignableCandidates.get(injectedType);
+                if (assignable == null) {
+                    assignable = new ArrayList<Class<?>>();
+                    for (Class<?> candidate : beanArchiveClasses) {
+                        if (injectedType.isAssignableFrom(candidate)) {
+                            assignable.add(candidate);
+                        }
+                    }
+                    assignableCandidates.put(injectedType, assignable);
+                }
+                queue.addAll(assignable);
+            }
+        }
+        return new BeanGraph(Collections.unmodifiableSet(candidates.keySet()), Collections.unmodifiableSet(reachable));
+    }
+
+    /**
+     * Returns <code>false</code> if the given class belongs to a scanned bean archive but is not reachable. Classes the
+     * graph doesn't know, for example from archives which could not be scanned, are considered reachable.
+     *
+     * @param type
+     *            the class of an annotated type.
+     * @return <code>true</code> if the class must be deployed.
+     */
+    boolean isReachable(Class<?> type) {
+        return !beanArchiveClassNames.contains(type.getName()) || reachableClassNames.contains(type.getName());
+    }
+
+    Set<String> getReachableClassNames() {
+        return reachableClassNames;
+    }
+
+    private static boolean isAlwaysDeployed(Class<?> type) {
+        if (isContainerClass(type) || Extension.class.isAssignableFrom(type)) {
+            return true;
+        }
+        try {
+            if (type.isAnnotationPresent(Interceptor.class) || type.isAnnotationPresent(Decorator.class)) {
+                return true;
+            }
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Produces.class)) {
+                        return true;
+                    }
+                }
+                for (Method method : current.getDeclaredMethods()) {
+                    if (method.isAnnotationPresent(Produces.class) || hasParameterAnnotation(method.getParameterAnnotations(), Observes.class)
+                            || hasParameterAnnotation(method.getParameterAnnotations(), ObservesAsync.class)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (LinkageError e) {
+            // Weld reports the class, it must not disappear because it cannot be analyzed.
+            LOGGER.debug("Class {} could not be analyzed", type.getName(), e);
+            return true;
+        }
+    }
+
+    private static boolean isContainerClass(Class<?> type) {
+        for (String containerPackage : CONTAINER_PACKAGES) {
+            if (type.getName().startsWith(containerPackage)) {
+                return true;
+            }
+        }
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        CodeSource beanTestCodeSource = BeanGraph.class.getProtectionDomain().getCodeSource();
+        return codeSource != null && beanTestCodeSource != null && codeSource.getLocation() != null
+                && codeSource.getLocation().equals(beanTestCodeSource.getLocation());
+    }
+
+    /**
+     * Returns the types of the injection points of the given class and its super classes, including the type arguments
+     * (e.g. of <code>Instance&lt;T&gt;</code>), as well as the parameter types of its producer, disposer and observer
+     * methods.
+     */
+    private static Set<Class<?>> getInjectedTypes(Class<?> type) {
+        Set<Class<?>> injectedTypes = new LinkedHashSet<Class<?>>();
+        try {
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                if (constructor.isAnnotationPresent(Inject.class)) {
+                    addTypes(constructor.getGenericParameterTypes(), injectedTypes);
+                }
+            }
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (isInjectionPoint(field.getAnnotations())) {
+                        addTypes(new Type[] {field.getGenericType()}, injectedTypes);
+                    }
+                }
+                for (Method method : current.getDeclaredMethods()) {
+                    if (isInjectionPoint(method.getAnnotations()) || method.isAnnotationPresent(Produces.class)
+                            || hasParameterAnnotation(method.getParameterAnnotations(), Disposes.class)
+                            || hasParameterAnnotation(method.getParameterAnnotations(), Observes.class)
+                            || hasParameterAnnotation(method.getParameterAnnotations(), ObservesAsync.class)) {
+                        addTypes(method.getGenericParameterTypes(), injectedTypes);
+                    }
+                }
+            }
+        } catch (LinkageError e) {
+            LOGGER.debug("Injection points of {} could not be analyzed", type.getName(), e);
+        }
+        injectedTypes.remove(Object.class);
+        return injectedTypes;
+    }
+
+    private static boolean isInjectionPoint(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (INJECTION_ANNOTATIONS.contains(annotation.annotationType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasParameterAnnotation(Annotation[][] parameterAnnotations, Class<? extends Annotation> annotationType) {
+        for (Annotation[] annotations : parameterAnnotations) {
+            for (Annotation annotation : annotations) {
+                if (annotation.annotationType() == annotationType) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void addTypes(Type[] types, Set<Class<?>> classes) {
+        for (Type type : types) {
+            if (type instanceof Class) {
+                Class<?> clazz = (Class<?>) type;
+                while (clazz.isArray()) {
+                    clazz = clazz.getComponentType();
+                }
+                if (!clazz.isPrimitive()) {
+                    classes.add(clazz);
+                }
+            } else if (type instanceof ParameterizedType) {
+                addTypes(new Type[] {((ParameterizedType) type).getRawType()}, classes);
+                addTypes(((ParameterizedType) type).getActualTypeArguments(), classes);
+            } else if (type instanceof GenericArrayType) {
+                addTypes(new Type[] {((GenericArrayType) type).getGenericComponentType()}, classes);
+            } else if (type instanceof WildcardType) {
+                addTypes(((WildcardType) type).getUpperBounds(), classes);
+            }
+        }
+    }
+
+    /**
+     * Returns the classes of the bean archives, i.e. of the class directories and JARs containing a
+     * <code>META-INF/beans.xml</code>. Classes which cannot be loaded are left out.
+     */
+    private static List<Class<?>> getBeanArchiveClasses(ClassLoader classLoader) {
+        Set<String> classNames = new LinkedHashSet<String>();
+        try {
+            Enumeration<URL> beansXmls = classLoader.getResources(BEANS_XML);
+            while (beansXmls.hasMoreElements()) {
+                addClassNames(beansXmls.nextElement(), classNames);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Bean archives could not be scanned", e);
+        }
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException e) {
+                LOGGER.debug("Class {} of a bean archive not found", className);
+            } catch (LinkageError e) {
+                LOGGER.debug("Class {} of a bean archive could not be loaded", className, e);
+            }
+        }
+        return classes;
+    }
+
+    private static void addClassNames(URL beansXml, Set<String> classNames) throws IOException {
+        if ("file".equals(beansXml.getProtocol())) {
+            try {
+                File root = new File(beansXml.toURI()).getParentFile().getParentFile();
+                addClassNames(root, "", classNames);
+            } catch (URISyntaxException e) {
+                LOGGER.warn("Bean archive {} could not be scanned", beansXml, e);
+            }
+        } else if ("jar".equals(beansXml.getProtocol())) {
+            JarURLConnection connection = (JarURLConnection) beansXml.openConnection();
+            connection.setUseCaches(false);
+            JarFile jarFile = connection.getJarFile();
+            try {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.endsWith(CLASS_FILE_EXTENSION)) {
+                        classNames.add(toClassName(name));
+                    }
+                }
+            } finally {
+                jarFile.close();
+            }
+        } else {
+            LOGGER.warn("Bean archive {} could not be scanned, its classes are always deployed", beansXml);
+        }
+    }
+
+    private static void addClassNames(File file, String relativePath, Set<String> classNames) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                addClassNames(child, relativePath.isEmpty() ? child.getName() : relativePath + '/' + child.getName(), classNames);
+            }
+        } else if (relativePath.endsWith(CLASS_FILE_EXTENSION)) {
+            classNames.add(toClassName(relativePath));
+        }
+    }
+
+    private static String toClassName(String classFilePath) {
+        return classFilePath.substring(0, classFilePath.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+    }
+
+}
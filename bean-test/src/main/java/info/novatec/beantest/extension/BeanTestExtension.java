@@ -0,0 +1,314 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.extension;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.concurrent.AsyncObserverMethod;
+import info.novatec.beantest.concurrent.ObservesAsync;
+import info.novatec.beantest.producers.EntityManagerFactoryPrebuild;
+import info.novatec.beantest.startup.ConcurrentBootstrap;
+import info.novatec.beantest.transactions.TransactionContext;
+import info.novatec.beantest.transactions.Transactional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.ejb.Singleton;
+import javax.ejb.Stateless;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Alternative;
+import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AnnotatedType;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeBeanDiscovery;
+import javax.enterprise.inject.spi.BeforeShutdown;
+import javax.enterprise.inject.spi.DefinitionException;
+import javax.enterprise.inject.spi.Extension;
+import javax.enterprise.inject.spi.ObserverMethod;
+import javax.enterprise.inject.spi.ProcessAnnotatedType;
+import javax.enterprise.inject.spi.ProcessManagedBean;
+import javax.enterprise.inject.spi.WithAnnotations;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import javax.persistence.PersistenceContext;
+import org.apache.deltaspike.core.util.metadata.builder.AnnotatedTypeBuilder;
+
+/**
+ * Extension to modify bean meta data.
+ * <p>
+ * This extension adds and changes the bean meta data in order to convert EJB injection points into CDI injection points.
+ * Therefore the extension changes the meta data of Beans annotated with {@link EJB}<br>
+ * It also changes injection points in interceptors.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class BeanTestExtension implements Extension {
+
+    private volatile Class<?> reachableBeansRoot;
+
+    private final Set<Class<?>> persistenceContextUsers = Collections.synchronizedSet(new LinkedHashSet<Class<?>>());
+
+    private final Set<Class<?>> prunedTypes = Collections.synchronizedSet(new LinkedHashSet<Class<?>>());
+
+    private final List<ObserverMethod<?>> asyncObserverMethods = Collections.synchronizedList(new ArrayList<ObserverMethod<?>>());
+
+    private final List<Throwable> definitionErrors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    /**
+     * Replaces the meta data of the {@link ProcessAnnotatedType}.
+     * 
+     * <p>
+     * The ProcessAnnotatedType's meta data will be replaced, if the annotated type has one of the following annotations:
+     * <ul>
+     * <li> {@link Stateless}
+     * <li> {@link MessageDriven}
+     * <li> {@link Interceptor}
+     * <li> {@link Singleton}
+     * </ul>
+     *
+     * @param <X> the type of the ProcessAnnotatedType
+     * @param pat the annotated type representing the class being processed
+     */
+    public <X> void processInjectionTarget(@Observes @WithAnnotations({Stateless.class, MessageDriven.class, Interceptor.class, Singleton.class}) ProcessAnnotatedType<X> pat) {
+        if (pat.getAnnotatedType().isAnnotationPresent(Stateless.class) || pat.getAnnotatedType().isAnnotationPresent(MessageDriven.class)) {
+            modifiyAnnotatedTypeMetadata(pat);
+        } else if (pat.getAnnotatedType().isAnnotationPresent(Interceptor.class)) {
+            processInterceptorDependencies(pat);
+        } else if(pat.getAnnotatedType().isAnnotationPresent(Singleton.class)) {
+            addApplicationScopedAndTransactionalToSingleton(pat);
+        }
+    }
+    
+    /**
+     * Adds {@link Transactional} and {@link ApplicationScoped} to the given annotated type and converts
+     * its EJB injection points into CDI injection points (i.e. it adds the {@link Inject})
+     * @param <X> the type of the annotated type.
+     * @param pat the process annotated type.
+     */
+    private <X> void addApplicationScopedAndTransactionalToSingleton(ProcessAnnotatedType<X> pat) {
+        AnnotatedType at = pat.getAnnotatedType();
+        
+        AnnotatedTypeBuilder<X> builder = new AnnotatedTypeBuilder<X>().readFromType(at);
+        
+        builder.addToClass(AnnotationInstances.APPLICATION_SCOPED).addToClass(AnnotationInstances.TRANSACTIONAL);
+        
+        InjectionHelper.addInjectAnnotation(at, builder);
+        
+        pat.setAnnotatedType(builder.create());
+    }
+
+    /**
+     * Adds {@link Transactional} and {@link RequestScoped} to the given annotated type and converts
+     * its EJB injection points into CDI injection points (i.e. it adds the {@link Inject})
+     * @param <X> the type of the annotated type
+     * @param pat the process annotated type.
+     */
+    private <X> void modifiyAnnotatedTypeMetadata(ProcessAnnotatedType<X> pat) {
+        AnnotatedType at = pat.getAnnotatedType();
+        
+        AnnotatedTypeBuilder<X> builder = new AnnotatedTypeBuilder<X>().readFromType(at);
+        builder.addToClass(AnnotationInstances.TRANSACTIONAL).addToClass(AnnotationInstances.REQUEST_SCOPED);
+
+        InjectionHelper.addInjectAnnotation(at, builder);
+        //Set the wrapper instead the actual annotated type
+        pat.setAnnotatedType(builder.create());
+
+    }
+    
+    /**
+     * Enables the alternative represented by the given annotated type, if the current container configuration declares it.
+     * <p>
+     * The alternative is enabled for the whole application by adding {@link javax.annotation.Priority} to it.
+     *
+     * @param <X> the type of the ProcessAnnotatedType
+     * @param pat the annotated type representing the alternative being processed
+     * @see info.novatec.beantest.api.BeanTestConfiguration#alternatives()
+     */
+    public <X> void enableConfiguredAlternative(@Observes @WithAnnotations(Alternative.class) ProcessAnnotatedType<X> pat) {
+        if (BeanProviderHelper.getInstance().getConfiguration().getAlternatives().contains(pat.getAnnotatedType().getJavaClass())) {
+            AnnotatedTypeBuilder<X> builder = new AnnotatedTypeBuilder<X>().readFromType(pat.getAnnotatedType());
+            builder.addToClass(AnnotationInstances.APPLICATION_PRIORITY);
+            pat.setAnnotatedType(builder.create());
+        }
+    }
+
+    /**
+     * Reads the test class whose reachable beans should be deployed from the current container configuration, once per
+     * deployment.
+     *
+     * @param beforeBeanDiscovery the event fired before the bean discovery.
+     * @see #pruneUnreachableBean(ProcessAnnotatedType)
+     */
+    public void readReachableBeansRoot(@Observes BeforeBeanDiscovery beforeBeanDiscovery) {
+        reachableBeansRoot = BeanProviderHelper.getInstance().getConfiguration().getReachableBeansRoot();
+    }
+
+    /**
+     * Vetoes the given annotated type, if the current container configuration only deploys the beans reachable from the
+     * test class and the type is not reachable.
+     * <p>
+     * Any type may be unreachable, so the observer cannot be restricted with {@link WithAnnotations}, and Weld warns
+     * that it receives the events of all annotated types (WELD-000411). Unless only the reachable beans are deployed,
+     * it returns right away.
+     *
+     * @param <X> the type of the ProcessAnnotatedType
+     * @param pat the annotated type representing the class being processed
+     * @see info.novatec.beantest.api.BeanTestConfiguration#reachableBeansOnly()
+     */
+    public <X> void pruneUnreachableBean(@Observes ProcessAnnotatedType<X> pat) {
+        Class<?> testClass = reachableBeansRoot;
+        if (testClass == null) {
+            return;
+        }
+        if (!BeanGraph.of(testClass).isReachable(pat.getAnnotatedType().getJavaClass())) {
+            pat.veto();
+            prunedTypes.add(pat.getAnnotatedType().getJavaClass());
+        }
+    }
+
+    /**
+     * Removes the cached bean graphs of the test classes deploying only their reachable beans. A process which loads
+     * the test classes again with a new class loader (for example the {@link info.novatec.beantest.daemon.BeanTestDaemon})
+     * must clear them, otherwise the graphs keep the previous class loaders alive.
+     */
+    public static void clearBeanGraphs() {
+        BeanGraph.clear();
+    }
+
+    /**
+     * Returns the classes which were vetoed because they are not reachable from the test class.
+     *
+     * @return the pruned classes.
+     */
+    public Set<Class<?>> getPrunedTypes() {
+        synchronized (prunedTypes) {
+            return new LinkedHashSet<Class<?>>(prunedTypes);
+        }
+    }
+
+    /**
+     * Collects the classes which use a persistence context, in order to determine the entities reachable from the beans.
+     *
+     * @param <X> the type of the ProcessAnnotatedType
+     * @param pat the annotated type representing the class being processed
+     */
+    public <X> void collectPersistenceContextUser(@Observes @WithAnnotations(PersistenceContext.class) ProcessAnnotatedType<X> pat) {
+        persistenceContextUsers.add(pat.getAnnotatedType().getJavaClass());
+    }
+
+    /**
+     * Returns the discovered classes with a {@link PersistenceContext} injection point, apart from the pruned ones.
+     *
+     * @return the classes using a persistence context.
+     */
+    public Set<Class<?>> getPersistenceContextUsers() {
+        Set<Class<?>> users;
+        synchronized (persistenceContextUsers) {
+            users = new LinkedHashSet<Class<?>>(persistenceContextUsers);
+        }
+        users.removeAll(getPrunedTypes());
+        return users;
+    }
+
+    /**
+     * Registers the {@link TransactionContext} for {@link info.novatec.beantest.transactions.TransactionScoped} beans.
+     *
+     * @param afterBeanDiscovery
+     *            the event fired after the bean discovery.
+     */
+    public void registerTransactionContext(@Observes AfterBeanDiscovery afterBeanDiscovery) {
+        afterBeanDiscovery.addContext(new TransactionContext());
+    }
+
+    /**
+     * Collects the observer methods of the given bean with an {@link ObservesAsync} event parameter.
+     *
+     * @param <X> the type of the bean
+     * @param pmb the managed bean being processed
+     * @param beanManager the bean manager
+     */
+    public <X> void collectAsyncObserverMethods(@Observes ProcessManagedBean<X> pmb, BeanManager beanManager) {
+        try {
+            asyncObserverMethods.addAll(AsyncObserverMethod.of(pmb.getBean(), pmb.getAnnotatedBeanClass(), beanManager));
+        } catch (DefinitionException e) {
+            definitionErrors.add(e);
+        }
+    }
+
+    /**
+     * Registers the collected {@link AsyncObserverMethod asynchronous observer methods}.
+     *
+     * @param afterBeanDiscovery
+     *            the event fired after the bean discovery.
+     */
+    public void registerAsyncObserverMethods(@Observes AfterBeanDiscovery afterBeanDiscovery) {
+        synchronized (definitionErrors) {
+            for (Throwable definitionError : definitionErrors) {
+                afterBeanDiscovery.addDefinitionError(definitionError);
+            }
+        }
+        synchronized (asyncObserverMethods) {
+            for (ObserverMethod<?> observerMethod : asyncObserverMethods) {
+                afterBeanDiscovery.addObserverMethod(observerMethod);
+            }
+        }
+    }
+
+    /**
+     * Starts building the entity manager factory in the background, so that it is built while the container validates
+     * the deployment.
+     *
+     * @param afterBeanDiscovery
+     *            the event fired after the bean discovery.
+     * @see ConcurrentBootstrap#isEntityManagerFactoryPrebuild()
+     */
+    public void prebuildEntityManagerFactory(@Observes AfterBeanDiscovery afterBeanDiscovery) {
+        if (ConcurrentBootstrap.isEntityManagerFactoryPrebuild()) {
+            EntityManagerFactoryPrebuild.start(getPersistenceContextUsers());
+        }
+    }
+
+    /**
+     * Closes the prebuilt entity manager factory, if no bean used it.
+     *
+     * @param beforeShutdown
+     *            the event fired before the container shuts down.
+     */
+    public void discardEntityManagerFactory(@Observes BeforeShutdown beforeShutdown) {
+        EntityManagerFactoryPrebuild.discard();
+    }
+
+    /**
+     * Adds {@link Inject} annotation to all the dependencies of the interceptor.
+     * 
+     * @param <X>
+     *            the type of the annotated type
+     * @param pat
+     *            the process annotated type.
+     */
+    private <X> void processInterceptorDependencies(ProcessAnnotatedType<X> pat) {
+        AnnotatedTypeBuilder<X> builder = new AnnotatedTypeBuilder<X>().readFromType(pat.getAnnotatedType());
+        InjectionHelper.addInjectAnnotation(pat.getAnnotatedType(), builder);
+        pat.setAnnotatedType(builder.create());
+    }
+    
+
+}
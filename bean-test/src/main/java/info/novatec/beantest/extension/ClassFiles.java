@@ -0,0 +1,203 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.extension;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the constant pool of class files, in order to find the classes a class refers to without loading them.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class ClassFiles {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassFiles.class);
+
+    private static final Pattern TYPE_DESCRIPTOR = Pattern.compile("L([\\w/$]+)[;<]");
+
+    private static final int CONSTANT_UTF8 = 1;
+
+    private static final int CONSTANT_CLASS = 7;
+
+    private ClassFiles() {
+        // Empty on purpose.
+    }
+
+    /**
+     * Returns the UTF-8 strings of the constant pool of the given class, which contain the names and descriptors of all
+     * the referenced classes as well as the string literals.
+     *
+     * @param type
+     *            the class whose class file should be read.
+     * @return the strings, or an empty list if the class file is not available.
+     */
+    public static List<String> getConstantPoolStrings(Class<?> type) {
+        List<String> strings = new ArrayList<String>();
+        for (String string : readConstantPool(type, null)) {
+            if (string != null) {
+                strings.add(string);
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Returns the names of the classes the given class refers to, i.e. the class constants (for example class literals
+     * and the classes of invoked methods) and the types in the descriptors and signatures of fields and methods. Unlike
+     * {@link #getConstantPoolStrings(Class)}, string literals containing a class name don't count as a reference.
+     *
+     * @param type
+     *            the class whose class file should be read.
+     * @return the binary names of the referenced classes.
+     */
+    public static Set<String> getReferencedClassNames(Class<?> type) {
+        List<Integer> classNameIndexes = new ArrayList<Integer>();
+        return getReferencedClassNames(readConstantPool(type, classNameIndexes), classNameIndexes);
+    }
+
+    /**
+     * Returns the UTF-8 strings of the constant pool of the given class file.
+     *
+     * @param classFile
+     *            the content of the class file.
+     * @return the strings.
+     * @throws IOException
+     *             if the content is not a valid class file.
+     * @see #getConstantPoolStrings(Class)
+     */
+    public static List<String> getConstantPoolStrings(byte[] classFile) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        for (String string : readConstantPool(new DataInputStream(new ByteArrayInputStream(classFile)), null)) {
+            if (string != null) {
+                strings.add(string);
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Returns the names of the classes the given class file refers to.
+     *
+     * @param classFile
+     *            the content of the class file.
+     * @return the binary names of the referenced classes.
+     * @throws IOException
+     *             if the content is not a valid class file.
+     * @see #getReferencedClassNames(Class)
+     */
+    public static Set<String> getReferencedClassNames(byte[] classFile) throws IOException {
+        List<Integer> classNameIndexes = new ArrayList<Integer>();
+        return getReferencedClassNames(readConstantPool(new DataInputStream(new ByteArrayInputStream(classFile)), classNameIndexes),
+                classNameIndexes);
+    }
+
+    private static Set<String> getReferencedClassNames(String[] strings, List<Integer> classNameIndexes) {
+        Set<String> classNames = new LinkedHashSet<String>();
+        for (int index : classNameIndexes) {
+            String name = strings[index];
+            if (name != null && !name.startsWith("[")) {
+                classNames.add(name.replace('/', '.'));
+            }
+        }
+        for (String string : strings) {
+            if (string != null) {
+                Matcher descriptor = TYPE_DESCRIPTOR.matcher(string);
+                while (descriptor.find()) {
+                    classNames.add(descriptor.group(1).replace('/', '.'));
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Returns the UTF-8 strings of the constant pool by their index, the other entries are <code>null</code>. The indexes
+     * of the names of the class constants are added to the given list, if any.
+     */
+    private static String[] readConstantPool(Class<?> type, List<Integer> classNameIndexes) {
+        ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : ClassLoader.getSystemClassLoader();
+        InputStream input = classLoader.getResourceAsStream(type.getName().replace('.', '/') + ".class");
+        if (input == null) {
+            return new String[0];
+        }
+        try {
+            DataInputStream data = new DataInputStream(input);
+            try {
+                return readConstantPool(data, classNameIndexes);
+            } finally {
+                data.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Class file of {} could not be read", type.getName(), e);
+            if (classNameIndexes != null) {
+                classNameIndexes.clear();
+            }
+            return new String[0];
+        }
+    }
+
+    private static String[] readConstantPool(DataInputStream data, List<Integer> classNameIndexes) throws IOException {
+        data.readInt();
+        data.readUnsignedShort();
+        data.readUnsignedShort();
+        int constantPoolCount = data.readUnsignedShort();
+        String[] strings = new String[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    strings[i] = data.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    int nameIndex = data.readUnsignedShort();
+                    if (classNameIndexes != null) {
+                        classNameIndexes.add(nameIndex);
+                    }
+                    break;
+                case 8: case 16: case 19: case 20:
+                    data.skipBytes(2);
+                    break;
+                case 15:
+                    data.skipBytes(3);
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    data.skipBytes(4);
+                    break;
+                case 5: case 6:
+                    data.skipBytes(8);
+                    // Longs and doubles take two entries.
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        return strings;
+    }
+
+}
@@ -0,0 +1,486 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.impact;
+
+import info.novatec.beantest.concurrent.ObservesAsync;
+import info.novatec.beantest.extension.AnnotationInstances;
+import info.novatec.beantest.extension.ClassFiles;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.ejb.Singleton;
+import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.Decorator;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.inject.spi.InterceptionType;
+import javax.enterprise.inject.spi.Interceptor;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the beans a test exercises and the classes of the project they depend on.
+ * <p>
+ * Starting from the requested beans and the injected fields of the test class, the graph follows the injection points
+ * of the resolved beans (including <code>Instance&lt;T&gt;</code>), their interceptors and decorators, and the observers
+ * of the events they may fire through an <code>Event&lt;T&gt;</code>. The observers are matched by the raw types of the
+ * events only, in both directions, since an <code>Event&lt;Object&gt;</code> may fire any event. The classes of these
+ * beans are then closed over the classes their bytecode refers to, as long as these are loaded from a class directory,
+ * so that entities, exceptions and helper classes of the project are part of the graph, but library classes are not.
+ * <p>
+ * A class added to or removed from a bean archive may change the resolution of any injection point or event, so the
+ * list of the classes of every bean archive in a class directory is part of the graph as well.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+final class BeanDependencyGraph {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BeanDependencyGraph.class);
+
+    /**
+     * Resources which affect every test. Changes to them are detected like changes to the classes.
+     */
+    private static final String[] CONFIGURATION_RESOURCES = {"META-INF/beans.xml", "META-INF/persistence.xml"};
+
+    private static final String BEANS_XML = "META-INF/beans.xml";
+
+    /**
+     * Suffix of the key of the class list of a bean archive, appended to the URL of its root directory.
+     */
+    private static final String CLASS_LIST_SUFFIX = "#classes";
+
+    private BeanDependencyGraph() {
+        // Empty on purpose.
+    }
+
+    /**
+     * Returns the classes of the beans resolved for the given requests and the injected fields of the given test class,
+     * and of the beans they transitively depend on.
+     *
+     * @param beanManager
+     *            the bean manager of the running container.
+     * @param testClass
+     *            the test class.
+     * @param requests
+     *            the requested beans, i.e. their types and qualifiers.
+     * @return the classes of the exercised beans.
+     */
+    static Set<Class<?>> getBeanClasses(BeanManager beanManager, Class<?> testClass, Collection<BeanRequest> requests) {
+        LinkedList<Bean<?>> queue = new LinkedList<Bean<?>>();
+        for (BeanRequest request : requests) {
+            queue.addAll(getBeans(beanManager, request.getType(), request.getQualifiers()));
+        }
+        for (Class<?> type = testClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Inject.class) || field.isAnnotationPresent(EJB.class)) {
+                    queue.addAll(getBeans(beanManager, field.getGenericType(), getQualifiers(beanManager, field.getAnnotations())));
+                }
+            }
+        }
+
+        Set<Bean<?>> beans = new LinkedHashSet<Bean<?>>();
+        Map<Bean<?>, List<Class<?>>> observedEventTypes = null;
+        while (!queue.isEmpty()) {
+            Bean<?> bean = queue.removeFirst();
+            if (!beans.add(bean)) {
+                continue;
+            }
+            for (InjectionPoint injectionPoint : bean.getInjectionPoints()) {
+                Type type = injectionPoint.getType();
+                if (type instanceof ParameterizedType) {
+                    Type rawType = ((ParameterizedType) type).getRawType();
+                    if (rawType == Event.class) {
+                        if (observedEventTypes == null) {
+                            observedEventTypes = getObservedEventTypes(beanManager);
+                        }
+                        queue.addAll(getObservers(observedEventTypes, ((ParameterizedType) type).getActualTypeArguments()[0]));
+                        continue;
+                    }
+                    if (rawType == Instance.class || rawType == Provider.class) {
+                        type = ((ParameterizedType) type).getActualTypeArguments()[0];
+                    }
+                }
+                queue.addAll(getBeans(beanManager, type, injectionPoint.getQualifiers().toArray(new Annotation[0])));
+            }
+            queue.addAll(getInterceptors(beanManager, bean.getBeanClass()));
+            queue.addAll(getDecorators(beanManager, bean));
+        }
+
+        Set<Class<?>> beanClasses = new LinkedHashSet<Class<?>>();
+        for (Bean<?> bean : beans) {
+            beanClasses.add(bean.getBeanClass());
+        }
+        return beanClasses;
+    }
+
+    private static Set<Bean<?>> getBeans(BeanManager beanManager, Type type, Annotation[] qualifiers) {
+        try {
+            return beanManager.getBeans(type, qualifiers);
+        } catch (IllegalArgumentException e) {
+            // For example type variables, which cannot be resolved.
+            LOGGER.debug("Beans of {} could not be resolved", type, e);
+            return new LinkedHashSet<Bean<?>>();
+        }
+    }
+
+    /**
+     * Returns the beans with observer methods, including {@link ObservesAsync asynchronous} ones, and the raw types of
+     * the events they observe.
+     */
+    private static Map<Bean<?>, List<Class<?>>> getObservedEventTypes(BeanManager beanManager) {
+        Map<Bean<?>, List<Class<?>>> observedEventTypes = new LinkedHashMap<Bean<?>, List<Class<?>>>();
+        for (Bean<?> bean : getBeans(beanManager, Object.class, new Annotation[] {AnnotationInstances.ANY})) {
+            List<Class<?>> eventTypes = new ArrayList<Class<?>>();
+            for (Class<?> type = bean.getBeanClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+                for (Method method : type.getDeclaredMethods()) {
+                    Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+                    for (int i = 0; i < parameterAnnotations.length; i++) {
+                        if (isObserved(parameterAnnotations[i])) {
+                            eventTypes.add(getRawType(method.getGenericParameterTypes()[i]));
+                        }
+                    }
+                }
+            }
+            if (!eventTypes.isEmpty()) {
+                observedEventTypes.put(bean, eventTypes);
+            }
+        }
+        return observedEventTypes;
+    }
+
+    private static boolean isObserved(Annotation[] parameterAnnotations) {
+        for (Annotation annotation : parameterAnnotations) {
+            if (annotation.annotationType() == Observes.class || annotation.annotationType() == ObservesAsync.class) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the beans observing events which may be fired as the given event type.
+     */
+    private static List<Bean<?>> getObservers(Map<Bean<?>, List<Class<?>>> observedEventTypes, Type eventType) {
+        Class<?> firedType = getRawType(eventType);
+        List<Bean<?>> observers = new ArrayList<Bean<?>>();
+        for (Map.Entry<Bean<?>, List<Class<?>>> entry : observedEventTypes.entrySet()) {
+            for (Class<?> observedType : entry.getValue()) {
+                if (observedType.isAssignableFrom(firedType) || firedType.isAssignableFrom(observedType)) {
+                    observers.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return observers;
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return getRawType(((ParameterizedType) type).getRawType());
+        }
+        // Type variables and wildcards may be anything.
+        return Object.class;
+    }
+
+    private static List<Decorator<?>> getDecorators(BeanManager beanManager, Bean<?> bean) {
+        if (bean instanceof Interceptor || bean instanceof Decorator) {
+            return new ArrayList<Decorator<?>>();
+        }
+        try {
+            return beanManager.resolveDecorators(bean.getTypes(), bean.getQualifiers().toArray(new Annotation[0]));
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Decorators of {} could not be resolved", bean, e);
+            return new ArrayList<Decorator<?>>();
+        }
+    }
+
+    private static Annotation[] getQualifiers(BeanManager beanManager, Annotation[] annotations) {
+        List<Annotation> qualifiers = new ArrayList<Annotation>();
+        for (Annotation annotation : annotations) {
+            if (beanManager.isQualifier(annotation.annotationType())) {
+                qualifiers.add(annotation);
+            }
+        }
+        return qualifiers.toArray(new Annotation[qualifiers.size()]);
+    }
+
+    /**
+     * Returns the interceptors bound to the given bean class or its methods. EJBs are transactional, even though the
+     * binding is only added to their annotated types.
+     */
+    private static List<Bean<?>> getInterceptors(BeanManager beanManager, Class<?> beanClass) {
+        List<Annotation> bindings = new ArrayList<Annotation>();
+        if (beanClass.isAnnotationPresent(Stateless.class) || beanClass.isAnnotationPresent(Singleton.class)
+                || beanClass.isAnnotationPresent(MessageDriven.class)) {
+            bindings.add(AnnotationInstances.TRANSACTIONAL);
+        }
+        addInterceptorBindings(beanManager, beanClass.getAnnotations(), bindings);
+        for (Method method : beanClass.getDeclaredMethods()) {
+            addInterceptorBindings(beanManager, method.getAnnotations(), bindings);
+        }
+        List<Bean<?>> interceptors = new ArrayList<Bean<?>>();
+        for (Annotation binding : bindings) {
+            interceptors.addAll(beanManager.resolveInterceptors(InterceptionType.AROUND_INVOKE, binding));
+        }
+        return interceptors;
+    }
+
+    private static void addInterceptorBindings(BeanManager beanManager, Annotation[] annotations, List<Annotation> bindings) {
+        for (Annotation annotation : annotations) {
+            if (beanManager.isInterceptorBinding(annotation.annotationType()) && !bindings.contains(annotation)) {
+                bindings.add(annotation);
+            }
+        }
+    }
+
+    /**
+     * Returns the checksums of the class files of the given classes and of the project classes they transitively refer
+     * to, as well as of the configuration resources and the class lists of the bean archives in class directories.
+     *
+     * @param classes
+     *            the classes the test exercises.
+     * @param classLoader
+     *            the class loader of the test.
+     * @return class name, resource URL or class list of a bean archive -&gt; CRC32 of its content, sorted by key.
+     */
+    static Map<String, Long> getChecksums(Collection<Class<?>> classes, ClassLoader classLoader) {
+        Map<String, Long> checksums = new TreeMap<String, Long>();
+        LinkedList<String> queue = new LinkedList<String>();
+        for (Class<?> type : classes) {
+            queue.add(type.getName());
+        }
+        while (!queue.isEmpty()) {
+            String className = queue.removeFirst();
+            if (checksums.containsKey(className)) {
+                continue;
+            }
+            URL classFile = getClassFile(className, classLoader);
+            if (classFile == null) {
+                continue;
+            }
+            Long checksum = getChecksum(classFile);
+            if (checksum == null) {
+                continue;
+            }
+            checksums.put(className, checksum);
+            try {
+                queue.addAll(ClassFiles.getReferencedClassNames(Class.forName(className, false, classLoader)));
+            } catch (ClassNotFoundException e) {
+                LOGGER.debug("Class {} not found", className);
+            } catch (LinkageError e) {
+                LOGGER.debug("Class {} could not be loaded", className, e);
+            }
+        }
+        for (String resource : CONFIGURATION_RESOURCES) {
+            for (URL url : getFileResources(resource, classLoader)) {
+                Long checksum = getChecksum(url);
+                if (checksum != null) {
+                    checksums.put(url.toExternalForm(), checksum);
+                }
+            }
+        }
+        for (URL beansXml : getFileResources(BEANS_XML, classLoader)) {
+            File root = getBeanArchiveRoot(beansXml);
+            if (root != null) {
+                checksums.put(root.toURI().toString() + CLASS_LIST_SUFFIX, getClassListChecksum(root));
+            }
+        }
+        return checksums;
+    }
+
+    private static List<URL> getFileResources(String resource, ClassLoader classLoader) {
+        List<URL> fileResources = new ArrayList<URL>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(resource);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                if ("file".equals(url.getProtocol())) {
+                    fileResources.add(url);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Resources {} could not be found", resource, e);
+        }
+        return fileResources;
+    }
+
+    /**
+     * Returns the class directory of the given <code>META-INF/beans.xml</code>.
+     */
+    private static File getBeanArchiveRoot(URL beansXml) {
+        try {
+            return new File(beansXml.toURI()).getParentFile().getParentFile();
+        } catch (URISyntaxException e) {
+            LOGGER.debug("{} is not a file", beansXml, e);
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("{} is not a file", beansXml, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the checksum of the sorted paths of the class files in the given class directory, which changes when a
+     * class is added or removed.
+     */
+    private static long getClassListChecksum(File root) {
+        Set<String> classFiles = new TreeSet<String>();
+        addClassFiles(root, "", classFiles);
+        CRC32 checksum = new CRC32();
+        for (String classFile : classFiles) {
+            try {
+                checksum.update(classFile.getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            checksum.update('\n');
+        }
+        return checksum.getValue();
+    }
+
+    private static void addClassFiles(File directory, String relativePath, Set<String> classFiles) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String childPath = relativePath + child.getName();
+            if (child.isDirectory()) {
+                addClassFiles(child, childPath + '/', classFiles);
+            } else if (childPath.endsWith(".class")) {
+                classFiles.add(childPath);
+            }
+        }
+    }
+
+    /**
+     * Returns the current checksum of the given class name or resource URL, as recorded by
+     * {@link #getChecksums(Collection, ClassLoader)}.
+     *
+     * @param key
+     *            the class name, resource URL or class list of a bean archive.
+     * @param classLoader
+     *            the class loader of the test.
+     * @return the checksum, or <code>null</code> if the class or resource doesn't exist anymore.
+     */
+    static Long getChecksum(String key, ClassLoader classLoader) {
+        if (key.endsWith(CLASS_LIST_SUFFIX)) {
+            try {
+                File root = new File(new URI(key.substring(0, key.length() - CLASS_LIST_SUFFIX.length())));
+                return root.isDirectory() ? getClassListChecksum(root) : null;
+            } catch (URISyntaxException e) {
+                return null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (key.contains(":")) {
+            try {
+                return getChecksum(new URL(key));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        URL classFile = getClassFile(key, classLoader);
+        return classFile != null ? getChecksum(classFile) : null;
+    }
+
+    /**
+     * Returns the URL of the class file of the given class, if it is a file of a class directory.
+     */
+    private static URL getClassFile(String className, ClassLoader classLoader) {
+        URL url = classLoader.getResource(className.replace('.', '/') + ".class");
+        return url != null && "file".equals(url.getProtocol()) ? url : null;
+    }
+
+    private static Long getChecksum(URL url) {
+        try {
+            InputStream input = url.openStream();
+            try {
+                CRC32 checksum = new CRC32();
+                byte[] buffer = new byte[8192];
+                int read = input.read(buffer);
+                while (read >= 0) {
+                    checksum.update(buffer, 0, read);
+                    read = input.read(buffer);
+                }
+                return checksum.getValue();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("{} could not be read", url, e);
+            return null;
+        }
+    }
+
+    /**
+     * A bean requested by a test, for example via {@link info.novatec.beantest.api.BeanProviderHelper#getBean}.
+     */
+    static final class BeanRequest {
+
+        private final Type type;
+
+        private final Annotation[] qualifiers;
+
+        BeanRequest(Type type, Annotation[] qualifiers) {
+            this.type = type;
+            this.qualifiers = qualifiers.clone();
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        Annotation[] getQualifiers() {
+            return qualifiers.clone();
+        }
+    }
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.impact;
+
+import info.novatec.beantest.impact.BeanDependencyGraph.BeanRequest;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.enterprise.inject.spi.BeanManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records which classes each test class exercises and selects the test classes affected by changes.
+ * <p>
+ * While the analysis is enabled via the system property <code>beantest.impact=record</code> or
+ * <code>beantest.impact=select</code> (or {@link #setMode(Mode)}), the beans requested by a test class and its injected
+ * fields are resolved to their dependency graph (see {@link BeanDependencyGraph}) before the container is released.
+ * When the test class has passed, the checksums of the classes of the graph are stored in a properties file named
+ * after the test class in the directory <code>beantest.impact.dir</code> (<code>target/beantest-impact</code> by
+ * default). A failing test class deletes its file. In the <code>select</code> mode, test classes whose recorded classes
+ * are all unchanged are skipped.
+ * <p>
+ * Only one test class is recorded at a time, so test classes must not run in parallel in one JVM. Changes of library
+ * JARs are not detected.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class TestImpactAnalysis {
+
+    /**
+     * System property for the {@link Mode}.
+     */
+    public static final String MODE_PROPERTY = "beantest.impact";
+
+    /**
+     * System property for the directory of the recorded graphs.
+     */
+    public static final String DIRECTORY_PROPERTY = "beantest.impact.dir";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestImpactAnalysis.class);
+
+    private static final String FILE_EXTENSION = ".properties";
+
+    private static final List<BeanRequest> REQUESTS = new ArrayList<BeanRequest>();
+
+    private static final Set<Class<?>> EXERCISED_CLASSES = new LinkedHashSet<Class<?>>();
+
+    private static volatile Mode mode = parseMode(System.getProperty(MODE_PROPERTY));
+
+    private static volatile File directory = new File(System.getProperty(DIRECTORY_PROPERTY, "target/beantest-impact"));
+
+    private static Class<?> currentTestClass;
+
+    private static boolean currentTestClassFailed;
+
+    private TestImpactAnalysis() {
+        // Empty on purpose.
+    }
+
+    /**
+     * What the test impact analysis does.
+     */
+    public enum Mode {
+
+        /**
+         * Nothing is recorded and all the tests run.
+         */
+        OFF,
+
+        /**
+         * The graphs of the test classes are recorded, but all the tests run.
+         */
+        RECORD,
+
+        /**
+         * The graphs of the test classes are recorded and the test classes not affected by a change are skipped.
+         */
+        SELECT
+    }
+
+    /**
+     * Parses the value of the system property <code>beantest.impact</code>, ignoring its case. An unknown value must
+     * not break the initialization of this class, which every bean test uses, so it disables the analysis instead.
+     *
+     * @param value
+     *            the value of the system property, may be <code>null</code>.
+     * @return the mode, {@link Mode#OFF} if the value is missing or unknown.
+     */
+    static Mode parseMode(String value) {
+        if (value == null) {
+            return Mode.OFF;
+        }
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown test impact analysis mode {}={}, the analysis is off", MODE_PROPERTY, value);
+            return Mode.OFF;
+        }
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode mode) {
+        TestImpactAnalysis.mode = mode;
+    }
+
+    public static File getDirectory() {
+        return directory;
+    }
+
+    public static void setDirectory(File directory) {
+        TestImpactAnalysis.directory = directory;
+    }
+
+    /**
+     * Returns <code>true</code> if the given test class has to run, i.e. if the analysis is not in the
+     * {@link Mode#SELECT} mode, if no graph has been recorded for it or if one of the recorded classes has changed.
+     *
+     * @param testClass
+     *            the test class.
+     * @return <code>true</code> if the test class is affected by a change.
+     */
+    public static boolean isAffected(Class<?> testClass) {
+        if (mode != Mode.SELECT) {
+            return true;
+        }
+        Map<String, Long> checksums = getRecordedChecksums(testClass);
+        if (checksums.isEmpty()) {
+            return true;
+        }
+        ClassLoader classLoader = getClassLoader(testClass);
+        for (Map.Entry<String, Long> entry : checksums.entrySet()) {
+            if (!entry.getValue().equals(BeanDependencyGraph.getChecksum(entry.getKey(), classLoader))) {
+                LOGGER.info("{} is affected by a change of {}", testClass.getName(), entry.getKey());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the classes and configuration resources recorded for the given test class, with the checksums of their
+     * content.
+     *
+     * @param testClass
+     *            the test class.
+     * @return class name or resource URL -&gt; checksum, empty if nothing has been recorded.
+     */
+    public static Map<String, Long> getRecordedChecksums(Class<?> testClass) {
+        File file = getFile(testClass);
+        Map<String, Long> checksums = new TreeMap<String, Long>();
+        if (!file.isFile()) {
+            return checksums;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream input = new FileInputStream(file);
+            try {
+                properties.load(input);
+            } finally {
+                input.close();
+            }
+            for (String key : properties.stringPropertyNames()) {
+                checksums.put(key, Long.valueOf(properties.getProperty(key), 16));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Graph of {} could not be read", testClass.getName(), e);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Graph of {} is corrupt", testClass.getName(), e);
+            checksums.clear();
+        }
+        return checksums;
+    }
+
+    /**
+     * Starts recording the graph of the given test class.
+     *
+     * @param testClass
+     *            the test class.
+     */
+    public static synchronized void testClassStarted(Class<?> testClass) {
+        currentTestClass = testClass;
+        currentTestClassFailed = false;
+        REQUESTS.clear();
+        EXERCISED_CLASSES.clear();
+    }
+
+    /**
+     * Marks the current test class as failed, so that its graph is deleted and it runs again next time.
+     */
+    public static synchronized void testFailed() {
+        currentTestClassFailed = true;
+    }
+
+    /**
+     * Records that a test requested a bean.
+     *
+     * @param type
+     *            the type of the bean.
+     * @param qualifiers
+     *            the qualifiers of the bean.
+     */
+    public static synchronized void beanRequested(Type type, Annotation... qualifiers) {
+        if (mode != Mode.OFF && currentTestClass != null) {
+            REQUESTS.add(new BeanRequest(type, qualifiers));
+        }
+    }
+
+    /**
+     * Resolves the beans requested since the last call and the injected fields of the current test class, while their
+     * container is still running.
+     *
+     * @param beanManager
+     *            the bean manager of the container about to be released.
+     */
+    public static synchronized void containerReleasing(BeanManager beanManager) {
+        if (mode == Mode.OFF || currentTestClass == null) {
+            return;
+        }
+        EXERCISED_CLASSES.addAll(BeanDependencyGraph.getBeanClasses(beanManager, currentTestClass, REQUESTS));
+        REQUESTS.clear();
+    }
+
+    /**
+     * Stores the graph of the current test class, or deletes it if the test class failed.
+     */
+    public static synchronized void testClassFinished() {
+        if (mode == Mode.OFF || currentTestClass == null) {
+            currentTestClass = null;
+            return;
+        }
+        Class<?> testClass = currentTestClass;
+        currentTestClass = null;
+        File file = getFile(testClass);
+        if (currentTestClassFailed) {
+            if (file.exists() && !file.delete()) {
+                LOGGER.warn("Graph of {} could not be deleted", testClass.getName());
+            }
+            return;
+        }
+        Set<Class<?>> classes = new LinkedHashSet<Class<?>>(EXERCISED_CLASSES);
+        for (Class<?> type = testClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            classes.add(type);
+        }
+        Map<String, Long> checksums = BeanDependencyGraph.getChecksums(classes, getClassLoader(testClass));
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> entry : checksums.entrySet()) {
+            properties.setProperty(entry.getKey(), Long.toHexString(entry.getValue()));
+        }
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Directory " + directory + " could not be created");
+            }
+            OutputStream output = new FileOutputStream(file);
+            try {
+                properties.store(output, "Classes exercised by " + testClass.getName());
+            } finally {
+                output.close();
+            }
+            LOGGER.info("Recorded {} classes exercised by {}", checksums.size(), testClass.getName());
+        } catch (IOException e) {
+            LOGGER.warn("Graph of {} could not be stored", testClass.getName(), e);
+        }
+    }
+
+    private static File getFile(Class<?> testClass) {
+        return new File(directory, testClass.getName() + FILE_EXTENSION);
+    }
+
+    private static ClassLoader getClassLoader(Class<?> testClass) {
+        return testClass.getClassLoader() != null ? testClass.getClassLoader() : ClassLoader.getSystemClassLoader();
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.impact;
+
+import org.junit.internal.AssumptionViolatedException;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * Connects JUnit 4 test classes to the {@link TestImpactAnalysis}.
+ * <p>
+ * As a class rule, it skips the test classes which are not affected by a change and records the graph of the others.
+ * As a rule, it reports the failed tests. {@link info.novatec.beantest.api.BaseBeanTest} declares both.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestImpactRule implements TestRule {
+
+    @Override
+    public Statement apply(final Statement base, final Description description) {
+        if (description.getMethodName() == null) {
+            return new Statement() {
+
+                @Override
+                public void evaluate() throws Throwable {
+                    evaluateTestClass(base, description.getTestClass());
+                }
+            };
+        }
+        return new Statement() {
+
+            @Override
+            public void evaluate() throws Throwable {
+                evaluateTest(base);
+            }
+        };
+    }
+
+    private static void evaluateTestClass(Statement base, Class<?> testClass) throws Throwable {
+        if (TestImpactAnalysis.getMode() == TestImpactAnalysis.Mode.OFF) {
+            base.evaluate();
+            return;
+        }
+        if (!TestImpactAnalysis.isAffected(testClass)) {
+            throw new AssumptionViolatedException(testClass.getName() + " is not affected by any change");
+        }
+        TestImpactAnalysis.testClassStarted(testClass);
+        try {
+            base.evaluate();
+        } catch (AssumptionViolatedException e) {
+            throw e;
+        } catch (Throwable e) {
+            // For example a failing @BeforeClass method.
+            TestImpactAnalysis.testFailed();
+            throw e;
+        } finally {
+            TestImpactAnalysis.testClassFinished();
+        }
+    }
+
+    private static void evaluateTest(Statement base) throws Throwable {
+        try {
+            base.evaluate();
+        } catch (AssumptionViolatedException e) {
+            throw e;
+        } catch (Throwable e) {
+            TestImpactAnalysis.testFailed();
+            throw e;
+        }
+    }
+
+}
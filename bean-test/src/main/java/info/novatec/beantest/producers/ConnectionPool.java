@@ -0,0 +1,386 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of JDBC connections to one database, shared by all the entity manager factories of the JVM.
+ * <p>
+ * Without the pool, every entity manager factory opens its own physical connections. If the pool is enabled via the
+ * system property <code>beantest.pool=true</code> or {@link #setEnabled(boolean)}, the {@link EntityManagerProducer}
+ * configures the {@link PooledConnectionProvider}, which takes the connections from the pool of the database URL of
+ * the persistence unit. Returned connections are rolled back and reset to their initial auto-commit, isolation and
+ * read-only settings.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class ConnectionPool implements DataSource {
+
+    /**
+     * System property to enable the pool.
+     */
+    public static final String ENABLED_PROPERTY = "beantest.pool";
+
+    /**
+     * System property for the maximum number of idle connections per pool.
+     */
+    public static final String MAX_IDLE_PROPERTY = "beantest.pool.maxIdle";
+
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final ConcurrentMap<String, ConnectionPool> POOLS = new ConcurrentHashMap<String, ConnectionPool>();
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private final String url;
+
+    private final Properties connectionProperties;
+
+    private final BlockingQueue<Connection> idleConnections;
+
+    private final AtomicLong createdConnections = new AtomicLong();
+
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    private final AtomicInteger maxActiveConnections = new AtomicInteger();
+
+    private ConnectionPool(String url, Properties connectionProperties) {
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.idleConnections = new LinkedBlockingQueue<Connection>(Integer.getInteger(MAX_IDLE_PROPERTY, 10));
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ConnectionPool.enabled = enabled;
+    }
+
+    /**
+     * Returns the pool of the given database and user. It is created if it doesn't exist yet.
+     *
+     * @param url
+     *            the JDBC URL of the database.
+     * @param user
+     *            the user, may be <code>null</code>.
+     * @param password
+     *            the password, may be <code>null</code>.
+     * @return the pool.
+     */
+    public static ConnectionPool get(String url, String user, String password) {
+        String key = user == null ? url : user + "@" + url;
+        ConnectionPool pool = POOLS.get(key);
+        if (pool == null) {
+            Properties connectionProperties = new Properties();
+            if (user != null) {
+                connectionProperties.setProperty("user", user);
+            }
+            if (password != null) {
+                connectionProperties.setProperty("password", password);
+            }
+            ConnectionPool newPool = new ConnectionPool(url, connectionProperties);
+            pool = POOLS.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+                LOGGER.info("Connection pool for {} was successfully initialized", url);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the pool of the given database, if it has been created for the default user.
+     *
+     * @param url
+     *            the JDBC URL of the database.
+     * @return the pool, or <code>null</code> if there is none.
+     */
+    public static ConnectionPool get(String url) {
+        return POOLS.get(url);
+    }
+
+    /**
+     * Returns all the pools.
+     *
+     * @return the pools.
+     */
+    public static Collection<ConnectionPool> getAll() {
+        return new ArrayList<ConnectionPool>(POOLS.values());
+    }
+
+    /**
+     * Closes the idle connections of all the pools and removes the pools.
+     */
+    public static void closeAll() {
+        for (ConnectionPool pool : POOLS.values()) {
+            pool.closeIdleConnections();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * Returns whether a pool of the given database exists.
+     *
+     * @param url
+     *            the JDBC URL of the database.
+     * @return <code>true</code> if the database is pooled.
+     */
+    static boolean isPooled(String url) {
+        for (ConnectionPool pool : POOLS.values()) {
+            if (pool.getUrl().equals(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes the idle connections of the pools of the given database and removes the pools, for example before the
+     * database is dropped.
+     *
+     * @param url
+     *            the JDBC URL of the database.
+     */
+    static void close(String url) {
+        for (Map.Entry<String, ConnectionPool> entry : POOLS.entrySet()) {
+            if (entry.getValue().getUrl().equals(url) && POOLS.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().closeIdleConnections();
+            }
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the number of physical connections opened by this pool.
+     *
+     * @return the number of created connections.
+     */
+    public long getCreatedConnections() {
+        return createdConnections.get();
+    }
+
+    /**
+     * Returns the number of connections handed out by this pool, including the reused ones.
+     *
+     * @return the number of acquisitions.
+     */
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public int getMaxActiveConnections() {
+        return maxActiveConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = idleConnections.poll();
+        while (connection != null && connection.isClosed()) {
+            connection = idleConnections.poll();
+        }
+        if (connection == null) {
+            connection = DriverManager.getConnection(url, connectionProperties);
+            createdConnections.incrementAndGet();
+        }
+        acquisitions.incrementAndGet();
+        int active = activeConnections.incrementAndGet();
+        int maxActive = maxActiveConnections.get();
+        while (active > maxActive && !maxActiveConnections.compareAndSet(maxActive, active)) {
+            maxActive = maxActiveConnections.get();
+        }
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] {Connection.class},
+                new PooledConnectionHandler(connection));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only provides connections of its user");
+    }
+
+    private void release(Connection connection, boolean autoCommit, int isolation, boolean readOnly) {
+        activeConnections.decrementAndGet();
+        try {
+            if (!connection.isClosed()) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(autoCommit);
+                connection.setTransactionIsolation(isolation);
+                connection.setReadOnly(readOnly);
+                connection.clearWarnings();
+                if (idleConnections.offer(connection)) {
+                    return;
+                }
+                connection.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Connection could not be returned to the pool", e);
+            closeQuietly(connection);
+        }
+    }
+
+    private void closeIdleConnections() {
+        Connection connection = idleConnections.poll();
+        while (connection != null) {
+            closeQuietly(connection);
+            connection = idleConnections.poll();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.debug("Connection could not be closed", e);
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return DriverManager.getLoginTimeout();
+    }
+
+    // Required by JDBC 4.1 (Java 7), without @Override to compile on Java 6.
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper of " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[url=%s, created=%d, acquisitions=%d, active=%d, maxActive=%d, idle=%d]", url,
+                getCreatedConnections(), getAcquisitions(), getActiveConnections(), getMaxActiveConnections(),
+                getIdleConnections());
+    }
+
+    /**
+     * Returns the physical connection to the pool when the pooled connection is closed.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private final boolean autoCommit;
+
+        private final int isolation;
+
+        private final boolean readOnly;
+
+        private boolean closed;
+
+        PooledConnectionHandler(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.autoCommit = connection.getAutoCommit();
+            this.isolation = connection.getTransactionIsolation();
+            this.readOnly = connection.isReadOnly();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals") && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode") && method.getParameterTypes().length == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("close") && method.getParameterTypes().length == 0) {
+                if (!closed) {
+                    closed = true;
+                    release(connection, autoCommit, isolation, readOnly);
+                }
+                return null;
+            }
+            if (name.equals("isClosed") && method.getParameterTypes().length == 0) {
+                return closed || connection.isClosed();
+            }
+            if (closed) {
+                throw new SQLException("The connection has been returned to the pool");
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Database the entity manager factories of the {@link EntityManagerProducer} connect to, instead of the one configured
+ * in the persistence unit.
+ * <p>
+ * Implementations need a public no-argument constructor. They are selected per test class via
+ * {@link info.novatec.beantest.api.BeanTestConfiguration#database()} or for the whole JVM via the system property
+ * <code>beantest.database</code> (see {@link DatabaseBackends}). The database of a persistence unit is created when
+ * the first entity manager factory connects to it and dropped when the last one is closed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ * @see DerbyBackend
+ * @see H2Backend
+ * @see HsqldbBackend
+ */
+public interface DatabaseBackend {
+
+    /**
+     * Returns the properties connecting an entity manager factory to the given database, for example the JDBC URL,
+     * driver and the Hibernate dialect. They override the ones of the persistence unit.
+     *
+     * @param databaseName
+     *            the name of the database, unique per persistence unit and worker.
+     * @return the properties of the entity manager factory.
+     */
+    Map<String, String> getProperties(String databaseName);
+
+    /**
+     * Drops the given database and releases its memory.
+     *
+     * @param databaseName
+     *            the name of the database.
+     * @throws SQLException
+     *             if the database could not be dropped.
+     */
+    void drop(String databaseName) throws SQLException;
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.hibernate.cfg.AvailableSettings;
+
+/**
+ * Selects the {@link DatabaseBackend} and names its databases.
+ * <p>
+ * The default backend of the JVM is given by the system property <code>beantest.database</code>, either one of
+ * <code>derby</code>, <code>h2</code> and <code>hsqldb</code> or the class name of a backend. Without it, the database
+ * of the persistence unit is used. The database of a persistence unit is named after the persistence unit and the
+ * worker, which is the process id unless the system property <code>beantest.database.worker</code> is set (for
+ * example to the fork number of Surefire), so that concurrent workers never share a database.
+ * <p>
+ * The databases are tracked by {@link InMemoryDatabases}, which drops them when the container is shut down.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class DatabaseBackends {
+
+    /**
+     * System property for the default backend.
+     */
+    public static final String BACKEND_PROPERTY = "beantest.database";
+
+    /**
+     * System property for the name of the worker, which is part of the database names.
+     */
+    public static final String WORKER_PROPERTY = "beantest.database.worker";
+
+    /**
+     * Entity manager factory property holding the class name of the backend.
+     */
+    static final String BACKEND_SETTING = "beantest.database.backend";
+
+    /**
+     * Entity manager factory property holding the name of the database.
+     */
+    static final String DATABASE_NAME_SETTING = "beantest.database.name";
+
+    /**
+     * Entity manager factory property holding the class name of the session factory observer configured by the
+     * persistence unit.
+     */
+    static final String DELEGATE_OBSERVER_SETTING = "beantest.database.sessionFactoryObserver";
+
+    private static final String JPA_JDBC_URL = "javax.persistence.jdbc.url";
+
+    private static final String SESSION_FACTORY_OBSERVER_PROPERTY = "hibernate.ejb.session_factory_observer";
+
+    private DatabaseBackends() {
+        // Empty on purpose.
+    }
+
+    /**
+     * Returns the backend given by the system property <code>beantest.database</code>.
+     *
+     * @return the default backend, {@link PersistenceUnitBackend} if the system property is not set.
+     */
+    public static Class<? extends DatabaseBackend> getDefault() {
+        String backend = System.getProperty(BACKEND_PROPERTY);
+        if (backend == null || backend.isEmpty()) {
+            return PersistenceUnitBackend.class;
+        }
+        if (backend.equalsIgnoreCase("derby")) {
+            return DerbyBackend.class;
+        }
+        if (backend.equalsIgnoreCase("h2")) {
+            return H2Backend.class;
+        }
+        if (backend.equalsIgnoreCase("hsqldb")) {
+            return HsqldbBackend.class;
+        }
+        try {
+            return Class.forName(backend, true, getClassLoader()).asSubclass(DatabaseBackend.class);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown database backend " + backend, e);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(backend + " doesn't implement " + DatabaseBackend.class.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the name of the database of the given persistence unit for this worker.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the database name.
+     */
+    public static String getDatabaseName(String persistenceUnit) {
+        String worker = System.getProperty(WORKER_PROPERTY);
+        if (worker == null) {
+            String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+            worker = jvmName.contains("@") ? jvmName.substring(0, jvmName.indexOf('@')) : jvmName;
+        }
+        return ("beantest_" + persistenceUnit + "_" + worker).replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    /**
+     * Returns the properties connecting an entity manager factory of the given persistence unit to the database of the
+     * given backend.
+     *
+     * @param backendClass
+     *            the backend.
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the properties overriding the ones of the persistence unit. For the {@link PersistenceUnitBackend}, they
+     *         only register the {@link DatabaseLifecycleObserver} if the persistence unit uses an in-memory database,
+     *         so that it is tracked.
+     */
+    public static Map<String, String> getProperties(Class<? extends DatabaseBackend> backendClass, String persistenceUnit) {
+        Map<String, String> properties = new HashMap<String, String>();
+        Properties unitProperties = PersistenceUnits.getProperties(persistenceUnit);
+        if (backendClass == PersistenceUnitBackend.class) {
+            if (InMemoryDatabases.getBackendClassName(getUrl(unitProperties)) != null) {
+                registerLifecycleObserver(properties, unitProperties);
+            }
+            return properties;
+        }
+        String databaseName = getDatabaseName(persistenceUnit);
+        properties.putAll(newInstance(backendClass.getName()).getProperties(databaseName));
+        properties.put(BACKEND_SETTING, backendClass.getName());
+        properties.put(DATABASE_NAME_SETTING, databaseName);
+        registerLifecycleObserver(properties, unitProperties);
+        return properties;
+    }
+
+    /**
+     * Registers the {@link DatabaseLifecycleObserver}, which notifies the session factory observer of the persistence
+     * unit in turn.
+     */
+    private static void registerLifecycleObserver(Map<String, String> properties, Properties unitProperties) {
+        String configuredObserver = unitProperties.getProperty(SESSION_FACTORY_OBSERVER_PROPERTY);
+        if (configuredObserver != null && !configuredObserver.trim().isEmpty()) {
+            properties.put(DELEGATE_OBSERVER_SETTING, configuredObserver.trim());
+        }
+        properties.put(SESSION_FACTORY_OBSERVER_PROPERTY, DatabaseLifecycleObserver.class.getName());
+    }
+
+    private static String getUrl(Properties unitProperties) {
+        String url = unitProperties.getProperty(JPA_JDBC_URL);
+        return url != null ? url : unitProperties.getProperty(AvailableSettings.URL);
+    }
+
+    static DatabaseBackend newInstance(String backendClassName) {
+        try {
+            return Class.forName(backendClassName, true, getClassLoader()).asSubclass(DatabaseBackend.class).newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown database backend " + backendClassName, e);
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("Database backend " + backendClassName + " could not be instantiated", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Database backend " + backendClassName + " could not be instantiated", e);
+        }
+    }
+
+    static ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : DatabaseBackends.class.getClassLoader();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.producers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.Joinable;
+import org.hibernate.persister.entity.Queryable;
+
+/**
+ * Deletes the data of all the tables mapped by an entity manager factory, so that it can be reused by the next test.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+final class DatabaseCleaner {
+
+    private DatabaseCleaner() {
+        // Empty on purpose.
+    }
+
+    /**
+     * Deletes the rows of all the mapped tables.
+     * <p>
+     * Join and element collection tables are deleted first. Tables that cannot be deleted yet because of foreign keys are
+     * retried after the other tables have been deleted.
+     *
+     * @param emf
+     *            the entity manager factory whose tables should be cleaned up.
+     * @return the names of the tables which contained rows.
+     */
+    static Set<String> deleteAllData(EntityManagerFactory emf) {
+        final List<String> tableNames = getMappedTableNames(emf);
+        final Set<String> modifiedTables = new HashSet<String>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.unwrap(Session.class).doWork(new Work() {
+
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    deleteTables(connection, tableNames, modifiedTables);
+                }
+            });
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        return modifiedTables;
+    }
+
+    private static List<String> getMappedTableNames(EntityManagerFactory emf) {
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) ((HibernateEntityManagerFactory) emf).getSessionFactory();
+        Set<String> tableNames = new LinkedHashSet<String>();
+        for (Object metadata : sessionFactory.getAllCollectionMetadata().values()) {
+            if (metadata instanceof CollectionPersister && !((CollectionPersister) metadata).isOneToMany()) {
+                tableNames.add(((Joinable) metadata).getTableName());
+            }
+        }
+        for (ClassMetadata metadata : sessionFactory.getAllClassMetadata().values()) {
+            if (metadata instanceof Queryable) {
+                for (String tableName : ((Queryable) metadata).getConstraintOrderedTableNameClosure()) {
+                    tableNames.add(tableName);
+                }
+            }
+        }
+        return new ArrayList<String>(tableNames);
+    }
+
+    private static void deleteTables(Connection connection, List<String> tableNames, Set<String> modifiedTables) throws SQLException {
+        List<String> remainingTables = new ArrayList<String>(tableNames);
+        SQLException lastException = null;
+        for (int pass = 0; pass < tableNames.size() && !remainingTables.isEmpty(); pass++) {
+            Statement statement = connection.createStatement();
+            try {
+                for (Iterator<String> iterator = remainingTables.iterator(); iterator.hasNext();) {
+                    String tableName = iterator.next();
+                    try {
+                        if (statement.executeUpdate("DELETE FROM " + tableName) > 0) {
+                            modifiedTables.add(tableName);
+                        }
+                        iterator.remove();
+                    } catch (SQLException e) {
+                        // Probably still referenced by another table, try again in the next pass.
+                        lastException = e;
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+        }
+        if (!remainingTables.isEmpty()) {
+            throw lastException;
+        }
+    }
+
+}
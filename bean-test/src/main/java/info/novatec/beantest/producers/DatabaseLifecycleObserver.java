@@ -0,0 +1,77 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.util.Properties;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * Notifies {@link InMemoryDatabases} when an entity manager factory is opened or closed, so that its database is only
+ * dropped while no entity manager factory is connected to it.
+ * <p>
+ * A session factory observer configured by the persistence unit is notified afterwards, respectively before.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class DatabaseLifecycleObserver implements SessionFactoryObserver {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String JPA_JDBC_URL = "javax.persistence.jdbc.url";
+
+    private SessionFactoryObserver delegate;
+
+    @Override
+    public void sessionFactoryCreated(SessionFactory factory) {
+        Properties properties = ((SessionFactoryImplementor) factory).getProperties();
+        InMemoryDatabases.opened(properties.getProperty(DatabaseBackends.BACKEND_SETTING),
+                properties.getProperty(DatabaseBackends.DATABASE_NAME_SETTING), getUrl(properties));
+        String delegateClassName = properties.getProperty(DatabaseBackends.DELEGATE_OBSERVER_SETTING);
+        if (delegateClassName != null) {
+            delegate = newDelegate(delegateClassName);
+            delegate.sessionFactoryCreated(factory);
+        }
+    }
+
+    @Override
+    public void sessionFactoryClosed(SessionFactory factory) {
+        if (delegate != null) {
+            delegate.sessionFactoryClosed(factory);
+        }
+        Properties properties = ((SessionFactoryImplementor) factory).getProperties();
+        InMemoryDatabases.closed(properties.getProperty(DatabaseBackends.BACKEND_SETTING),
+                properties.getProperty(DatabaseBackends.DATABASE_NAME_SETTING), getUrl(properties));
+    }
+
+    private static SessionFactoryObserver newDelegate(String className) {
+        try {
+            return (SessionFactoryObserver) Class.forName(className, true, DatabaseBackends.getClassLoader()).newInstance();
+        } catch (Exception e) {
+            throw new HibernateException("Session factory observer " + className + " could not be instantiated", e);
+        }
+    }
+
+    private static String getUrl(Properties properties) {
+        String url = properties.getProperty(JPA_JDBC_URL);
+        return url != null ? url : properties.getProperty(AvailableSettings.URL);
+    }
+
+}
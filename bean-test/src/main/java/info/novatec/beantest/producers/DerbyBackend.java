@@ -0,0 +1,97 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Embedded in-memory Derby database.
+ * <p>
+ * The database is created eagerly and tuned via database properties: lock waits time out after
+ * {@value #LOCK_WAIT_TIMEOUT} seconds instead of a minute, with deadlocks detected after {@value #DEADLOCK_TIMEOUT}
+ * seconds. System properties set for the JVM still take precedence. Nothing is synced to disk anyway, since the
+ * database lives in memory only.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class DerbyBackend implements DatabaseBackend {
+
+    static final int LOCK_WAIT_TIMEOUT = 10;
+
+    static final int DEADLOCK_TIMEOUT = 5;
+
+    /**
+     * SQL state of the exception that signals a successful drop.
+     */
+    private static final String DATABASE_DROPPED = "08006";
+
+    @Override
+    public Map<String, String> getProperties(String databaseName) {
+        configure(databaseName);
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("javax.persistence.jdbc.url", getUrl(databaseName) + ";create=true");
+        properties.put("javax.persistence.jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver");
+        properties.put("hibernate.dialect", "org.hibernate.dialect.DerbyTenSevenDialect");
+        return properties;
+    }
+
+    private static void configure(String databaseName) {
+        try {
+            Connection connection = DriverManager.getConnection(getUrl(databaseName) + ";create=true");
+            try {
+                CallableStatement statement = connection.prepareCall("CALL SYSCS_UTIL.SYSCS_SET_DATABASE_PROPERTY(?, ?)");
+                try {
+                    setDatabaseProperty(statement, "derby.locks.waitTimeout", LOCK_WAIT_TIMEOUT);
+                    setDatabaseProperty(statement, "derby.locks.deadlockTimeout", DEADLOCK_TIMEOUT);
+                } finally {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Derby database " + databaseName + " could not be configured", e);
+        }
+    }
+
+    private static void setDatabaseProperty(CallableStatement statement, String key, int value) throws SQLException {
+        statement.setString(1, key);
+        statement.setString(2, String.valueOf(value));
+        statement.execute();
+    }
+
+    @Override
+    public void drop(String databaseName) throws SQLException {
+        try {
+            DriverManager.getConnection(getUrl(databaseName) + ";drop=true").close();
+        } catch (SQLException e) {
+            if (!DATABASE_DROPPED.equals(e.getSQLState())) {
+                throw e;
+            }
+        }
+    }
+
+    private static String getUrl(String databaseName) {
+        return "jdbc:derby:memory:" + databaseName;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.producers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of entity manager factories that outlive the CDI container.
+ * <p>
+ * By default, a new entity manager factory (and therefore a new database schema) is created for every test. If the
+ * cache is enabled, the {@link EntityManagerProducer} reuses the cached factory of the persistence unit instead and
+ * deletes the data of all the mapped tables after every test. The cache can be enabled via the system property
+ * <code>beantest.emf.cache=true</code> or {@link #setEnabled(boolean)}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class EntityManagerFactoryCache {
+
+    /**
+     * System property to enable the cache.
+     */
+    public static final String ENABLED_PROPERTY = "beantest.emf.cache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityManagerFactoryCache.class);
+
+    private static final Map<String, EntityManagerFactory> FACTORIES = new HashMap<String, EntityManagerFactory>();
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private EntityManagerFactoryCache() {
+        // Empty on purpose.
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        EntityManagerFactoryCache.enabled = enabled;
+    }
+
+    /**
+     * Returns the cached entity manager factory of the given persistence unit. It is created if it doesn't exist yet.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the entity manager factory of the persistence unit.
+     */
+    public static EntityManagerFactory get(String persistenceUnit) {
+        return get(persistenceUnit, Collections.<String, String> emptyMap());
+    }
+
+    /**
+     * Returns the cached entity manager factory of the given persistence unit and additional properties. It is created
+     * if it doesn't exist yet.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @param properties
+     *            properties overriding the ones of the persistence unit.
+     * @return the entity manager factory of the persistence unit.
+     */
+    public static EntityManagerFactory get(String persistenceUnit, Map<String, String> properties) {
+        return get(persistenceUnit, properties, null);
+    }
+
+    /**
+     * Returns the cached entity manager factory of the given persistence unit, additional properties and mapped classes.
+     * It is created if it doesn't exist yet.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @param properties
+     *            properties overriding the ones of the persistence unit.
+     * @param classNames
+     *            the classes to be mapped, or <code>null</code> to map all the classes of the persistence unit.
+     * @return the entity manager factory of the persistence unit.
+     */
+    public static synchronized EntityManagerFactory get(String persistenceUnit, Map<String, String> properties, Collection<String> classNames) {
+        String key = properties.isEmpty() ? persistenceUnit : persistenceUnit + properties;
+        if (classNames != null) {
+            key += classNames;
+        }
+        EntityManagerFactory emf = FACTORIES.get(key);
+        if (emf == null || !emf.isOpen()) {
+            emf = SchemaScriptCache.createEntityManagerFactory(persistenceUnit, properties, classNames);
+            FACTORIES.put(key, emf);
+            LOGGER.info("Entity Manager Factory for {} was successfully initialized and cached", key);
+        }
+        return emf;
+    }
+
+    /**
+     * Closes and removes all the cached entity manager factories.
+     */
+    public static synchronized void clear() {
+        for (EntityManagerFactory emf : FACTORIES.values()) {
+            if (emf.isOpen()) {
+                emf.close();
+            }
+        }
+        FACTORIES.clear();
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.api.ContainerConfiguration;
+import info.novatec.beantest.startup.ConcurrentBootstrap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the entity manager factory of the first request on a background thread while the container validates the
+ * beans.
+ * <p>
+ * The {@link info.novatec.beantest.extension.BeanTestExtension} starts the build after the bean discovery, if enabled
+ * by {@link info.novatec.beantest.startup.ConcurrentBootstrap}. The first {@link EntityManagerProducer} of the container
+ * takes the factory instead of building its own. A factory which is not taken, for example because the test doesn't use
+ * JPA, is closed when the container shuts down.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class EntityManagerFactoryPrebuild {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityManagerFactoryPrebuild.class);
+
+    private static final AtomicReference<EntityManagerFactoryPrebuild> PENDING = new AtomicReference<EntityManagerFactoryPrebuild>();
+
+    private final ContainerConfiguration configuration;
+
+    private final boolean cached;
+
+    private final FutureTask<EntityManagerFactory> build;
+
+    private EntityManagerFactoryPrebuild(ContainerConfiguration configuration, FutureTask<EntityManagerFactory> build) {
+        this.configuration = configuration;
+        this.cached = EntityManagerFactoryCache.isEnabled();
+        this.build = build;
+    }
+
+    /**
+     * Starts building the entity manager factory for the current container configuration.
+     *
+     * @param persistenceContextUsers
+     *            the discovered classes using a persistence context.
+     */
+    public static void start(final Set<Class<?>> persistenceContextUsers) {
+        if (SharedEntityManagerFactory.get() != null) {
+            // The producers use the shared factory.
+            return;
+        }
+        final ContainerConfiguration configuration = BeanProviderHelper.getInstance().getConfiguration();
+        FutureTask<EntityManagerFactory> build = new FutureTask<EntityManagerFactory>(new Callable<EntityManagerFactory>() {
+
+            @Override
+            public EntityManagerFactory call() {
+                return EntityManagerProducer.createEntityManagerFactory(configuration, persistenceContextUsers);
+            }
+        });
+        discard(PENDING.getAndSet(new EntityManagerFactoryPrebuild(configuration, build)));
+        Thread thread = new Thread(build, "bean-test-emf-prebuild");
+        thread.setContextClassLoader(ConcurrentBootstrap.getApplicationClassLoader(Thread.currentThread().getContextClassLoader()));
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.debug("Building entity manager factory of {} in the background", configuration);
+    }
+
+    /**
+     * Returns the prebuilt entity manager factory, waiting for the build if necessary.
+     *
+     * @param configuration
+     *            the configuration of the requesting producer.
+     * @return the entity manager factory, or <code>null</code> if none was built for the configuration or the build
+     *         failed (the caller builds the factory again and gets the error itself).
+     */
+    static EntityManagerFactory take(ContainerConfiguration configuration) {
+        EntityManagerFactoryPrebuild prebuild = PENDING.get();
+        if (prebuild == null) {
+            return null;
+        }
+        if (!prebuild.configuration.equals(configuration) || prebuild.cached != EntityManagerFactoryCache.isEnabled()) {
+            discard(PENDING.getAndSet(null));
+            return null;
+        }
+        if (!PENDING.compareAndSet(prebuild, null)) {
+            return null;
+        }
+        return prebuild.await();
+    }
+
+    /**
+     * Returns whether an entity manager factory has been prebuilt (or is being built) and not yet taken by a producer.
+     *
+     * @return <code>true</code> if a prebuilt factory is pending.
+     */
+    public static boolean isPending() {
+        return PENDING.get() != null;
+    }
+
+    /**
+     * Closes the prebuilt entity manager factory, if it has not been taken.
+     */
+    public static void discard() {
+        discard(PENDING.getAndSet(null));
+    }
+
+    private static void discard(EntityManagerFactoryPrebuild prebuild) {
+        if (prebuild == null) {
+            return;
+        }
+        EntityManagerFactory emf = prebuild.await();
+        if (emf != null && !prebuild.cached && emf.isOpen()) {
+            LOGGER.debug("Closing unused entity manager factory of {}", prebuild.configuration);
+            emf.close();
+        }
+    }
+
+    private EntityManagerFactory await() {
+        try {
+            return build.get();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Entity manager factory of {} could not be built in the background", configuration, e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+}
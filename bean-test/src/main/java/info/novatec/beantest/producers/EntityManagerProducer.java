@@ -0,0 +1,328 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.producers;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.api.CdiContainerShutdown;
+import info.novatec.beantest.api.ContainerConfiguration;
+import info.novatec.beantest.extension.BeanTestExtension;
+import info.novatec.beantest.transactions.TransactionWatchdog;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.Reception;
+import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entity manager producer.
+ * <p>
+ * It initializes the entity manager to be injected in EJBs
+ * <p>
+ * The injected entity manager is a proxy which delegates to the current entity manager of the request, so that the
+ * current one can be replaced by a new one (see {@link #renewEntityManager()}) without injecting the beans again.
+ * <p>
+ * If the test configuration requests the reachable entities only, the entity manager factory maps only the classes of
+ * the persistence unit reachable from the beans using a persistence context.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@RequestScoped
+public class EntityManagerProducer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityManagerProducer.class);
+
+    private static final String SQL_INTERCEPTOR_PROPERTY = "hibernate.ejb.interceptor";
+
+    private static final String CONNECTION_PROVIDER_PROPERTY = "hibernate.connection.provider_class";
+    
+    private EntityManagerFactory emf;
+
+    private EntityManager em;
+
+    private EntityManager entityManagerProxy;
+
+    private boolean cachedEntityManagerFactory;
+
+    private boolean sharedEntityManagerFactory;
+
+    @Inject
+    BeanTestExtension beanTestExtension;
+
+    @PostConstruct
+    private void initializeEntityManagerFactory() {
+        ContainerConfiguration configuration = BeanProviderHelper.getInstance().getConfiguration();
+        if (SharedEntityManagerFactory.get() != null) {
+            emf = SharedEntityManagerFactory.get();
+            sharedEntityManagerFactory = true;
+            return;
+        }
+        cachedEntityManagerFactory = EntityManagerFactoryCache.isEnabled();
+        emf = EntityManagerFactoryPrebuild.take(configuration);
+        if (emf == null) {
+            emf = createEntityManagerFactory(configuration, beanTestExtension.getPersistenceContextUsers());
+        }
+    }
+
+    /**
+     * Creates the entity manager factory for the given configuration, or takes it from the
+     * {@link EntityManagerFactoryCache} if the cache is enabled.
+     *
+     * @param configuration
+     *            the container configuration.
+     * @param persistenceContextUsers
+     *            the classes using a persistence context, to determine the reachable entities.
+     * @return the entity manager factory.
+     */
+    static EntityManagerFactory createEntityManagerFactory(ContainerConfiguration configuration, Set<Class<?>> persistenceContextUsers) {
+        String persistenceUnit = configuration.getPersistenceUnit();
+        Map<String, String> properties = getEntityManagerFactoryProperties(configuration.getJpaProfile(),
+                DatabaseBackends.getProperties(configuration.getDatabaseBackend(), persistenceUnit));
+        List<String> classNames = null;
+        if (configuration.isReachableEntitiesOnly()) {
+            classNames = EntityReachability.getReachableClassNames(persistenceUnit, persistenceContextUsers);
+        }
+        if (EntityManagerFactoryCache.isEnabled()) {
+            if (SecondLevelCache.isEnabled()) {
+                properties.putAll(SecondLevelCache.getProperties(persistenceUnit));
+            }
+            return EntityManagerFactoryCache.get(persistenceUnit, properties, classNames);
+        }
+        EntityManagerFactory emf = SchemaScriptCache.createEntityManagerFactory(persistenceUnit, properties, classNames);
+        LOGGER.info("Entity Manager Factory was successfully initialized");
+        return emf;
+    }
+
+
+    /**
+     * Removes the cached reachable entities of the beans. A process which loads the bean classes again with a new class
+     * loader (for example the {@link info.novatec.beantest.daemon.BeanTestDaemon}) must clear them, otherwise the cache
+     * keeps the previous class loaders alive.
+     */
+    public static void clearReachableEntities() {
+        EntityReachability.clear();
+    }
+
+    /**
+     * Returns the properties of the JPA profile and the database backend. If the {@link TransactionWatchdog} is enabled, the SQL statements are
+     * recorded by the {@link SqlRecordingInterceptor}, which replaces an interceptor configured by the persistence unit.
+     * If the {@link ConnectionPool} is enabled, the connections are provided by the {@link PooledConnectionProvider}.
+     * The flushes are counted by the {@link FlushCountingIntegrator}, unless the {@link FlushCounter} is disabled.
+     */
+    private static Map<String, String> getEntityManagerFactoryProperties(JpaProfile jpaProfile, Map<String, String> databaseProperties) {
+        Map<String, String> properties = new HashMap<String, String>(jpaProfile.getProperties());
+        properties.putAll(databaseProperties);
+        if (TransactionWatchdog.isEnabled()) {
+            properties.put(SQL_INTERCEPTOR_PROPERTY, SqlRecordingInterceptor.class.getName());
+        }
+        if (ConnectionPool.isEnabled()) {
+            properties.put(CONNECTION_PROVIDER_PROPERTY, PooledConnectionProvider.class.getName());
+        }
+        if (FlushCounter.isEnabled()) {
+            properties.put(FlushCountingIntegrator.ENABLED_PROPERTY, "true");
+        }
+        return properties;
+    }
+
+    /**
+     * Returns the entity manager factory of the current request.
+     *
+     * @return the entity manager factory.
+     */
+    public EntityManagerFactory getEntityManagerFactory() {
+        return emf;
+    }
+
+    @Produces
+    public EntityManager getEntityManager(InjectionPoint ip) {
+        PersistenceContext ctx = ip.getAnnotated().getAnnotation(PersistenceContext.class);
+        
+        if (ctx == null) {
+        	//if @PersisteceContext is declared on method, ctx is null at this point.
+        	//ctx should be retrieved from the Method.
+        	Member member = ip.getMember();
+        	if (member instanceof Method) {
+        		Method method = (Method) member;
+        		ctx = method.getAnnotation(PersistenceContext.class);
+        	}
+        }
+        
+        LOGGER.debug("PersistenceContext info:");
+        //This could happen if the application injects the EntityManager via @Inject instead of @PersistenceContext
+        if(ctx != null) {
+            LOGGER.debug("Unit name: {}", ctx.unitName());
+        }
+        
+        LOGGER.debug("Bean defining the injection point: {}", ip.getBean().getBeanClass());
+        LOGGER.debug("Field to be injected: {}", ip.getMember());
+
+        if (entityManagerProxy == null) {
+            entityManagerProxy = (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                    new Class<?>[] {EntityManager.class}, new CurrentEntityManagerHandler());
+        }
+        return entityManagerProxy;
+    }
+
+    /**
+     * Closes the current entity manager. The injected entity managers delegate to a new one from now on.
+     */
+    public void renewEntityManager() {
+        closeEntityManager();
+    }
+
+    private EntityManager getCurrentEntityManager() {
+        if (em == null) {
+            em = emf.createEntityManager();
+        }
+        return em;
+    }
+    
+    /**
+     * Closes the entity manager and entity manager factory when the event {@link CdiContainerShutdown} is fired.
+     * <p>
+     * The producer is only notified if it already exists, so no entity manager factory is created just to be closed.
+     * 
+     * @param containerShutdown
+     *            the event that indicates that the container is about to shutdown.
+     */
+    public void closeEntityManagerAndEntityManagerFactory(@Observes(notifyObserver = Reception.IF_EXISTS) CdiContainerShutdown containerShutdown) {
+        closeResources();
+    }
+
+    /**
+     * Closes the entity manager and entity manager factory when the request context is destroyed (for example when the
+     * contexts of a reused container are restarted).
+     * <p>
+     * A cached entity manager factory is not closed. Instead, the data of its tables is deleted and the second-level cache
+     * regions of the tables which contained rows are evicted (see {@link SecondLevelCache}). A shared entity manager
+     * factory is left untouched, it belongs to the request that shared it. The tasks sharing the entity manager factory
+     * of this request are awaited before.
+     *
+     * @see EntityManagerFactoryCache
+     * @see SharedEntityManagerFactory
+     */
+    @PreDestroy
+    private void closeResources() {
+        closeEntityManager();
+        if (sharedEntityManagerFactory) {
+            emf = null;
+            return;
+        }
+        awaitSharingTasks();
+        if (cachedEntityManagerFactory) {
+            resetCachedEntityManagerFactory();
+        } else {
+            closeEntityManagerFactory();
+        }
+    }
+
+    /**
+     * Waits for the tasks which share the entity manager factory, for example the ones of a
+     * {@link info.novatec.beantest.concurrent.ManagedExecutor}.
+     */
+    private void awaitSharingTasks() {
+        if (emf == null) {
+            return;
+        }
+        try {
+            if (!SharedEntityManagerFactory.awaitRelease(emf)) {
+                LOGGER.warn("{} tasks sharing the entity manager factory did not complete before it was closed",
+                        SharedEntityManagerFactory.getRetainingTasks(emf));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeEntityManager() {
+        if (em == null) {
+            return;
+        }
+        if (em.isOpen()) {
+            try {
+                // In case a transaction is still open.
+                if (em.getTransaction().isActive() && !em.getTransaction().getRollbackOnly()) {
+                    em.getTransaction().commit();
+                }
+            } finally {
+                LOGGER.debug("Closing entity manager");
+                em.close();
+            }
+
+        }
+        em = null;
+    }
+
+    private void resetCachedEntityManagerFactory() {
+        if (emf == null) {
+            return;
+        }
+        if (emf.isOpen()) {
+            LOGGER.debug("Deleting data of cached entity manager factory");
+            SecondLevelCache.reset(emf, DatabaseCleaner.deleteAllData(emf));
+        }
+        emf = null;
+    }
+
+    private void closeEntityManagerFactory() {
+        if (emf == null) {
+            return;
+        }
+        if (emf.isOpen()) {
+            LOGGER.debug("Closing entity manager factory");
+            emf.close();
+        }
+        emf = null;
+    }
+
+    /**
+     * Delegates the calls of the injected entity manager to the current one.
+     */
+    private class CurrentEntityManagerHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("equals") && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode") && method.getParameterTypes().length == 0) {
+                return System.identityHashCode(proxy);
+            }
+            try {
+                return method.invoke(getCurrentEntityManager(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import info.novatec.beantest.extension.ClassFiles;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines the classes of a persistence unit which are reachable from the beans using a persistence context.
+ * <p>
+ * The class files of the beans are scanned for references to the classes of the persistence unit, including the
+ * entity names used in JPQL queries. The result is closed over the super and sub classes and the types of the fields
+ * and getters of the reachable classes, which covers the associations and embedded types.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+final class EntityReachability {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityReachability.class);
+
+    private static final Pattern TYPE_DESCRIPTOR = Pattern.compile("L([\\w/$]+)[;<]");
+
+    private static final Pattern WORD = Pattern.compile("[\\w$]+");
+
+    private static final ConcurrentMap<List<Object>, List<String>> REACHABLE_CLASS_NAMES = new ConcurrentHashMap<List<Object>, List<String>>();
+
+    private EntityReachability() {
+        // Empty on purpose.
+    }
+
+    /**
+     * Returns the names of the classes of the given persistence unit reachable from the given beans. The result is
+     * cached, since it only changes with the classes.
+     * <p>
+     * A persistence unit without <code>&lt;class&gt;</code> entries relies on Hibernate to scan its archive for the
+     * entities, so there is nothing to reduce: <code>null</code> is returned, which maps the classes of the persistence
+     * unit as usual.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @param beanClasses
+     *            the classes of the beans using a persistence context.
+     * @return the names of the reachable classes, or <code>null</code> if the persistence unit doesn't list any class.
+     */
+    static List<String> getReachableClassNames(String persistenceUnit, Set<Class<?>> beanClasses) {
+        List<Object> key = Arrays.<Object> asList(persistenceUnit, beanClasses);
+        List<String> classNames = REACHABLE_CLASS_NAMES.get(key);
+        if (classNames == null) {
+            List<String> persistenceUnitClassNames = PersistenceUnits.getClassNames(persistenceUnit);
+            if (persistenceUnitClassNames.isEmpty()) {
+                LOGGER.warn("Persistence unit {} doesn't list its classes, all its entities are mapped", persistenceUnit);
+                return null;
+            }
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            classNames = compute(beanClasses, persistenceUnitClassNames,
+                    classLoader != null ? classLoader : EntityReachability.class.getClassLoader());
+            REACHABLE_CLASS_NAMES.put(key, classNames);
+            LOGGER.info("Reachable classes of {}: {}", persistenceUnit, classNames);
+        }
+        return classNames;
+    }
+
+    /**
+     * Removes the cached results, whose keys refer to the bean classes.
+     */
+    static void clear() {
+        REACHABLE_CLASS_NAMES.clear();
+    }
+
+    /**
+     * Returns the names of the classes of the persistence unit reachable from the given beans, in the order of the
+     * persistence unit.
+     *
+     * @param beanClasses
+     *            the classes of the beans using a persistence context.
+     * @param persistenceUnitClassNames
+     *            the names of the classes listed by the persistence unit.
+     * @param classLoader
+     *            the class loader of the classes.
+     * @return the names of the reachable classes.
+     */
+    static List<String> compute(Collection<Class<?>> beanClasses, List<String> persistenceUnitClassNames, ClassLoader classLoader) {
+        Map<String, Class<?>> candidates = new HashMap<String, Class<?>>();
+        Map<String, Class<?>> entityNames = new HashMap<String, Class<?>>();
+        for (String className : persistenceUnitClassNames) {
+            try {
+                Class<?> candidate = Class.forName(className, false, classLoader);
+                candidates.put(className, candidate);
+                Entity entity = candidate.getAnnotation(Entity.class);
+                if (entity != null) {
+                    entityNames.put(entity.name().isEmpty() ? candidate.getSimpleName() : entity.name(), candidate);
+                }
+            } catch (ClassNotFoundException e) {
+                LOGGER.warn("Class {} of the persistence unit not found", className);
+            }
+        }
+
+        Set<Class<?>> reachable = new LinkedHashSet<Class<?>>();
+        LinkedList<Class<?>> queue = new LinkedList<Class<?>>();
+        for (Class<?> beanClass : beanClasses) {
+            for (Class<?> type = beanClass; type != null && type != Object.class; type = type.getSuperclass()) {
+                for (String reference : ClassFiles.getConstantPoolStrings(type)) {
+                    addReferences(reference, candidates, entityNames, queue);
+                }
+            }
+        }
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.removeFirst();
+            if (!reachable.add(type)) {
+                continue;
+            }
+            for (Class<?> candidate : candidates.values()) {
+                if (candidate.isAssignableFrom(type) || type.isAssignableFrom(candidate)) {
+                    queue.add(candidate);
+                }
+            }
+            for (Class<?> referencedType : getReferencedTypes(type)) {
+                if (candidates.containsValue(referencedType)) {
+                    queue.add(referencedType);
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<String>();
+        for (String className : persistenceUnitClassNames) {
+            if (reachable.contains(candidates.get(className))) {
+                result.add(className);
+            }
+        }
+        return result;
+    }
+
+    private static void addReferences(String reference, Map<String, Class<?>> candidates, Map<String, Class<?>> entityNames, List<Class<?>> queue) {
+        Class<?> candidate = candidates.get(reference.replace('/', '.'));
+        if (candidate != null) {
+            queue.add(candidate);
+        }
+        Matcher descriptor = TYPE_DESCRIPTOR.matcher(reference);
+        while (descriptor.find()) {
+            candidate = candidates.get(descriptor.group(1).replace('/', '.'));
+            if (candidate != null) {
+                queue.add(candidate);
+            }
+        }
+        // Entity names in JPQL queries.
+        Matcher word = WORD.matcher(reference);
+        while (word.find()) {
+            candidate = entityNames.get(word.group());
+            if (candidate != null) {
+                queue.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Returns the types of the fields and getters of the given class, including their type arguments and the target
+     * entities declared by their annotations.
+     */
+    private static Set<Class<?>> getReferencedTypes(Class<?> type) {
+        Set<Class<?>> referencedTypes = new LinkedHashSet<Class<?>>();
+        for (Field field : type.getDeclaredFields()) {
+            addTypes(field.getGenericType(), referencedTypes);
+            addTargetEntities(field, referencedTypes);
+        }
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.getParameterTypes().length == 0 && (method.getName().startsWith("get") || method.getName().startsWith("is"))) {
+                addTypes(method.getGenericReturnType(), referencedTypes);
+                addTargetEntities(method, referencedTypes);
+            }
+        }
+        return referencedTypes;
+    }
+
+    private static void addTypes(Type type, Set<Class<?>> types) {
+        if (type instanceof Class) {
+            Class<?> clazz = (Class<?>) type;
+            types.add(clazz.isArray() ? clazz.getComponentType() : clazz);
+        } else if (type instanceof ParameterizedType) {
+            addTypes(((ParameterizedType) type).getRawType(), types);
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                addTypes(argument, types);
+            }
+        }
+    }
+
+    private static void addTargetEntities(AnnotatedElement element, Set<Class<?>> types) {
+        for (Annotation annotation : element.getAnnotations()) {
+            try {
+                Object targetEntity = annotation.annotationType().getMethod("targetEntity").invoke(annotation);
+                if (targetEntity instanceof Class && targetEntity != void.class) {
+                    types.add((Class<?>) targetEntity);
+                }
+            } catch (NoSuchMethodException e) {
+                // Not an association.
+            } catch (Exception e) {
+                LOGGER.debug("Target entity of {} could not be read", element, e);
+            }
+        }
+    }
+
+}
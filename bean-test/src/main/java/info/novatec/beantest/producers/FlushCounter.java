@@ -0,0 +1,90 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+/**
+ * Counts the flushes of the entity managers per thread.
+ * <p>
+ * Only the flushes which actually execute pending changes are counted, both explicit flushes and the flushes before a
+ * commit or a query. The flushes are only counted with Hibernate, by the {@link FlushCountingIntegrator}, for the entity manager factories created by the
+ * {@link EntityManagerProducer}. The counting can be disabled via the system property
+ * <code>beantest.flushCounting=false</code> or {@link #setEnabled(boolean)}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class FlushCounter {
+
+    /**
+     * System property to disable the counting.
+     */
+    public static final String ENABLED_PROPERTY = "beantest.flushCounting";
+
+    private static volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+
+    private static final ThreadLocal<long[]> FLUSHES = new ThreadLocal<long[]>() {
+
+        @Override
+        protected long[] initialValue() {
+            // The number of flushes and the number of changes executed by the running flush.
+            return new long[2];
+        }
+    };
+
+    private FlushCounter() {
+        // Empty on purpose.
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the counting for the entity manager factories created from now on.
+     *
+     * @param enabled
+     *            <code>true</code> to count the flushes.
+     */
+    public static void setEnabled(boolean enabled) {
+        FlushCounter.enabled = enabled;
+    }
+
+    /**
+     * Returns the number of flushes executed by the current thread so far.
+     *
+     * @return the number of flushes.
+     */
+    public static long getFlushCount() {
+        return FLUSHES.get()[0];
+    }
+
+    static void flushStarted() {
+        FLUSHES.get()[1] = 0;
+    }
+
+    static void changeExecuted() {
+        FLUSHES.get()[1]++;
+    }
+
+    static void flushFinished() {
+        long[] flushes = FLUSHES.get();
+        if (flushes[1] > 0) {
+            flushes[0]++;
+            flushes[1] = 0;
+        }
+    }
+
+}
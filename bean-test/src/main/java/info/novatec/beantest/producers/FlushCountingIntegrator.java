@@ -0,0 +1,165 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.util.Properties;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Counts the flushes of a Hibernate session factory in the {@link FlushCounter}. It is discovered by Hibernate via
+ * <code>META-INF/services/org.hibernate.integrator.spi.Integrator</code>, but only integrates into the session factories
+ * whose properties contain <code>beantest.flushCounting=true</code>, which the {@link EntityManagerProducer} sets.
+ * <p>
+ * The configured listeners are kept: listeners are prepended and appended to the flush listeners, and appended to the
+ * listeners of the executed changes. Only flushes which actually execute pending changes are counted. The flag
+ * {@link AutoFlushEvent#isFlushRequired()} can't be used for that, because it is evaluated after the changes have been
+ * executed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class FlushCountingIntegrator implements Integrator {
+
+    /**
+     * Property of the entity manager factory which enables the counting.
+     */
+    public static final String ENABLED_PROPERTY = FlushCounter.ENABLED_PROPERTY;
+
+    @Override
+    public void integrate(Configuration configuration, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        registerListeners(configuration.getProperties(), serviceRegistry);
+    }
+
+    @Override
+    public void integrate(MetadataImplementor metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        registerListeners(sessionFactory.getProperties(), serviceRegistry);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        // Nothing to clean up.
+    }
+
+    private void registerListeners(Properties properties, SessionFactoryServiceRegistry serviceRegistry) {
+        if (!"true".equals(properties.getProperty(ENABLED_PROPERTY))) {
+            return;
+        }
+        EventListenerRegistry eventListenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        FlushStartListener flushStart = new FlushStartListener();
+        eventListenerRegistry.prependListeners(EventType.FLUSH, flushStart);
+        eventListenerRegistry.prependListeners(EventType.AUTO_FLUSH, flushStart);
+        FlushEndListener flushEnd = new FlushEndListener();
+        eventListenerRegistry.appendListeners(EventType.FLUSH, flushEnd);
+        eventListenerRegistry.appendListeners(EventType.AUTO_FLUSH, flushEnd);
+        ExecutionListener execution = new ExecutionListener();
+        eventListenerRegistry.appendListeners(EventType.POST_INSERT, execution);
+        eventListenerRegistry.appendListeners(EventType.POST_UPDATE, execution);
+        eventListenerRegistry.appendListeners(EventType.POST_DELETE, execution);
+        eventListenerRegistry.appendListeners(EventType.POST_COLLECTION_RECREATE, execution);
+        eventListenerRegistry.appendListeners(EventType.POST_COLLECTION_UPDATE, execution);
+        eventListenerRegistry.appendListeners(EventType.POST_COLLECTION_REMOVE, execution);
+    }
+
+    private static class FlushStartListener implements FlushEventListener, AutoFlushEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onFlush(FlushEvent event) throws HibernateException {
+            FlushCounter.flushStarted();
+        }
+
+        @Override
+        public void onAutoFlush(AutoFlushEvent event) throws HibernateException {
+            FlushCounter.flushStarted();
+        }
+    }
+
+    private static class FlushEndListener implements FlushEventListener, AutoFlushEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onFlush(FlushEvent event) throws HibernateException {
+            FlushCounter.flushFinished();
+        }
+
+        @Override
+        public void onAutoFlush(AutoFlushEvent event) throws HibernateException {
+            FlushCounter.flushFinished();
+        }
+    }
+
+    private static class ExecutionListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+            PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            FlushCounter.changeExecuted();
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            FlushCounter.changeExecuted();
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            FlushCounter.changeExecuted();
+        }
+
+        @Override
+        public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+            FlushCounter.changeExecuted();
+        }
+
+        @Override
+        public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+            FlushCounter.changeExecuted();
+        }
+
+        @Override
+        public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+            FlushCounter.changeExecuted();
+        }
+    }
+
+}
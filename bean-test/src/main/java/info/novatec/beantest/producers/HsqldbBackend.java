@@ -0,0 +1,66 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory HSQLDB database.
+ * <p>
+ * The database writes no transaction log and uses multi-version concurrency control, so that readers never wait for
+ * the locks of writers. Conflicting writers are rolled back instead of waiting.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class HsqldbBackend implements DatabaseBackend {
+
+    @Override
+    public Map<String, String> getProperties(String databaseName) {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("javax.persistence.jdbc.url", getUrl(databaseName) + ";hsqldb.tx=mvcc");
+        properties.put("javax.persistence.jdbc.driver", "org.hsqldb.jdbc.JDBCDriver");
+        properties.put("javax.persistence.jdbc.user", "SA");
+        properties.put("javax.persistence.jdbc.password", "");
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        return properties;
+    }
+
+    @Override
+    public void drop(String databaseName) throws SQLException {
+        Connection connection = DriverManager.getConnection(getUrl(databaseName), "SA", "");
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute("SHUTDOWN");
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static String getUrl(String databaseName) {
+        return "jdbc:hsqldb:mem:" + databaseName;
+    }
+
+}
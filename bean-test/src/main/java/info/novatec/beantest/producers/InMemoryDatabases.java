@@ -0,0 +1,270 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the in-memory databases the entity manager factories connect to and drops them, so that they don't occupy
+ * the heap for the rest of the JVM.
+ * <p>
+ * The {@link DatabaseLifecycleObserver} registers the database of every entity manager factory created by the
+ * {@link EntityManagerProducer}: the database of its {@link DatabaseBackend}, or the in-memory Derby, H2 or HSQLDB
+ * database of the persistence unit, for example <code>jdbc:derby:memory:myDB;create=true</code>. The databases
+ * without an open entity manager factory are dropped by {@link #dropIdleDatabases(boolean)}, which is called when the CDI
+ * container is shut down. The databases of the {@link ConnectionPool} are kept until the end of a
+ * {@link info.novatec.beantest.api.BeanTestSuite}, since the pooled connections are meant to outlive the containers.
+ * <p>
+ * The reclaimed heap is measured if the system property <code>beantest.database.heapReport=true</code> is set or
+ * {@link #setHeapReport(boolean)} is called. This triggers two garbage collections per drop.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class InMemoryDatabases {
+
+    /**
+     * System property to enable measuring the reclaimed heap.
+     */
+    public static final String HEAP_REPORT_PROPERTY = "beantest.database.heapReport";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryDatabases.class);
+
+    private static final Map<String, TrackedDatabase> DATABASES = new LinkedHashMap<String, TrackedDatabase>();
+
+    private static volatile boolean heapReport = Boolean.getBoolean(HEAP_REPORT_PROPERTY);
+
+    private static long droppedDatabases;
+
+    private static long reclaimedHeap;
+
+    private InMemoryDatabases() {
+        // Empty on purpose.
+    }
+
+    public static boolean isHeapReport() {
+        return heapReport;
+    }
+
+    public static void setHeapReport(boolean heapReport) {
+        InMemoryDatabases.heapReport = heapReport;
+    }
+
+    /**
+     * Returns the tracked databases which have not been dropped yet.
+     *
+     * @return the names of the databases, prefixed by the class name of their backend.
+     */
+    public static synchronized List<String> getDatabases() {
+        return new ArrayList<String>(DATABASES.keySet());
+    }
+
+    /**
+     * Returns whether the given database of the given backend is tracked and has not been dropped yet.
+     *
+     * @param backendClass
+     *            the backend.
+     * @param databaseName
+     *            the name of the database.
+     * @return <code>true</code> if the database is tracked.
+     */
+    public static synchronized boolean isTracked(Class<? extends DatabaseBackend> backendClass, String databaseName) {
+        return DATABASES.containsKey(getKey(backendClass.getName(), databaseName));
+    }
+
+    /**
+     * Returns whether an open entity manager factory is connected to the given database of the given backend.
+     *
+     * @param backendClass
+     *            the backend.
+     * @param databaseName
+     *            the name of the database.
+     * @return <code>true</code> if the database is in use.
+     */
+    public static synchronized boolean isInUse(Class<? extends DatabaseBackend> backendClass, String databaseName) {
+        TrackedDatabase database = DATABASES.get(getKey(backendClass.getName(), databaseName));
+        return database != null && database.openFactories > 0;
+    }
+
+    /**
+     * Returns the number of databases dropped so far.
+     *
+     * @return the number of dropped databases.
+     */
+    public static synchronized long getDroppedDatabases() {
+        return droppedDatabases;
+    }
+
+    /**
+     * Returns the heap reclaimed by dropping the databases so far. It is only measured while the heap report is enabled.
+     *
+     * @return the reclaimed heap in bytes.
+     */
+    public static synchronized long getReclaimedHeap() {
+        return reclaimedHeap;
+    }
+
+    /**
+     * Registers an entity manager factory connected to the given database.
+     *
+     * @param backendClassName
+     *            the class name of the backend, or <code>null</code> if the database of the persistence unit is used.
+     * @param databaseName
+     *            the name of the database given by the backend, or <code>null</code> if the database of the persistence
+     *            unit is used.
+     * @param url
+     *            the JDBC URL of the entity manager factory.
+     */
+    static synchronized void opened(String backendClassName, String databaseName, String url) {
+        if (backendClassName == null) {
+            backendClassName = getBackendClassName(url);
+            databaseName = getDatabaseName(url);
+            if (backendClassName == null || databaseName.isEmpty()) {
+                // Not an in-memory database, or a private one which vanishes with its connection.
+                return;
+            }
+        }
+        String key = getKey(backendClassName, databaseName);
+        TrackedDatabase database = DATABASES.get(key);
+        if (database == null) {
+            database = new TrackedDatabase(backendClassName, databaseName, url);
+            DATABASES.put(key, database);
+        }
+        database.openFactories++;
+    }
+
+    /**
+     * Unregisters an entity manager factory connected to the given database.
+     *
+     * @see #opened(String, String, String)
+     */
+    static synchronized void closed(String backendClassName, String databaseName, String url) {
+        if (backendClassName == null) {
+            backendClassName = getBackendClassName(url);
+            databaseName = getDatabaseName(url);
+            if (backendClassName == null) {
+                return;
+            }
+        }
+        TrackedDatabase database = DATABASES.get(getKey(backendClassName, databaseName));
+        if (database != null && database.openFactories > 0) {
+            database.openFactories--;
+        }
+    }
+
+    /**
+     * Drops the tracked databases without an open entity manager factory.
+     *
+     * @param includingPooled
+     *            whether the databases of a {@link ConnectionPool} should be dropped as well. Their pooled connections are
+     *            closed first.
+     * @return the number of dropped databases.
+     */
+    public static synchronized int dropIdleDatabases(boolean includingPooled) {
+        List<TrackedDatabase> idleDatabases = new ArrayList<TrackedDatabase>();
+        for (Iterator<TrackedDatabase> iterator = DATABASES.values().iterator(); iterator.hasNext();) {
+            TrackedDatabase database = iterator.next();
+            if (database.openFactories == 0 && (includingPooled || !ConnectionPool.isPooled(database.url))) {
+                idleDatabases.add(database);
+                iterator.remove();
+            }
+        }
+        if (idleDatabases.isEmpty()) {
+            return 0;
+        }
+        long usedHeapBefore = heapReport ? getUsedHeapAfterGc() : 0;
+        int dropped = 0;
+        for (TrackedDatabase database : idleDatabases) {
+            ConnectionPool.close(database.url);
+            try {
+                DatabaseBackends.newInstance(database.backendClassName).drop(database.databaseName);
+                dropped++;
+            } catch (SQLException e) {
+                LOGGER.warn("Database {} could not be dropped", database.databaseName, e);
+            }
+        }
+        droppedDatabases += dropped;
+        if (heapReport) {
+            long reclaimed = Math.max(0, usedHeapBefore - getUsedHeapAfterGc());
+            reclaimedHeap += reclaimed;
+            LOGGER.info("{} in-memory databases were dropped, {} KB of heap reclaimed", dropped, reclaimed / 1024);
+        } else {
+            LOGGER.debug("{} in-memory databases were dropped", dropped);
+        }
+        return dropped;
+    }
+
+    private static long getUsedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static String getKey(String backendClassName, String databaseName) {
+        return backendClassName + ":" + databaseName;
+    }
+
+    /**
+     * Returns the backend which is able to drop the in-memory database of the given URL.
+     *
+     * @return the class name of the backend, or <code>null</code> if the URL doesn't denote an in-memory database.
+     */
+    static String getBackendClassName(String url) {
+        if (url == null) {
+            return null;
+        }
+        if (url.startsWith("jdbc:derby:memory:")) {
+            return DerbyBackend.class.getName();
+        }
+        if (url.startsWith("jdbc:h2:mem:")) {
+            return H2Backend.class.getName();
+        }
+        if (url.startsWith("jdbc:hsqldb:mem:")) {
+            return HsqldbBackend.class.getName();
+        }
+        return null;
+    }
+
+    private static String getDatabaseName(String url) {
+        String name = url.substring(url.indexOf(':', url.indexOf(':', "jdbc:".length()) + 1) + 1);
+        return name.contains(";") ? name.substring(0, name.indexOf(';')) : name;
+    }
+
+    private static class TrackedDatabase {
+
+        private final String backendClassName;
+
+        private final String databaseName;
+
+        private final String url;
+
+        private int openFactories;
+
+        TrackedDatabase(String backendClassName, String databaseName, String url) {
+            this.backendClassName = backendClassName;
+            this.databaseName = databaseName;
+            this.url = url;
+        }
+    }
+
+}
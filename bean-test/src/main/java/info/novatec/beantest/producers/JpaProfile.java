@@ -0,0 +1,67 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the entity manager factory and the entity managers created by the {@link EntityManagerProducer}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ * @see info.novatec.beantest.api.BeanTestConfiguration#jpaProfile()
+ */
+public enum JpaProfile {
+
+    /**
+     * The settings of the persistence unit, without any changes.
+     */
+    STANDARD(Collections.<String, String> emptyMap()),
+
+    /**
+     * JDBC batching with ordered inserts and updates. The flush mode stays <code>AUTO</code>: Hibernate only flushes
+     * before a query if the query uses a table with pending changes, so the flushes are deferred to the commit wherever
+     * this doesn't change the query results.
+     */
+    PERFORMANCE(batchingProperties());
+
+    private final Map<String, String> properties;
+
+    private JpaProfile(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    private static Map<String, String> batchingProperties() {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("hibernate.jdbc.batch_size", "50");
+        properties.put("hibernate.jdbc.batch_versioned_data", "true");
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.order_updates", "true");
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Returns the properties passed to the entity manager factory in addition to the ones of the persistence unit.
+     *
+     * @return the additional properties.
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+}
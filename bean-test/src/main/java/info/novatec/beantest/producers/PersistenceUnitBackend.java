@@ -0,0 +1,39 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The database configured in the persistence unit, without any changes. The database is not dropped.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class PersistenceUnitBackend implements DatabaseBackend {
+
+    @Override
+    public Map<String, String> getProperties(String databaseName) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void drop(String databaseName) {
+        // The database belongs to the persistence unit.
+    }
+
+}
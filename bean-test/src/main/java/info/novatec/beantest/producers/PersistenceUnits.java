@@ -0,0 +1,138 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.persistence.PersistenceException;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+import org.hibernate.ejb.Ejb3Configuration;
+import org.hibernate.ejb.packaging.PersistenceMetadata;
+import org.hibernate.ejb.packaging.PersistenceXmlLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configures Hibernate for the persistence units of <code>META-INF/persistence.xml</code>, optionally restricted to
+ * a subset of their classes.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+final class PersistenceUnits {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceUnits.class);
+
+    private static final String PERSISTENCE_XML = "META-INF/persistence.xml";
+
+    private static final String SHARED_CACHE_MODE_PROPERTY = "javax.persistence.sharedCache.mode";
+
+    private PersistenceUnits() {
+        // Empty on purpose.
+    }
+
+    /**
+     * Configures the given persistence unit.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @param properties
+     *            properties overriding the ones of the persistence unit.
+     * @param classNames
+     *            the classes to be mapped, or <code>null</code> to map the classes of the persistence unit.
+     * @return the configuration, or <code>null</code> if there is no such persistence unit for Hibernate.
+     */
+    static Ejb3Configuration configure(String persistenceUnit, Map<String, String> properties, Collection<String> classNames) {
+        if (classNames == null) {
+            return new Ejb3Configuration().configure(persistenceUnit, properties);
+        }
+        PersistenceMetadata metadata = getMetadata(persistenceUnit);
+        metadata.setClasses(new ArrayList<String>(classNames));
+        metadata.setExcludeUnlistedClasses(true);
+        return new Ejb3Configuration().configure(metadata, new HashMap<String, String>(properties));
+    }
+
+    /**
+     * Returns the names of the classes listed by the given persistence unit.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the names of the listed classes.
+     */
+    static List<String> getClassNames(String persistenceUnit) {
+        return getMetadata(persistenceUnit).getClasses();
+    }
+
+    /**
+     * Returns the properties declared by the given persistence unit.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the properties, empty if there is no such persistence unit.
+     */
+    static Properties getProperties(String persistenceUnit) {
+        try {
+            return getMetadata(persistenceUnit).getProps();
+        } catch (PersistenceException e) {
+            LOGGER.debug("Properties of persistence unit {} could not be read", persistenceUnit, e);
+            return new Properties();
+        }
+    }
+
+    /**
+     * Returns the shared cache mode declared by the given persistence unit.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the shared cache mode, or <code>null</code> if the persistence unit doesn't declare any.
+     */
+    static String getSharedCacheMode(String persistenceUnit) {
+        PersistenceMetadata metadata = getMetadata(persistenceUnit);
+        if (metadata.getSharedCacheMode() != null) {
+            return metadata.getSharedCacheMode();
+        }
+        return metadata.getProps().getProperty(SHARED_CACHE_MODE_PROPERTY);
+    }
+
+    private static PersistenceMetadata getMetadata(String persistenceUnit) {
+        try {
+            Enumeration<URL> persistenceXmls = getClassLoader().getResources(PERSISTENCE_XML);
+            while (persistenceXmls.hasMoreElements()) {
+                for (PersistenceMetadata metadata : PersistenceXmlLoader.deploy(persistenceXmls.nextElement(), new HashMap<String, String>(),
+                        new Ejb3Configuration().getHibernateConfiguration().getEntityResolver(), PersistenceUnitTransactionType.RESOURCE_LOCAL)) {
+                    if (metadata.getName().equals(persistenceUnit)) {
+                        return metadata;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new PersistenceException("Persistence unit " + persistenceUnit + " could not be read", e);
+        }
+        throw new PersistenceException("No persistence unit named " + persistenceUnit);
+    }
+
+    private static ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : PersistenceUnits.class.getClassLoader();
+    }
+
+}
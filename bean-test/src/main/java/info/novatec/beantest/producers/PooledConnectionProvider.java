@@ -0,0 +1,109 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.internal.util.ReflectHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.spi.Configurable;
+
+/**
+ * Hibernate connection provider which takes the connections from the shared {@link ConnectionPool} of the database
+ * URL of the persistence unit, instead of opening them for every entity manager factory.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class PooledConnectionProvider implements ConnectionProvider, Configurable {
+
+    private static final String JPA_JDBC_URL = "javax.persistence.jdbc.url";
+
+    private static final String JPA_JDBC_DRIVER = "javax.persistence.jdbc.driver";
+
+    private static final String JPA_JDBC_USER = "javax.persistence.jdbc.user";
+
+    private static final String JPA_JDBC_PASSWORD = "javax.persistence.jdbc.password";
+
+    private ConnectionPool pool;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void configure(Map configurationValues) {
+        String url = getSetting(configurationValues, AvailableSettings.URL, JPA_JDBC_URL);
+        if (url == null) {
+            throw new HibernateException("The persistence unit doesn't declare a JDBC URL");
+        }
+        String driver = getSetting(configurationValues, AvailableSettings.DRIVER, JPA_JDBC_DRIVER);
+        if (driver != null) {
+            try {
+                ReflectHelper.classForName(driver);
+            } catch (ClassNotFoundException e) {
+                throw new HibernateException("JDBC driver " + driver + " not found", e);
+            }
+        }
+        pool = ConnectionPool.get(url, getSetting(configurationValues, AvailableSettings.USER, JPA_JDBC_USER),
+                getSetting(configurationValues, AvailableSettings.PASS, JPA_JDBC_PASSWORD));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static String getSetting(Map configurationValues, String hibernateName, String jpaName) {
+        Object value = configurationValues.get(hibernateName);
+        if (value == null) {
+            value = configurationValues.get(jpaName);
+        }
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType) || PooledConnectionProvider.class.isAssignableFrom(unwrapType)
+                || javax.sql.DataSource.class.isAssignableFrom(unwrapType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (ConnectionProvider.class.equals(unwrapType) || PooledConnectionProvider.class.isAssignableFrom(unwrapType)) {
+            return (T) this;
+        }
+        if (javax.sql.DataSource.class.isAssignableFrom(unwrapType)) {
+            return (T) pool;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+}
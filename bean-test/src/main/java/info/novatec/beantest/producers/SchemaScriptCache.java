@@ -0,0 +1,423 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.hibernate.Session;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.ejb.Ejb3Configuration;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.mapping.Component;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the database schema of entity manager factories from cached DDL scripts instead of Hibernate's
+ * <code>hbm2ddl</code>.
+ * <p>
+ * If the cache is enabled via the system property <code>beantest.ddl.cache=true</code> or {@link #setEnabled(boolean)},
+ * the drop and create scripts of a persistence unit are generated once and stored in the directory given by
+ * <code>beantest.ddl.cache.dir</code> (<code>target/beantest-ddl</code> by default). The scripts are keyed by a hash of
+ * the mapped classes, the mapping files and the settings of the persistence unit, so they are regenerated whenever
+ * one of them changes. Every new entity manager factory replays the scripts in JDBC batches, replacing the
+ * <code>hibernate.hbm2ddl.auto</code> setting of the persistence unit. The cache is only used for persistence units
+ * which create their schema (<code>create</code> or <code>create-drop</code>); the schema of the other persistence units
+ * is handled by Hibernate as configured.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class SchemaScriptCache {
+
+    /**
+     * System property to enable the cache.
+     */
+    public static final String ENABLED_PROPERTY = "beantest.ddl.cache";
+
+    /**
+     * System property for the directory of the cached scripts.
+     */
+    public static final String DIRECTORY_PROPERTY = "beantest.ddl.cache.dir";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaScriptCache.class);
+
+    private static final String HBM2DDL_PROPERTY = "hibernate.hbm2ddl.auto";
+
+    private static final String CREATE_MARKER = "-- create";
+
+    /**
+     * Settings which don't change the generated DDL, so that they don't invalidate the cached scripts. The connection
+     * settings are among them, since the database name of a {@link DatabaseBackend} differs per worker.
+     */
+    private static final List<String> RUNTIME_SETTINGS = Arrays.asList("hibernate.ejb.session_factory_observer",
+            "hibernate.ejb.interceptor", "hibernate.connection.provider_class", "hibernate.cache.use_second_level_cache",
+            "hibernate.cache.use_query_cache", "hibernate.cache.region.factory_class", "hibernate.generate_statistics",
+            "javax.persistence.sharedCache.mode", "javax.persistence.jdbc.url", "javax.persistence.jdbc.user",
+            "javax.persistence.jdbc.password", "hibernate.connection.url", "hibernate.connection.username",
+            "hibernate.connection.password");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static volatile File directory = new File(System.getProperty(DIRECTORY_PROPERTY, "target/beantest-ddl"));
+
+    private SchemaScriptCache() {
+        // Empty on purpose.
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SchemaScriptCache.enabled = enabled;
+    }
+
+    public static File getDirectory() {
+        return directory;
+    }
+
+    public static void setDirectory(File directory) {
+        SchemaScriptCache.directory = directory;
+    }
+
+    /**
+     * Creates an entity manager factory. If the cache is enabled, its schema is created from the cached scripts.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @param properties
+     *            properties overriding the ones of the persistence unit.
+     * @return the entity manager factory.
+     */
+    public static EntityManagerFactory createEntityManagerFactory(String persistenceUnit, Map<String, String> properties) {
+        return createEntityManagerFactory(persistenceUnit, properties, null);
+    }
+
+    /**
+     * Creates an entity manager factory which maps the given classes of the persistence unit only. If the cache is
+     * enabled, its schema is created from the cached scripts.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @param properties
+     *            properties overriding the ones of the persistence unit.
+     * @param classNames
+     *            the classes to be mapped, or <code>null</code> to map all the classes of the persistence unit.
+     * @return the entity manager factory.
+     */
+    public static EntityManagerFactory createEntityManagerFactory(String persistenceUnit, Map<String, String> properties,
+            Collection<String> classNames) {
+        if (!enabled) {
+            if (classNames == null) {
+                return Persistence.createEntityManagerFactory(persistenceUnit, properties);
+            }
+            return PersistenceUnits.configure(persistenceUnit, properties, classNames).buildEntityManagerFactory();
+        }
+        Ejb3Configuration ejb3Configuration = PersistenceUnits.configure(persistenceUnit, properties, classNames);
+        if (ejb3Configuration == null) {
+            // Not a Hibernate persistence unit.
+            return Persistence.createEntityManagerFactory(persistenceUnit, properties);
+        }
+        Configuration configuration = ejb3Configuration.getHibernateConfiguration();
+        String hbm2ddl = configuration.getProperty(HBM2DDL_PROPERTY);
+        if (!"create".equals(hbm2ddl) && !"create-drop".equals(hbm2ddl)) {
+            // The schema is validated, updated or left alone, so it must not be dropped.
+            LOGGER.debug("Persistence unit {} doesn't create its schema ({}={}), the DDL cache is not used", persistenceUnit,
+                    HBM2DDL_PROPERTY, hbm2ddl);
+            return ejb3Configuration.buildEntityManagerFactory();
+        }
+        ejb3Configuration.setProperty(HBM2DDL_PROPERTY, "none");
+        configuration.buildMappings();
+        File scriptFile = new File(directory, persistenceUnit + "-" + computeHash(persistenceUnit, configuration) + ".sql");
+
+        EntityManagerFactory emf = ejb3Configuration.buildEntityManagerFactory();
+        try {
+            List<List<String>> script = readScript(scriptFile);
+            if (script == null) {
+                Dialect dialect = ((SessionFactoryImplementor) ((HibernateEntityManagerFactory) emf).getSessionFactory()).getDialect();
+                script = Arrays.asList(Arrays.asList(configuration.generateDropSchemaScript(dialect)),
+                        Arrays.asList(configuration.generateSchemaCreationScript(dialect)));
+                writeScript(scriptFile, script);
+                LOGGER.info("DDL script {} was generated", scriptFile);
+            }
+            executeScript(emf, script.get(0), script.get(1));
+        } catch (RuntimeException e) {
+            emf.close();
+            throw e;
+        }
+        return emf;
+    }
+
+    /**
+     * Hashes everything the generated DDL depends on: the mapped classes with their super classes and components, the
+     * mapping files on the class path and the settings of the persistence unit, except the runtime settings.
+     */
+    private static String computeHash(String persistenceUnit, Configuration configuration) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(persistenceUnit.getBytes(UTF_8));
+            SortedSet<String> classNames = new TreeSet<String>();
+            for (Iterator<PersistentClass> iterator = configuration.getClassMappings(); iterator.hasNext();) {
+                PersistentClass persistentClass = iterator.next();
+                for (Class<?> type = persistentClass.getMappedClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+                    classNames.add(type.getName());
+                }
+                addComponentClassNames(persistentClass.getPropertyIterator(), classNames);
+            }
+            ClassLoader classLoader = getClassLoader();
+            for (String className : classNames) {
+                digest.update(className.getBytes(UTF_8));
+                updateDigest(digest, classLoader.getResource(className.replace('.', '/') + ".class"));
+            }
+            for (String mappingFile : Arrays.asList("META-INF/persistence.xml", "META-INF/orm.xml")) {
+                for (Enumeration<URL> resources = classLoader.getResources(mappingFile); resources.hasMoreElements();) {
+                    updateDigest(digest, resources.nextElement());
+                }
+            }
+            SortedMap<String, String> settings = new TreeMap<String, String>();
+            for (Map.Entry<Object, Object> setting : configuration.getProperties().entrySet()) {
+                String key = String.valueOf(setting.getKey());
+                if ((key.startsWith("hibernate.") || key.startsWith("javax.persistence.")) && !RUNTIME_SETTINGS.contains(key)
+                        && setting.getValue() instanceof String) {
+                    settings.put(key, (String) setting.getValue());
+                }
+            }
+            digest.update(settings.toString().getBytes(UTF_8));
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Mapping could not be read", e);
+        }
+    }
+
+    private static void addComponentClassNames(Iterator<?> properties, SortedSet<String> classNames) {
+        while (properties.hasNext()) {
+            Property property = (Property) properties.next();
+            if (property.getValue() instanceof Component) {
+                Component component = (Component) property.getValue();
+                if (component.getComponentClassName() != null) {
+                    classNames.add(component.getComponentClassName());
+                }
+                addComponentClassNames(component.getPropertyIterator(), classNames);
+            }
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, URL resource) throws IOException {
+        if (resource == null) {
+            return;
+        }
+        InputStream input = resource.openStream();
+        try {
+            byte[] buffer = new byte[8192];
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : SchemaScriptCache.class.getClassLoader();
+    }
+
+    /**
+     * Reads the drop and the create statements, one per line and separated by a marker line.
+     */
+    private static List<List<String>> readScript(File scriptFile) {
+        if (!scriptFile.isFile()) {
+            return null;
+        }
+        List<String> dropStatements = new ArrayList<String>();
+        List<String> createStatements = new ArrayList<String>();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(scriptFile), UTF_8));
+            try {
+                List<String> statements = dropStatements;
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.equals(CREATE_MARKER)) {
+                        statements = createStatements;
+                    } else if (!line.isEmpty()) {
+                        statements.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("DDL script {} could not be read, it is generated again", scriptFile, e);
+            return null;
+        }
+        return Arrays.asList(dropStatements, createStatements);
+    }
+
+    private static void writeScript(File scriptFile, List<List<String>> script) {
+        File directory = scriptFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.warn("Directory {} for the DDL scripts could not be created", directory);
+            return;
+        }
+        // Written to a temporary file first, so that concurrent test JVMs never read a partial script.
+        File temporaryFile = new File(directory, scriptFile.getName() + "." + System.nanoTime() + ".tmp");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryFile), UTF_8);
+            try {
+                writeStatements(writer, script.get(0));
+                writer.write(CREATE_MARKER + "\n");
+                writeStatements(writer, script.get(1));
+            } finally {
+                writer.close();
+            }
+            if (!temporaryFile.renameTo(scriptFile) && !scriptFile.isFile()) {
+                LOGGER.warn("DDL script {} could not be written", scriptFile);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("DDL script {} could not be written", scriptFile, e);
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    private static void writeStatements(Writer writer, List<String> statements) throws IOException {
+        for (String statement : statements) {
+            // The dialects generate single line statements.
+            writer.write(statement.replace('\n', ' ').replace('\r', ' ') + "\n");
+        }
+    }
+
+    private static void executeScript(EntityManagerFactory emf, final List<String> dropStatements, final List<String> createStatements) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.unwrap(Session.class).doWork(new Work() {
+
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    dropSchema(connection, dropStatements);
+                    executeBatch(connection, createStatements);
+                }
+            });
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Executes the drop statements in one batch. If the batch fails, because some of the objects don't exist, the
+     * statements are executed one by one and their errors ignored.
+     */
+    private static void dropSchema(Connection connection, List<String> dropStatements) throws SQLException {
+        try {
+            executeBatch(connection, dropStatements);
+        } catch (BatchUpdateException e) {
+            Statement statement = connection.createStatement();
+            try {
+                for (String dropStatement : dropStatements) {
+                    try {
+                        statement.executeUpdate(dropStatement);
+                    } catch (SQLException ignored) {
+                        LOGGER.debug("Ignoring failed drop statement {}: {}", dropStatement, ignored.getMessage());
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    private static void executeBatch(Connection connection, List<String> statements) throws SQLException {
+        if (statements.isEmpty()) {
+            return;
+        }
+        Statement statement = connection.createStatement();
+        try {
+            for (String sql : statements) {
+                statement.addBatch(sql);
+            }
+            statement.executeBatch();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the cached scripts of the given persistence unit.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the script files.
+     */
+    public static List<File> getScriptFiles(String persistenceUnit) {
+        List<File> scriptFiles = new ArrayList<File>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(persistenceUnit + "-") && file.getName().endsWith(".sql")) {
+                    scriptFiles.add(file);
+                }
+            }
+        }
+        Collections.sort(scriptFiles);
+        return scriptFiles;
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.SharedCacheMode;
+import org.hibernate.Cache;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Second-level and query cache of the cached entity manager factories.
+ * <p>
+ * If it is enabled via the system property <code>beantest.emf.cache.l2=true</code> or {@link #setEnabled(boolean)},
+ * the entity manager factories of the {@link EntityManagerFactoryCache} cache the entities, collections and queries
+ * declared cacheable by the persistence unit in Ehcache, which requires <code>hibernate-ehcache</code> on the class
+ * path. Since the factories outlive the tests, so does their cache.
+ * <p>
+ * When a cached factory is reset after a test, only the regions of the entities and collections whose tables
+ * contained rows are evicted, together with the query results. The hits, misses and puts of the test are taken from
+ * the Hibernate {@link Statistics}, logged and available through {@link #getLastReport()}, then the statistics are
+ * cleared for the next test.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class SecondLevelCache {
+
+    /**
+     * System property to enable the cache.
+     */
+    public static final String ENABLED_PROPERTY = "beantest.emf.cache.l2";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecondLevelCache.class);
+
+    private static final String REGION_FACTORY = "org.hibernate.cache.ehcache.EhCacheRegionFactory";
+
+    private static final String SHARED_CACHE_MODE_PROPERTY = "javax.persistence.sharedCache.mode";
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static volatile SecondLevelCacheReport lastReport;
+
+    private SecondLevelCache() {
+        // Empty on purpose.
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SecondLevelCache.enabled = enabled;
+    }
+
+    /**
+     * Returns the report of the last reset entity manager factory.
+     *
+     * @return the report, or <code>null</code> if no entity manager factory with statistics has been reset yet.
+     */
+    public static SecondLevelCacheReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Returns the properties enabling the second-level cache, the query cache and the statistics. Unless the persistence
+     * unit declares a shared cache mode, the entities annotated with {@link javax.persistence.Cacheable} are cached.
+     *
+     * @param persistenceUnit
+     *            the name of the persistence unit.
+     * @return the properties of the entity manager factory.
+     */
+    static Map<String, String> getProperties(String persistenceUnit) {
+        if (System.getProperty("net.sf.ehcache.skipUpdateCheck") == null) {
+            System.setProperty("net.sf.ehcache.skipUpdateCheck", "true");
+        }
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("hibernate.cache.use_second_level_cache", "true");
+        properties.put("hibernate.cache.use_query_cache", "true");
+        properties.put("hibernate.cache.region.factory_class", REGION_FACTORY);
+        properties.put("hibernate.generate_statistics", "true");
+        String sharedCacheMode = PersistenceUnits.getSharedCacheMode(persistenceUnit);
+        if (sharedCacheMode == null || sharedCacheMode.equals(SharedCacheMode.UNSPECIFIED.name())) {
+            // Hibernate caches nothing for UNSPECIFIED.
+            properties.put(SHARED_CACHE_MODE_PROPERTY, SharedCacheMode.ENABLE_SELECTIVE.name());
+        }
+        return properties;
+    }
+
+    /**
+     * Evicts the regions mapped to the given tables and the query results, and records the statistics of the test.
+     *
+     * @param emf
+     *            the entity manager factory whose data has been deleted.
+     * @param modifiedTables
+     *            the tables which contained rows.
+     */
+    static void reset(EntityManagerFactory emf, Set<String> modifiedTables) {
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) ((HibernateEntityManagerFactory) emf).getSessionFactory();
+        Set<String> evictedRegions = new TreeSet<String>();
+        if (!modifiedTables.isEmpty() && sessionFactory.getSettings().isSecondLevelCacheEnabled()) {
+            evictedRegions = evictRegions(sessionFactory, modifiedTables);
+        }
+        Statistics statistics = sessionFactory.getStatistics();
+        if (statistics.isStatisticsEnabled()) {
+            lastReport = new SecondLevelCacheReport(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                    statistics.getSecondLevelCachePutCount(), statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                    statistics.getQueryCachePutCount(), evictedRegions);
+            LOGGER.info("Second-level cache of the test: {}", lastReport);
+            statistics.clear();
+        }
+    }
+
+    private static Set<String> evictRegions(SessionFactoryImplementor sessionFactory, Set<String> modifiedTables) {
+        Set<String> evictedRegions = new TreeSet<String>();
+        Cache cache = sessionFactory.getCache();
+        for (EntityPersister persister : sessionFactory.getEntityPersisters().values()) {
+            if (persister.hasCache() && isAnyModified(persister.getQuerySpaces(), modifiedTables)) {
+                cache.evictEntityRegion(persister.getEntityName());
+                evictedRegions.add(persister.getCacheAccessStrategy().getRegion().getName());
+            }
+        }
+        for (CollectionPersister persister : sessionFactory.getCollectionPersisters().values()) {
+            if (persister.hasCache() && (isAnyModified(persister.getCollectionSpaces(), modifiedTables)
+                    || isAnyModified(persister.getOwnerEntityPersister().getQuerySpaces(), modifiedTables))) {
+                cache.evictCollectionRegion(persister.getRole());
+                evictedRegions.add(persister.getCacheAccessStrategy().getRegion().getName());
+            }
+        }
+        if (sessionFactory.getSettings().isQueryCacheEnabled()) {
+            cache.evictQueryRegions();
+        }
+        return evictedRegions;
+    }
+
+    private static boolean isAnyModified(Serializable[] spaces, Collection<String> modifiedTables) {
+        for (Serializable space : spaces) {
+            if (modifiedTables.contains(space)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Usage of the second-level and query cache during one test.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ * @see SecondLevelCache
+ */
+public final class SecondLevelCacheReport {
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long puts;
+
+    private final long queryHits;
+
+    private final long queryMisses;
+
+    private final long queryPuts;
+
+    private final Set<String> evictedRegions;
+
+    SecondLevelCacheReport(long hits, long misses, long puts, long queryHits, long queryMisses, long queryPuts, Set<String> evictedRegions) {
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.queryHits = queryHits;
+        this.queryMisses = queryMisses;
+        this.queryPuts = queryPuts;
+        this.evictedRegions = Collections.unmodifiableSet(new TreeSet<String>(evictedRegions));
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    public long getQueryHits() {
+        return queryHits;
+    }
+
+    public long getQueryMisses() {
+        return queryMisses;
+    }
+
+    public long getQueryPuts() {
+        return queryPuts;
+    }
+
+    /**
+     * Returns the entity and collection regions evicted after the test, because their tables contained rows.
+     *
+     * @return the names of the evicted regions.
+     */
+    public Set<String> getEvictedRegions() {
+        return evictedRegions;
+    }
+
+    /**
+     * Returns the ratio of hits to all the lookups of the second-level cache.
+     *
+     * @return the hit ratio, 0 if there were no lookups.
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, puts=%d, query hits=%d, query misses=%d, query puts=%d, evicted regions=%s", hits,
+                misses, puts, queryHits, queryMisses, queryPuts, evictedRegions);
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.producers;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Shares an entity manager factory with the request contexts started on the current thread.
+ * <p>
+ * By default, every request context gets its own entity manager factory, which creates the database schema again. A
+ * thread which works on the data of another request (for example a worker thread of a <code>LoadTest</code> of
+ * <i>bean-test-load</i>) binds the entity manager factory of that request before it starts its
+ * request context. Its {@link EntityManagerProducer} then creates the entity managers with the shared factory and
+ * doesn't close it.
+ * <p>
+ * Tasks which are going to share the entity manager factory retain it until they have completed, so that the
+ * {@link EntityManagerProducer} of the sharing request awaits them (for up to <code>beantest.emf.releaseTimeout</code>
+ * milliseconds, default: 10000) before it closes the factory or deletes its data.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class SharedEntityManagerFactory {
+
+    /**
+     * System property for the milliseconds to await the tasks retaining an entity manager factory before it is closed.
+     */
+    public static final String RELEASE_TIMEOUT_PROPERTY = "beantest.emf.releaseTimeout";
+
+    private static final ThreadLocal<EntityManagerFactory> SHARED = new ThreadLocal<EntityManagerFactory>();
+
+    /**
+     * Entity manager factory -> number of tasks retaining it.
+     */
+    private static final Map<EntityManagerFactory, Integer> RETAINED = new IdentityHashMap<EntityManagerFactory, Integer>();
+
+    private SharedEntityManagerFactory() {
+        // Empty on purpose.
+    }
+
+    /**
+     * Binds the given entity manager factory to the current thread.
+     *
+     * @param emf
+     *            the entity manager factory to share.
+     */
+    public static void bind(EntityManagerFactory emf) {
+        SHARED.set(emf);
+    }
+
+    /**
+     * Removes the entity manager factory bound to the current thread.
+     */
+    public static void unbind() {
+        SHARED.remove();
+    }
+
+    /**
+     * Keeps the given entity manager factory open until {@link #release(EntityManagerFactory)} is called. It is called
+     * when a task which is going to share the entity manager factory is submitted.
+     *
+     * @param emf
+     *            the entity manager factory to be shared.
+     */
+    public static void retain(EntityManagerFactory emf) {
+        synchronized (RETAINED) {
+            Integer count = RETAINED.get(emf);
+            RETAINED.put(emf, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Releases the given entity manager factory once the task retaining it has completed or has been cancelled.
+     *
+     * @param emf
+     *            the shared entity manager factory.
+     */
+    public static void release(EntityManagerFactory emf) {
+        synchronized (RETAINED) {
+            Integer count = RETAINED.get(emf);
+            if (count == null || count <= 1) {
+                RETAINED.remove(emf);
+                RETAINED.notifyAll();
+            } else {
+                RETAINED.put(emf, count - 1);
+            }
+        }
+    }
+
+    static EntityManagerFactory get() {
+        return SHARED.get();
+    }
+
+    /**
+     * Waits until no task retains the given entity manager factory anymore.
+     *
+     * @return <code>true</code> if the entity manager factory is not retained anymore, <code>false</code> if the
+     *         timeout elapsed before.
+     */
+    static boolean awaitRelease(EntityManagerFactory emf) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Long.getLong(RELEASE_TIMEOUT_PROPERTY, 10000L));
+        synchronized (RETAINED) {
+            while (RETAINED.containsKey(emf)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(RETAINED, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of tasks retaining the given entity manager factory.
+     *
+     * @param emf
+     *            the entity manager factory.
+     * @return the number of tasks.
+     */
+    public static int getRetainingTasks(EntityManagerFactory emf) {
+        synchronized (RETAINED) {
+            Integer count = RETAINED.get(emf);
+            return count != null ? count : 0;
+        }
+    }
+
+}
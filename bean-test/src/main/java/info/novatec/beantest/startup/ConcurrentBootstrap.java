@@ -0,0 +1,226 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.startup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Settings for booting the CDI container on several threads.
+ * <p>
+ * Weld deploys the beans concurrently by default: the annotated types are processed and the beans are validated by a
+ * thread pool with one thread per processor. The pool can be tuned via the system properties
+ * <code>beantest.boot.threads</code> (the number of threads, <code>0</code> for the Weld default) and
+ * <code>beantest.boot.concurrent</code> (<code>false</code> to deploy on the calling thread), or the corresponding
+ * setters. Weld reads the thread pool size from the class path resource <code>org.jboss.weld.executor.properties</code>
+ * and the concurrent deployment flag from <code>org.jboss.weld.bootstrap.properties</code>, so the
+ * {@link info.novatec.beantest.api.BeanProviderHelper} boots the container with the
+ * {@link #getBootClassLoader(ClassLoader) boot class loader}, which serves these resources with the configured values.
+ * Weld gives the system property <code>org.jboss.weld.bootstrap.properties.concurrentDeployment</code> precedence over
+ * the resource, so it overrides <code>beantest.boot.concurrent</code> if it is set.
+ * <p>
+ * Additionally, the entity manager factory of the persistence unit can be built on a background thread while Weld
+ * validates the deployment (<code>beantest.boot.emf=true</code>), see
+ * {@link info.novatec.beantest.producers.EntityManagerFactoryPrebuild}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class ConcurrentBootstrap {
+
+    /**
+     * System property for the number of bootstrap threads.
+     */
+    public static final String THREADS_PROPERTY = "beantest.boot.threads";
+
+    /**
+     * System property to disable the concurrent deployment.
+     */
+    public static final String CONCURRENT_PROPERTY = "beantest.boot.concurrent";
+
+    /**
+     * System property to build the entity manager factory in parallel to the deployment validation.
+     */
+    public static final String EMF_PREBUILD_PROPERTY = "beantest.boot.emf";
+
+    static final String EXECUTOR_PROPERTIES = "org.jboss.weld.executor.properties";
+
+    static final String BOOTSTRAP_PROPERTIES = "org.jboss.weld.bootstrap.properties";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentBootstrap.class);
+
+    private static volatile int threads = Integer.getInteger(THREADS_PROPERTY, 0);
+
+    private static volatile boolean concurrent = !"false".equalsIgnoreCase(System.getProperty(CONCURRENT_PROPERTY));
+
+    private static volatile boolean entityManagerFactoryPrebuild = Boolean.getBoolean(EMF_PREBUILD_PROPERTY);
+
+    private ConcurrentBootstrap() {
+        // Empty on purpose.
+    }
+
+    public static int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads Weld uses to deploy the beans.
+     *
+     * @param threads
+     *            the number of threads, <code>0</code> for one per processor.
+     */
+    public static void setThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("The number of bootstrap threads must not be negative: " + threads);
+        }
+        ConcurrentBootstrap.threads = threads;
+    }
+
+    public static boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public static void setConcurrent(boolean concurrent) {
+        ConcurrentBootstrap.concurrent = concurrent;
+    }
+
+    public static boolean isEntityManagerFactoryPrebuild() {
+        return entityManagerFactoryPrebuild;
+    }
+
+    public static void setEntityManagerFactoryPrebuild(boolean entityManagerFactoryPrebuild) {
+        ConcurrentBootstrap.entityManagerFactoryPrebuild = entityManagerFactoryPrebuild;
+    }
+
+    /**
+     * Returns the class loader to boot the container with.
+     *
+     * @param parent
+     *            the context class loader of the booting thread.
+     * @return the given class loader, if the Weld defaults apply, or a class loader serving the Weld configuration
+     *         resources with the configured values and delegating everything else to the given class loader.
+     */
+    public static ClassLoader getBootClassLoader(ClassLoader parent) {
+        if (threads == 0 && concurrent) {
+            return parent;
+        }
+        Properties executor = new Properties();
+        if (threads > 0) {
+            executor.setProperty("threadPoolSize", String.valueOf(threads));
+        }
+        Properties bootstrap = new Properties();
+        bootstrap.setProperty("concurrentDeployment", String.valueOf(concurrent));
+        return new BootClassLoader(parent, executor, bootstrap);
+    }
+
+    /**
+     * Returns the class loader the given boot class loader delegates to.
+     *
+     * @param classLoader
+     *            a class loader.
+     * @return the parent of a boot class loader, otherwise the given class loader.
+     */
+    public static ClassLoader getApplicationClassLoader(ClassLoader classLoader) {
+        return classLoader instanceof BootClassLoader ? classLoader.getParent() : classLoader;
+    }
+
+    /**
+     * Serves the Weld configuration resources, merged from the resources of the parent and the configured values.
+     */
+    private static final class BootClassLoader extends ClassLoader {
+
+        private final Properties executor;
+
+        private final Properties bootstrap;
+
+        BootClassLoader(ClassLoader parent, Properties executor, Properties bootstrap) {
+            super(parent);
+            this.executor = executor;
+            this.bootstrap = bootstrap;
+        }
+
+        @Override
+        public URL getResource(String name) {
+            if (EXECUTOR_PROPERTIES.equals(name)) {
+                return merge(name, executor);
+            }
+            if (BOOTSTRAP_PROPERTIES.equals(name)) {
+                return merge(name, bootstrap);
+            }
+            return super.getResource(name);
+        }
+
+        private URL merge(String name, Properties overrides) {
+            Properties properties = new Properties();
+            URL resource = getParent() != null ? getParent().getResource(name) : null;
+            if (resource != null) {
+                try {
+                    InputStream in = resource.openStream();
+                    try {
+                        properties.load(in);
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("{} could not be read", resource, e);
+                }
+            }
+            properties.putAll(overrides);
+            LOGGER.debug("Booting the container with {}: {}", name, properties);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                properties.store(out, null);
+                return new URL("beantest", null, -1, "/" + name, new InMemoryHandler(out.toByteArray()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Resource " + name + " could not be created", e);
+            }
+        }
+    }
+
+    private static final class InMemoryHandler extends URLStreamHandler {
+
+        private final byte[] content;
+
+        InMemoryHandler(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url) {
+            return new URLConnection(url) {
+
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(content);
+                }
+            };
+        }
+    }
+
+}
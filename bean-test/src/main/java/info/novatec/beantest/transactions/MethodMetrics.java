@@ -0,0 +1,189 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Metrics of one transactional business method, recorded by the {@link TransactionalInterceptor}.
+ * <p>
+ * Recording is lock-free, so concurrent callers don't block each other. Commits, rollbacks and read-only completions
+ * are counted for the method which started the transaction, calls and latencies for every intercepted method.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class MethodMetrics {
+
+    private final Method method;
+
+    private final ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong commits = new AtomicLong();
+
+    private final AtomicLong rollbacks = new AtomicLong();
+
+    private final AtomicLong readOnlyCompletions = new AtomicLong();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong businessNanos = new AtomicLong();
+
+    private final AtomicLong completionNanos = new AtomicLong();
+
+    MethodMetrics(Method method) {
+        this.method = method;
+    }
+
+    void recordCall(long latencyNanos, long businessLogicNanos, boolean failed) {
+        latencies.recordValue(latencyNanos);
+        totalNanos.addAndGet(latencyNanos);
+        businessNanos.addAndGet(businessLogicNanos);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    void recordCompletion(boolean committed, long nanos, long flushCount) {
+        (committed ? commits : rollbacks).incrementAndGet();
+        completionNanos.addAndGet(nanos);
+        flushes.addAndGet(flushCount);
+    }
+
+    void recordReadOnlyCompletion(boolean rolledBack, long nanos) {
+        (rolledBack ? rollbacks : readOnlyCompletions).incrementAndGet();
+        completionNanos.addAndGet(nanos);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the name of the method in the form <code>SimpleClassName.method</code>.
+     *
+     * @return the name of the method.
+     */
+    public String getName() {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    public long getCalls() {
+        return latencies.getTotalCount();
+    }
+
+    /**
+     * Returns the number of calls which threw an exception.
+     *
+     * @return the number of failed calls.
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public long getRollbacks() {
+        return rollbacks.get();
+    }
+
+    /**
+     * Returns the number of read-only transactions started by this method which completed without being marked for
+     * rollback. They are neither flushed nor committed.
+     *
+     * @return the number of completed read-only transactions.
+     */
+    public long getReadOnlyCompletions() {
+        return readOnlyCompletions.get();
+    }
+
+    /**
+     * Returns the number of flushes of the transactions started by this method (including the flushes on commit).
+     *
+     * @return the number of flushes.
+     */
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    /**
+     * Returns the total time spent in the calls, including starting and completing the transaction.
+     *
+     * @param unit
+     *            the unit of the returned time.
+     * @return the total time.
+     */
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert(totalNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time spent in the business logic, i.e. in the intercepted method itself.
+     *
+     * @param unit
+     *            the unit of the returned time.
+     * @return the business logic time.
+     */
+    public long getBusinessTime(TimeUnit unit) {
+        return unit.convert(businessNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time spent in committing (or rolling back) the transactions started by this method.
+     *
+     * @param unit
+     *            the unit of the returned time.
+     * @return the commit time.
+     */
+    public long getCommitTime(TimeUnit unit) {
+        return unit.convert(completionNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the calls completed.
+     *
+     * @param percentile
+     *            the percentile, for example 99.
+     * @param unit
+     *            the unit of the returned latency.
+     * @return the latency in the given unit.
+     */
+    public double getLatency(double percentile, TimeUnit unit) {
+        return latencies.getValueAtPercentile(percentile) / (double) unit.toNanos(1);
+    }
+
+    /**
+     * Returns a copy of the latency histogram. The values are recorded in nanoseconds.
+     *
+     * @return the latency histogram.
+     */
+    public Histogram getHistogram() {
+        Histogram histogram = new Histogram(3);
+        histogram.add(latencies);
+        return histogram;
+    }
+
+}
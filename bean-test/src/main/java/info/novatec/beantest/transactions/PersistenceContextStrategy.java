@@ -0,0 +1,45 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+/**
+ * What happens to the persistence context when a transaction started by a business method completes.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ * @see PersistenceContextRetention
+ * @see info.novatec.beantest.api.BeanTestConfiguration#persistenceContext()
+ */
+public enum PersistenceContextStrategy {
+
+    /**
+     * The persistence context is cleared, but the entity manager is kept. This is the default.
+     */
+    CLEAR,
+
+    /**
+     * The entity manager is closed and the next transaction uses a new one, like the transaction scoped persistence
+     * context of a Java EE container.
+     */
+    TRANSACTION,
+
+    /**
+     * The persistence context is kept across transactions, so entities loaded by one call are still managed (and
+     * don't have to be loaded again) in the next one.
+     */
+    EXTENDED
+
+}
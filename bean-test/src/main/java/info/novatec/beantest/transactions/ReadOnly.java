@@ -0,0 +1,46 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a business method, or all the business methods of a bean, as read-only.
+ * <p>
+ * A transaction started by a read-only method loads the entities read-only, is never flushed and is not committed, so
+ * Hibernate neither keeps snapshots of the loaded entities nor dirty-checks them. Changes to the loaded entities are
+ * discarded. Methods with the transaction attribute <code>SUPPORTS</code> or <code>NOT_SUPPORTED</code> are read-only
+ * as well.
+ * <p>
+ * A read-only method called within a read-write transaction just joins it. If a read-only transaction calls a method
+ * which is not read-only, the transaction is turned into a read-write transaction and committed. The entities loaded
+ * before become modifiable, but changes made to them before the read-write method was called are discarded.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Documented
+@Inherited
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ejb.SessionSynchronization;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link TransactionSynchronizationRegistry} for the resource-local transactions managed by the
+ * {@link TransactionalInterceptor}. It is injected into <code>@Resource TransactionSynchronizationRegistry</code>
+ * injection points.
+ * <p>
+ * The registered synchronizations are called before the commit of the transaction and after its completion, so that
+ * code which defers side effects until after the commit can be tested. Beans implementing
+ * {@link SessionSynchronization} are notified as well. A read-only transaction ({@link ReadOnly}) completes with the
+ * status {@link Status#STATUS_COMMITTED}, although nothing is written.
+ * <p>
+ * Only transactions started by the interceptor are known to the registry. The registry also activates the
+ * {@link TransactionContext} for these transactions.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@RequestScoped
+public class ResourceLocalSynchronizationRegistry implements TransactionSynchronizationRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceLocalSynchronizationRegistry.class);
+
+    @Inject
+    @PersistenceContext
+    EntityManager em;
+
+    private Object transactionKey;
+
+    private int completionStatus = Status.STATUS_ACTIVE;
+
+    private final Map<Object, Object> resources = new HashMap<Object, Object>();
+
+    private final Map<SessionSynchronization, Boolean> sessionSynchronizations = new IdentityHashMap<SessionSynchronization, Boolean>();
+
+    private final List<Synchronization> interposedSynchronizations = new ArrayList<Synchronization>();
+
+    @Override
+    public Object getTransactionKey() {
+        return transactionKey;
+    }
+
+    @Override
+    public void putResource(Object key, Object value) {
+        checkTransactionActive();
+        if (key == null) {
+            throw new NullPointerException("The resource key must not be null");
+        }
+        resources.put(key, value);
+    }
+
+    @Override
+    public Object getResource(Object key) {
+        checkTransactionActive();
+        if (key == null) {
+            throw new NullPointerException("The resource key must not be null");
+        }
+        return resources.get(key);
+    }
+
+    @Override
+    public void registerInterposedSynchronization(Synchronization synchronization) {
+        checkTransactionActive();
+        if (completionStatus != Status.STATUS_ACTIVE) {
+            throw new IllegalStateException("The transaction is already completed");
+        }
+        interposedSynchronizations.add(synchronization);
+    }
+
+    @Override
+    public int getTransactionStatus() {
+        if (transactionKey == null) {
+            return Status.STATUS_NO_TRANSACTION;
+        }
+        if (completionStatus == Status.STATUS_ACTIVE && em.getTransaction().getRollbackOnly()) {
+            return Status.STATUS_MARKED_ROLLBACK;
+        }
+        return completionStatus;
+    }
+
+    @Override
+    public void setRollbackOnly() {
+        checkTransactionActive();
+        em.getTransaction().setRollbackOnly();
+    }
+
+    @Override
+    public boolean getRollbackOnly() {
+        checkTransactionActive();
+        return em.getTransaction().getRollbackOnly();
+    }
+
+    private void checkTransactionActive() {
+        if (transactionKey == null) {
+            throw new IllegalStateException("There is no active transaction");
+        }
+    }
+
+    /**
+     * Starts tracking a new transaction.
+     */
+    void begin() {
+        clear();
+        transactionKey = new Object();
+        TransactionContext.begin();
+    }
+
+    /**
+     * Notifies the given bean about the current transaction, unless it has already been notified.
+     *
+     * @param sessionSynchronization
+     *            the bean which takes part in the current transaction.
+     */
+    void register(SessionSynchronization sessionSynchronization) {
+        if (transactionKey == null || sessionSynchronizations.containsKey(sessionSynchronization)) {
+            return;
+        }
+        sessionSynchronizations.put(sessionSynchronization, Boolean.TRUE);
+        try {
+            sessionSynchronization.afterBegin();
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calls the synchronizations before the commit. The beans implementing {@link SessionSynchronization} are called
+     * before the interposed synchronizations.
+     */
+    void beforeCompletion() {
+        if (transactionKey == null) {
+            return;
+        }
+        try {
+            for (SessionSynchronization sessionSynchronization : new ArrayList<SessionSynchronization>(sessionSynchronizations.keySet())) {
+                sessionSynchronization.beforeCompletion();
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+        // Synchronizations may register further synchronizations.
+        for (int i = 0; i < interposedSynchronizations.size(); i++) {
+            interposedSynchronizations.get(i).beforeCompletion();
+        }
+    }
+
+    /**
+     * Calls the synchronizations after the completion of the transaction and stops tracking it. Exceptions of the
+     * synchronizations are logged and ignored.
+     *
+     * @param committed
+     *            whether the transaction has been committed.
+     */
+    void afterCompletion(boolean committed) {
+        if (transactionKey == null) {
+            return;
+        }
+        completionStatus = committed ? Status.STATUS_COMMITTED : Status.STATUS_ROLLEDBACK;
+        try {
+            for (Synchronization synchronization : interposedSynchronizations) {
+                try {
+                    synchronization.afterCompletion(completionStatus);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Synchronization failed after completion of the transaction", e);
+                }
+            }
+            for (SessionSynchronization sessionSynchronization : sessionSynchronizations.keySet()) {
+                try {
+                    sessionSynchronization.afterCompletion(committed);
+                } catch (RemoteException e) {
+                    LOGGER.warn("Session synchronization failed after completion of the transaction", e);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Session synchronization failed after completion of the transaction", e);
+                }
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Stops tracking the current transaction without calling the synchronizations. The {@link TransactionScoped} beans
+     * are destroyed.
+     */
+    void clear() {
+        TransactionContext.end();
+        transactionKey = null;
+        completionStatus = Status.STATUS_ACTIVE;
+        resources.clear();
+        sessionSynchronizations.clear();
+        interposedSynchronizations.clear();
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.ejb.ApplicationException;
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.NoResultException;
+import javax.persistence.NonUniqueResultException;
+import javax.persistence.QueryTimeoutException;
+
+/**
+ * Decides whether an exception thrown by a business method causes the rollback of the transaction, following the EJB
+ * rules:
+ * <ul>
+ * <li>An exception annotated with {@link ApplicationException} (or extending an exception annotated with
+ * <code>inherited=true</code>) causes a rollback if the annotation says so.
+ * <li>The persistence exceptions which don't mark the transaction for rollback (and their subclasses) don't cause a
+ * rollback.
+ * <li>Other checked exceptions are application exceptions and don't cause a rollback, except {@link RemoteException}.
+ * <li>Runtime exceptions are system exceptions and cause a rollback.
+ * </ul>
+ * The decision is cached per exception class, so that only the first exception of a class requires reflection. The
+ * cache lives as long as the container, so it doesn't keep the classes of discarded class loaders.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@ApplicationScoped
+public class RollbackPolicy {
+
+    /**
+     * Exceptions that should not cause the transaction to rollback according to Java EE Documentation. 
+     * (http://docs.oracle.com/javaee/6/api/javax/persistence/PersistenceException.html)
+     */
+    private static final Set<Class<?>> NO_ROLLBACK_EXCEPTIONS = new HashSet<Class<?>>(Arrays.asList(
+            NonUniqueResultException.class,
+            NoResultException.class,
+            QueryTimeoutException.class,
+            LockTimeoutException.class));
+
+    private final ConcurrentMap<Class<?>, Boolean> decisions = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    /**
+     * Returns whether the given exception causes the rollback of the transaction.
+     *
+     * @param exception
+     *            the exception thrown by a business method.
+     * @return <code>true</code> if the transaction should be rolled back.
+     */
+    public boolean shouldRollback(Exception exception) {
+        Class<?> exceptionClass = exception.getClass();
+        Boolean decision = decisions.get(exceptionClass);
+        if (decision == null) {
+            decision = decide(exceptionClass);
+            decisions.put(exceptionClass, decision);
+        }
+        return decision;
+    }
+
+    private static boolean decide(Class<?> exceptionClass) {
+        ApplicationException applicationException = findApplicationException(exceptionClass);
+        if (applicationException != null) {
+            return applicationException.rollback();
+        }
+        for (Class<?> noRollbackException : NO_ROLLBACK_EXCEPTIONS) {
+            if (noRollbackException.isAssignableFrom(exceptionClass)) {
+                return false;
+            }
+        }
+        return RuntimeException.class.isAssignableFrom(exceptionClass) || RemoteException.class.isAssignableFrom(exceptionClass);
+    }
+
+    /**
+     * Returns the {@link ApplicationException} annotation of the given class, or the one of its nearest annotated
+     * superclass if it is inherited.
+     */
+    private static ApplicationException findApplicationException(Class<?> exceptionClass) {
+        for (Class<?> type = exceptionClass; type != null; type = type.getSuperclass()) {
+            ApplicationException applicationException = type.getAnnotation(ApplicationException.class);
+            if (applicationException != null) {
+                return type == exceptionClass || applicationException.inherited() ? applicationException : null;
+            }
+        }
+        return null;
+    }
+
+}
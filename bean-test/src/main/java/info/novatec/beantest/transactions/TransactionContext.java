@@ -0,0 +1,126 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.lang.annotation.Annotation;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.context.spi.Context;
+import javax.enterprise.context.spi.Contextual;
+import javax.enterprise.context.spi.CreationalContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Context of the {@link TransactionScoped} beans. It is registered by the
+ * {@link info.novatec.beantest.extension.BeanTestExtension}.
+ * <p>
+ * The context is active on a thread while a transaction started by the {@link TransactionalInterceptor} is running,
+ * so the beans are never shared across threads.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TransactionContext implements Context {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionContext.class);
+
+    private static final ThreadLocal<Map<Contextual<?>, ContextualInstance<?>>> INSTANCES = new ThreadLocal<Map<Contextual<?>, ContextualInstance<?>>>();
+
+    @Override
+    public Class<? extends Annotation> getScope() {
+        return TransactionScoped.class;
+    }
+
+    @Override
+    public <T> T get(Contextual<T> contextual, CreationalContext<T> creationalContext) {
+        Map<Contextual<?>, ContextualInstance<?>> instances = getActiveInstances();
+        @SuppressWarnings("unchecked")
+        ContextualInstance<T> instance = (ContextualInstance<T>) instances.get(contextual);
+        if (instance == null) {
+            if (creationalContext == null) {
+                return null;
+            }
+            instance = new ContextualInstance<T>(contextual, contextual.create(creationalContext), creationalContext);
+            instances.put(contextual, instance);
+        }
+        return instance.instance;
+    }
+
+    @Override
+    public <T> T get(Contextual<T> contextual) {
+        return get(contextual, null);
+    }
+
+    @Override
+    public boolean isActive() {
+        return INSTANCES.get() != null;
+    }
+
+    private static Map<Contextual<?>, ContextualInstance<?>> getActiveInstances() {
+        Map<Contextual<?>, ContextualInstance<?>> instances = INSTANCES.get();
+        if (instances == null) {
+            throw new ContextNotActiveException("There is no active transaction for " + TransactionScoped.class.getName());
+        }
+        return instances;
+    }
+
+    /**
+     * Activates the context for the current thread.
+     */
+    static void begin() {
+        INSTANCES.set(new LinkedHashMap<Contextual<?>, ContextualInstance<?>>());
+    }
+
+    /**
+     * Destroys the instances of the current thread and deactivates the context.
+     */
+    static void end() {
+        Map<Contextual<?>, ContextualInstance<?>> instances = INSTANCES.get();
+        INSTANCES.remove();
+        if (instances == null) {
+            return;
+        }
+        for (ContextualInstance<?> instance : instances.values()) {
+            try {
+                instance.destroy();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Transaction scoped bean could not be destroyed", e);
+            }
+        }
+    }
+
+    private static final class ContextualInstance<T> {
+
+        private final Contextual<T> contextual;
+
+        private final T instance;
+
+        private final CreationalContext<T> creationalContext;
+
+        private ContextualInstance(Contextual<T> contextual, T instance, CreationalContext<T> creationalContext) {
+            this.contextual = contextual;
+            this.instance = instance;
+            this.creationalContext = creationalContext;
+        }
+
+        private void destroy() {
+            contextual.destroy(instance, creationalContext);
+        }
+    }
+
+}
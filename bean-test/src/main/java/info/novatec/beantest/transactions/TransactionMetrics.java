@@ -0,0 +1,158 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the {@link MethodMetrics} recorded by the {@link TransactionalInterceptor}.
+ * <p>
+ * The metrics outlive the CDI container, so they can be queried by tests and dumped at the end of a suite (see
+ * {@link info.novatec.beantest.api.BeanTestSuite}) to spot slow or chatty transactional methods. Recording can be
+ * disabled via the system property <code>beantest.metrics=false</code> or {@link #setEnabled(boolean)}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class TransactionMetrics {
+
+    /**
+     * System property to disable the recording.
+     */
+    public static final String ENABLED_PROPERTY = "beantest.metrics";
+
+    /**
+     * System property to dump the metrics at the end of a {@link info.novatec.beantest.api.BeanTestSuite}.
+     */
+    public static final String DUMP_PROPERTY = "beantest.metrics.dump";
+
+    private static final ConcurrentMap<Method, MethodMetrics> METRICS = new ConcurrentHashMap<Method, MethodMetrics>();
+
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+
+    private TransactionMetrics() {
+        // Empty on purpose.
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        TransactionMetrics.enabled = enabled;
+    }
+
+    /**
+     * Returns the metrics of the given method, creating them if required.
+     *
+     * @param method
+     *            the intercepted method.
+     * @return the metrics, or <code>null</code> if the recording is disabled.
+     */
+    static MethodMetrics metricsFor(Method method) {
+        if (!enabled) {
+            return null;
+        }
+        MethodMetrics metrics = METRICS.get(method);
+        if (metrics == null) {
+            MethodMetrics newMetrics = new MethodMetrics(method);
+            metrics = METRICS.putIfAbsent(method, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of the method with the given name, declared by the given class. If the method is overloaded,
+     * the metrics of all overloads are returned.
+     *
+     * @param beanClass
+     *            the class declaring the method.
+     * @param methodName
+     *            the name of the method.
+     * @return the metrics of the method, empty if it was not called.
+     */
+    public static List<MethodMetrics> get(Class<?> beanClass, String methodName) {
+        List<MethodMetrics> result = new ArrayList<MethodMetrics>();
+        for (MethodMetrics metrics : METRICS.values()) {
+            Method method = metrics.getMethod();
+            if (method.getDeclaringClass().equals(beanClass) && method.getName().equals(methodName)) {
+                result.add(metrics);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the metrics of all called methods, ordered by their total time (descending).
+     *
+     * @return the metrics of all methods.
+     */
+    public static List<MethodMetrics> getAll() {
+        List<MethodMetrics> result = new ArrayList<MethodMetrics>(METRICS.values());
+        Collections.sort(result, new Comparator<MethodMetrics>() {
+
+            @Override
+            public int compare(MethodMetrics first, MethodMetrics second) {
+                long firstTime = first.getTotalTime(TimeUnit.NANOSECONDS);
+                long secondTime = second.getTotalTime(TimeUnit.NANOSECONDS);
+                return firstTime < secondTime ? 1 : firstTime == secondTime ? 0 : -1;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Removes all the recorded metrics.
+     */
+    public static void reset() {
+        METRICS.clear();
+    }
+
+    /**
+     * Returns a table of the metrics of all methods, ordered by their total time. Times are in milliseconds.
+     *
+     * @return the metrics as text.
+     */
+    public static String dump() {
+        StringBuilder dump = new StringBuilder(String.format(Locale.ROOT, "%-60s %8s %6s %8s %9s %8s %8s %10s %10s %10s %8s %8s%n",
+                "Method", "Calls", "Errors", "Commits", "Rollbacks", "ReadOnly", "Flushes", "Total", "Business", "Commit", "p50", "p99"));
+        for (MethodMetrics metrics : getAll()) {
+            dump.append(String.format(Locale.ROOT, "%-60s %8d %6d %8d %9d %8d %8d %10.1f %10.1f %10.1f %8.3f %8.3f%n",
+                    metrics.getName(), metrics.getCalls(), metrics.getErrors(), metrics.getCommits(), metrics.getRollbacks(),
+                    metrics.getReadOnlyCompletions(), metrics.getFlushes(),
+                    toMillis(metrics.getTotalTime(TimeUnit.NANOSECONDS)), toMillis(metrics.getBusinessTime(TimeUnit.NANOSECONDS)),
+                    toMillis(metrics.getCommitTime(TimeUnit.NANOSECONDS)), metrics.getLatency(50, TimeUnit.MILLISECONDS),
+                    metrics.getLatency(99, TimeUnit.MILLISECONDS)));
+        }
+        return dump.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+}
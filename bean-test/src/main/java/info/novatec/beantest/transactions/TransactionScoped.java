@@ -0,0 +1,46 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import javax.enterprise.context.NormalScope;
+
+/**
+ * Specifies that a bean lives as long as the outermost transaction managed by the {@link TransactionalInterceptor}.
+ * The instances are destroyed when the transaction is committed or rolled back, after the synchronizations have been
+ * notified. Accessing such a bean outside of a transaction causes a
+ * {@link javax.enterprise.context.ContextNotActiveException}.
+ * <p>
+ * This scope mirrors <code>javax.transaction.TransactionScoped</code> of JTA 1.2, for example for per-transaction
+ * caches.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ * @see TransactionContext
+ */
+@Documented
+@Inherited
+@NormalScope(passivating = false)
+@Target({ElementType.TYPE, ElementType.METHOD, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TransactionScoped {
+
+}
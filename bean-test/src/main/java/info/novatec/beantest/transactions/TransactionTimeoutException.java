@@ -0,0 +1,33 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+/**
+ * Thrown by the {@link TransactionalInterceptor} if the {@link TransactionWatchdog} is configured to fail transactions
+ * exceeding its threshold. The transaction has been rolled back.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TransactionTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TransactionTimeoutException(String report) {
+        super(report);
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.transactions;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the transactions started by the {@link TransactionalInterceptor} and reports those running longer than a
+ * threshold, for example because they wait for a row lock held by another thread.
+ * <p>
+ * The report contains the business method which started the transaction, its SQL statements so far, the stack of the
+ * owning thread and the other open transactions, which might hold the locks. It is logged as warning and can be
+ * retrieved with {@link #getReports()}. If the watchdog is set to fail, the owning thread is interrupted, the
+ * transaction is rolled back and a {@link TransactionTimeoutException} is thrown instead of waiting for the lock
+ * timeout of the database.
+ * <p>
+ * The watchdog is disabled by default. It is enabled with the system property
+ * <code>beantest.watchdog.threshold</code> (in milliseconds) or {@link #setThreshold(long, TimeUnit)}. The SQL
+ * statements are recorded by a Hibernate interceptor ({@link info.novatec.beantest.producers.SqlRecordingInterceptor})
+ * in entity manager factories created while the watchdog is enabled.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class TransactionWatchdog {
+
+    /**
+     * System property for the threshold in milliseconds. 0 disables the watchdog.
+     */
+    public static final String THRESHOLD_PROPERTY = "beantest.watchdog.threshold";
+
+    /**
+     * System property to fail the transactions exceeding the threshold.
+     */
+    public static final String FAIL_PROPERTY = "beantest.watchdog.fail";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionWatchdog.class);
+
+    private static final int MAX_STATEMENTS = 50;
+
+    private static final int MAX_REPORTS = 100;
+
+    private static final ConcurrentMap<Thread, WatchedTransaction> OPEN_TRANSACTIONS = new ConcurrentHashMap<Thread, WatchedTransaction>();
+
+    private static final List<String> REPORTS = Collections.synchronizedList(new LinkedList<String>());
+
+    private static volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(THRESHOLD_PROPERTY, 0L));
+
+    private static volatile boolean failing = Boolean.getBoolean(FAIL_PROPERTY);
+
+    private static Thread watchdogThread;
+
+    private TransactionWatchdog() {
+        // Empty on purpose.
+    }
+
+    public static boolean isEnabled() {
+        return thresholdNanos > 0;
+    }
+
+    /**
+     * Sets the threshold after which a transaction is reported.
+     *
+     * @param threshold
+     *            the threshold, 0 disables the watchdog.
+     * @param unit
+     *            the unit of the threshold.
+     */
+    public static void setThreshold(long threshold, TimeUnit unit) {
+        thresholdNanos = unit.toNanos(threshold);
+    }
+
+    public static boolean isFailing() {
+        return failing;
+    }
+
+    /**
+     * Sets whether transactions exceeding the threshold should fail with a {@link TransactionTimeoutException}.
+     *
+     * @param failing
+     *            <code>true</code> to fail the transactions.
+     */
+    public static void setFailing(boolean failing) {
+        TransactionWatchdog.failing = failing;
+    }
+
+    /**
+     * Returns the reports of the transactions which exceeded the threshold so far (at most the last 100).
+     *
+     * @return the reports.
+     */
+    public static List<String> getReports() {
+        synchronized (REPORTS) {
+            return new ArrayList<String>(REPORTS);
+        }
+    }
+
+    /**
+     * Removes all the reports.
+     */
+    public static void clearReports() {
+        REPORTS.clear();
+    }
+
+    /**
+     * Records an SQL statement of the transaction of the current thread.
+     *
+     * @param sql
+     *            the SQL statement.
+     */
+    public static void recordStatement(String sql) {
+        WatchedTransaction transaction = OPEN_TRANSACTIONS.get(Thread.currentThread());
+        if (transaction != null) {
+            transaction.recordStatement(sql);
+        }
+    }
+
+    /**
+     * Starts watching the transaction of the current thread, if the watchdog is enabled.
+     *
+     * @param method
+     *            the business method which started the transaction.
+     */
+    static void begin(Method method) {
+        if (!isEnabled()) {
+            return;
+        }
+        OPEN_TRANSACTIONS.put(Thread.currentThread(), new WatchedTransaction(method, Thread.currentThread()));
+        startWatchdogThread();
+    }
+
+    /**
+     * Stops watching the transaction of the current thread.
+     *
+     * @return the report of the transaction if it exceeded the threshold and should fail, <code>null</code> otherwise.
+     */
+    static String end() {
+        WatchedTransaction transaction = OPEN_TRANSACTIONS.remove(Thread.currentThread());
+        if (transaction == null) {
+            return null;
+        }
+        synchronized (transaction) {
+            if (transaction.report != null && transaction.interrupted) {
+                // Clears the interrupt of the watchdog.
+                Thread.interrupted();
+                return transaction.report;
+            }
+        }
+        return null;
+    }
+
+    private static synchronized void startWatchdogThread() {
+        if (watchdogThread != null) {
+            return;
+        }
+        watchdogThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "beantest-transaction-watchdog");
+        watchdogThread.setDaemon(true);
+        watchdogThread.start();
+    }
+
+    private static void watch() {
+        while (true) {
+            try {
+                // Checks several times per threshold, so that transactions are reported soon after exceeding it.
+                long interval = Math.max(TimeUnit.NANOSECONDS.toMillis(thresholdNanos) / 4, 10L);
+                Thread.sleep(Math.min(interval, 1000L));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long threshold = thresholdNanos;
+            if (threshold > 0) {
+                checkOpenTransactions(threshold);
+            }
+        }
+    }
+
+    private static void checkOpenTransactions(long threshold) {
+        long now = System.nanoTime();
+        for (WatchedTransaction transaction : OPEN_TRANSACTIONS.values()) {
+            if (now - transaction.start > threshold && transaction.report == null) {
+                report(transaction, now);
+            }
+        }
+    }
+
+    private static void report(WatchedTransaction transaction, long now) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Transaction of %s on thread \"%s\" exceeds %d ms%n", transaction.getName(),
+                transaction.thread.getName(), TimeUnit.NANOSECONDS.toMillis(now - transaction.start)));
+        report.append("SQL statements:").append(String.format("%n"));
+        for (String sql : transaction.getStatements()) {
+            report.append("    ").append(sql).append(String.format("%n"));
+        }
+        appendStackTrace(report, transaction.thread);
+        for (WatchedTransaction other : OPEN_TRANSACTIONS.values()) {
+            if (other != transaction) {
+                report.append(String.format(Locale.ROOT, "Open transaction of %s on thread \"%s\" since %d ms%n", other.getName(),
+                        other.thread.getName(), TimeUnit.NANOSECONDS.toMillis(now - other.start)));
+                appendStackTrace(report, other.thread);
+            }
+        }
+        String text = report.toString();
+        LOGGER.warn(text);
+        synchronized (REPORTS) {
+            REPORTS.add(text);
+            if (REPORTS.size() > MAX_REPORTS) {
+                REPORTS.remove(0);
+            }
+        }
+        synchronized (transaction) {
+            transaction.report = text;
+            // The transaction might have completed in the meantime.
+            if (failing && OPEN_TRANSACTIONS.get(transaction.thread) == transaction) {
+                transaction.interrupted = true;
+                transaction.thread.interrupt();
+            }
+        }
+    }
+
+    private static void appendStackTrace(StringBuilder report, Thread thread) {
+        for (StackTraceElement element : thread.getStackTrace()) {
+            report.append("    at ").append(element).append(String.format("%n"));
+        }
+    }
+
+    /**
+     * An open transaction of a thread.
+     */
+    private static final class WatchedTransaction {
+
+        private final Method method;
+
+        private final Thread thread;
+
+        private final long start = System.nanoTime();
+
+        private final LinkedList<String> statements = new LinkedList<String>();
+
+        private volatile String report;
+
+        private boolean interrupted;
+
+        private WatchedTransaction(Method method, Thread thread) {
+            this.method = method;
+            this.thread = thread;
+        }
+
+        private String getName() {
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+
+        private synchronized void recordStatement(String sql) {
+            statements.add(sql);
+            if (statements.size() > MAX_STATEMENTS) {
+                statements.removeFirst();
+            }
+        }
+
+        private synchronized List<String> getStatements() {
+            return new ArrayList<String>(statements);
+        }
+    }
+
+}
@@ -0,0 +1,358 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package info.novatec.beantest.transactions;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.FlushCounter;
+import java.lang.reflect.Method;
+import java.util.Map;
+import javax.ejb.SessionSynchronization;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceContext;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transactional interceptor to provide basic transaction propagation.
+ * <p> 
+ * The nesting of intercepted calls is tracked per thread, and every thread with its own request context gets its own
+ * entity manager. Thus beans may be called concurrently from several threads, for example by a <code>LoadTest</code>
+ * of <i>bean-test-load</i>.
+ * <p>
+ * Every call is recorded in the {@link TransactionMetrics}.
+ * <p>
+ * Transactions started by {@link ReadOnly} methods are neither flushed nor committed.
+ * <p>
+ * The synchronizations registered with the {@link ResourceLocalSynchronizationRegistry} and the intercepted beans
+ * implementing {@link SessionSynchronization} are notified about the completion of the transactions. Long running
+ * transactions are reported by the {@link TransactionWatchdog}.
+ * <p>
+ * Alternatively the Apache Deltaspike JPA module can be used. The JPA module provides more advanced transaction handling. 
+ * However, this implementation should suffice for testing purposes.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Interceptor
+@Transactional
+public class TransactionalInterceptor {
+    
+    @Inject
+    @PersistenceContext
+    EntityManager em;
+
+    @Inject
+    RollbackPolicy rollbackPolicy;
+
+    @Inject
+    EntityManagerProducer entityManagerProducer;
+
+    @Inject
+    ResourceLocalSynchronizationRegistry synchronizationRegistry;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalInterceptor.class);
+
+    private static final ThreadLocal<Integer> INTERCEPTOR_COUNTER = new ThreadLocal<Integer>() {
+
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+
+    /**
+     * The flush mode of the session before the current read-only transaction started, or <code>null</code> if the
+     * current transaction is not read-only.
+     */
+    private static final ThreadLocal<FlushMode> READ_ONLY_SUSPENDED_FLUSH_MODE = new ThreadLocal<FlushMode>();
+
+    @AroundInvoke
+    public Object manageTransaction(InvocationContext ctx) throws Exception {
+        if (isSessionSynchronizationCallback(ctx)) {
+            return ctx.proceed();
+        }
+        MethodMetrics metrics = TransactionMetrics.metricsFor(ctx.getMethod());
+        long start = System.nanoTime();
+        
+        long flushCountAtStart = FlushCounter.getFlushCount();
+        EntityTransaction transaction = em.getTransaction();
+        if (!transaction.isActive()) {
+            transaction.begin();
+            synchronizationRegistry.begin();
+            TransactionWatchdog.begin(ctx.getMethod());
+            if (isReadOnly(ctx.getMethod())) {
+                beginReadOnly();
+                LOGGER.debug("Read-only transaction started");
+            } else {
+                LOGGER.debug("Transaction started");
+            }
+        } else if (READ_ONLY_SUSPENDED_FLUSH_MODE.get() != null && !isReadOnly(ctx.getMethod())) {
+            promoteReadOnly();
+            LOGGER.debug("Read-only transaction turned into a read-write transaction");
+        }
+
+        INTERCEPTOR_COUNTER.set(INTERCEPTOR_COUNTER.get() + 1);
+        Object result = null;
+        boolean failed = false;
+        long businessLogicStart = System.nanoTime();
+        try {
+            if (ctx.getTarget() instanceof SessionSynchronization) {
+                synchronizationRegistry.register((SessionSynchronization) ctx.getTarget());
+            }
+            result = ctx.proceed();
+
+        } catch (Exception e) {
+            failed = true;
+            if (isFirstInterceptor()) {
+                markRollbackTransaction(e);
+            }
+            throw e;
+        } finally {
+            long businessLogicNanos = System.nanoTime() - businessLogicStart;
+            try {
+                processTransaction(ctx, metrics, flushCountAtStart);
+            } finally {
+                if (metrics != null) {
+                    metrics.recordCall(System.nanoTime() - start, businessLogicNanos, failed);
+                }
+            }
+        }
+
+        return result;
+    }
+    
+     
+
+    /**
+     * Commits the current transaction if it is not already marked as rollback via the {@link EntityTransaction#getRollbackOnly()} method.
+     * In that case, a rollback will be executed, as well as if the {@link TransactionWatchdog} failed the transaction. A
+     * read-only transaction is never committed. Afterwards the persistence context is handled according to the
+     * {@link PersistenceContextStrategy} of the intercepted bean.
+     */
+    private void processTransaction(InvocationContext ctx, MethodMetrics metrics, long flushCountAtStart) throws Exception {
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            
+            if (em.isOpen() && transaction.isActive() && isFirstInterceptor()) {
+                String timeoutReport = TransactionWatchdog.end();
+                if (timeoutReport != null) {
+                    transaction.setRollbackOnly();
+                }
+                if (READ_ONLY_SUSPENDED_FLUSH_MODE.get() != null) {
+                    completeReadOnlyTransaction(transaction, metrics);
+                } else {
+                    completeTransaction(transaction, metrics, flushCountAtStart);
+                }
+                completePersistenceContext(ctx);
+                if (timeoutReport != null) {
+                    throw new TransactionTimeoutException(timeoutReport);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Error when trying to commit transaction: {0}", e);
+            throw e;
+        } finally {
+            INTERCEPTOR_COUNTER.set(INTERCEPTOR_COUNTER.get() - 1);
+            if (INTERCEPTOR_COUNTER.get() == 0) {
+                READ_ONLY_SUSPENDED_FLUSH_MODE.remove();
+                synchronizationRegistry.clear();
+                TransactionWatchdog.end();
+            }
+        }
+
+    }
+
+    private void completeTransaction(EntityTransaction transaction, MethodMetrics metrics, long flushCountAtStart) {
+        long completionStart = System.nanoTime();
+        boolean committed = false;
+        try {
+            if (transaction.getRollbackOnly()) {
+                transaction.rollback();
+                LOGGER.debug("Transaction was rollbacked");
+            } else {
+                beforeCommit(transaction);
+                transaction.commit();
+                committed = true;
+                LOGGER.debug("Transaction committed");
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.recordCompletion(committed, System.nanoTime() - completionStart,
+                        FlushCounter.getFlushCount() - flushCountAtStart);
+            }
+            synchronizationRegistry.afterCompletion(committed);
+        }
+    }
+
+    /**
+     * Calls the synchronizations before the commit. If one of them fails, the transaction is rolled back.
+     */
+    private void beforeCommit(EntityTransaction transaction) {
+        try {
+            synchronizationRegistry.beforeCompletion();
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Ends a read-only transaction without commit, since there is nothing to write. If the transaction is marked as
+     * rollback, the synchronizations are notified about a rollback, like for a read-write transaction.
+     */
+    private void completeReadOnlyTransaction(EntityTransaction transaction, MethodMetrics metrics) {
+        long completionStart = System.nanoTime();
+        boolean completed = false;
+        try {
+            if (!transaction.getRollbackOnly()) {
+                synchronizationRegistry.beforeCompletion();
+                completed = true;
+            }
+        } finally {
+            try {
+                endReadOnly();
+            } finally {
+                transaction.rollback();
+                LOGGER.debug("Read-only transaction completed");
+                if (metrics != null) {
+                    metrics.recordReadOnlyCompletion(!completed, System.nanoTime() - completionStart);
+                }
+                synchronizationRegistry.afterCompletion(completed);
+            }
+        }
+    }
+
+    private void beginReadOnly() {
+        Session session = em.unwrap(Session.class);
+        READ_ONLY_SUSPENDED_FLUSH_MODE.set(session.getFlushMode());
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+    }
+
+    /**
+     * Turns the read-only transaction into a read-write transaction. The entities loaded so far become modifiable, so
+     * that the changes of the read-write methods are flushed. Changes made to them before are discarded.
+     */
+    private void promoteReadOnly() {
+        endReadOnly();
+        if (em.isOpen()) {
+            Session session = em.unwrap(Session.class);
+            for (Map.Entry<Object, EntityEntry> entry : ((SessionImplementor) session).getPersistenceContext().reentrantSafeEntityEntries()) {
+                if (entry.getValue().getStatus() == Status.READ_ONLY) {
+                    session.setReadOnly(entry.getKey(), false);
+                }
+            }
+        }
+    }
+
+    private void endReadOnly() {
+        FlushMode flushMode = READ_ONLY_SUSPENDED_FLUSH_MODE.get();
+        READ_ONLY_SUSPENDED_FLUSH_MODE.remove();
+        if (em.isOpen()) {
+            Session session = em.unwrap(Session.class);
+            session.setDefaultReadOnly(false);
+            session.setFlushMode(flushMode);
+        }
+    }
+
+    /**
+     * Marks the transaction for rollback via {@link EntityTransaction#setRollbackOnly()}.
+     */
+    private void markRollbackTransaction(Exception exception) throws Exception {
+        try {
+            if (em.isOpen() && em.getTransaction().isActive() && rollbackPolicy.shouldRollback(exception)) {
+                em.getTransaction().setRollbackOnly();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Error when trying to roll back the  transaction: {0}", e);
+            throw e;
+        }
+
+    }
+
+    private void completePersistenceContext(InvocationContext ctx) {
+        switch (getPersistenceContextStrategy(ctx)) {
+            case TRANSACTION:
+                entityManagerProducer.renewEntityManager();
+                break;
+            case EXTENDED:
+                break;
+            default:
+                em.clear();
+        }
+    }
+
+    /**
+     * Returns the strategy declared by the intercepted bean, or the one of the test if the bean doesn't declare any.
+     */
+    private static PersistenceContextStrategy getPersistenceContextStrategy(InvocationContext ctx) {
+        PersistenceContextRetention retention = ctx.getTarget().getClass().getAnnotation(PersistenceContextRetention.class);
+        if (retention != null) {
+            return retention.value();
+        }
+        return BeanProviderHelper.getInstance().getConfiguration().getPersistenceContextStrategy();
+    }
+
+    /**
+     * A method is read-only if it or its bean is annotated with {@link ReadOnly}, or if its transaction attribute is
+     * <code>SUPPORTS</code> or <code>NOT_SUPPORTED</code>. The transaction attribute of the method overrides the one
+     * of its class.
+     */
+    private static boolean isReadOnly(Method method) {
+        if (method.isAnnotationPresent(ReadOnly.class) || method.getDeclaringClass().isAnnotationPresent(ReadOnly.class)) {
+            return true;
+        }
+        TransactionAttribute transactionAttribute = method.getAnnotation(TransactionAttribute.class);
+        if (transactionAttribute == null) {
+            transactionAttribute = method.getDeclaringClass().getAnnotation(TransactionAttribute.class);
+        }
+        return transactionAttribute != null && (transactionAttribute.value() == TransactionAttributeType.SUPPORTS
+                || transactionAttribute.value() == TransactionAttributeType.NOT_SUPPORTED);
+    }
+
+    /**
+     * The callbacks of {@link SessionSynchronization} are called by the container and run in the context of the
+     * completing transaction.
+     */
+    private static boolean isSessionSynchronizationCallback(InvocationContext ctx) {
+        if (!(ctx.getTarget() instanceof SessionSynchronization)) {
+            return false;
+        }
+        try {
+            SessionSynchronization.class.getMethod(ctx.getMethod().getName(), ctx.getMethod().getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isFirstInterceptor() {
+        return INTERCEPTOR_COUNTER.get() - 1 == 0;
+    }
+    
+}
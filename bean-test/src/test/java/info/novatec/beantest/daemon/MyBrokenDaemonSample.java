@@ -0,0 +1,39 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.daemon;
+
+import org.junit.Test;
+
+/**
+ * Test class whose static initializer fails when the daemon loads it in {@link TestBeanTestDaemon}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class MyBrokenDaemonSample {
+
+    static {
+        if (Boolean.TRUE) {
+            throw new IllegalStateException("Broken static initializer");
+        }
+    }
+
+    @Test
+    public void shouldNeverRun() {
+        // The class cannot be initialized.
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.daemon;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.ejb.MyEJBService;
+import info.novatec.beantest.demo.ejb.MyOtherEJBService;
+import org.junit.Test;
+
+/**
+ * Bean test class run by the daemon in {@link TestBeanTestDaemon}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class MyDaemonBeanSample extends BaseBeanTest {
+
+    @Test
+    public void shouldPersistEntity() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(1));
+    }
+
+}
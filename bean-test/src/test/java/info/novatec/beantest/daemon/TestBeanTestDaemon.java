@@ -0,0 +1,136 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.daemon;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.transactions.TransactionMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This test verifies the round trip between the client and the daemon, that the daemon survives a test class which
+ * cannot be loaded, and that it clears the caches referring to the classes it replaces.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestBeanTestDaemon {
+
+    private static final long CONNECT_TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder classDirectory = new TemporaryFolder();
+
+    private int port;
+
+    private Thread daemonThread;
+
+    @Before
+    public void startDaemon() throws IOException {
+        ServerSocket freePort = new ServerSocket(0);
+        port = freePort.getLocalPort();
+        freePort.close();
+        final BeanTestDaemon daemon = new BeanTestDaemon(port, Collections.singletonList(classDirectory.getRoot()));
+        daemonThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    daemon.run();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, "bean-test-daemon");
+        daemonThread.start();
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        if (daemonThread.isAlive()) {
+            send(BeanTestDaemon.SHUTDOWN_COMMAND);
+        }
+        daemonThread.join(CONNECT_TIMEOUT);
+    }
+
+    @Test
+    public void shouldRunTestClass() throws Exception {
+        String response = send(MyDaemonSample.class.getName());
+
+        assertThat(response, containsString(BeanTestDaemon.RESULT_PREFIX + " run=1 failures=0 "));
+    }
+
+    @Test
+    public void shouldReportErrorAndKeepRunning() throws Exception {
+        String response = send(MyBrokenDaemonSample.class.getName());
+
+        assertThat(response, containsString(BeanTestDaemon.RESULT_PREFIX + " error=java.lang.ExceptionInInitializerError"));
+        assertThat(daemonThread.isAlive(), is(true));
+        assertThat(send(MyDaemonSample.class.getName()), containsString(" failures=0 "));
+    }
+
+    @Test
+    public void shouldClearCachesReferringToReplacedClasses() throws Exception {
+        assertThat(send(MyDaemonBeanSample.class.getName()), containsString(" failures=0 "));
+        assertThat(TransactionMetrics.getAll(), is(not(empty())));
+
+        classDirectory.newFile("changed.txt");
+        assertThat(send(MyDaemonSample.class.getName()), containsString(" failures=0 "));
+
+        assertThat(TransactionMetrics.getAll(), is(empty()));
+    }
+
+    @Test
+    public void shouldShutDown() throws Exception {
+        send(BeanTestDaemon.SHUTDOWN_COMMAND);
+        daemonThread.join(CONNECT_TIMEOUT);
+
+        assertThat(daemonThread.isAlive(), is(false));
+    }
+
+    /**
+     * Sends the request once the daemon listens and returns its response.
+     */
+    private String send(String... args) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (true) {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try {
+                BeanTestDaemonClient.send(port, args, new PrintStream(response, true, "UTF-8"));
+                return response.toString("UTF-8");
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.daemon;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.demo.ejb.MyOrderEJBService;
+import info.novatec.beantest.demo.entities.MyOrder;
+import info.novatec.beantest.demo.entities.MyOrderLine;
+import info.novatec.beantest.demo.entities.MyOrderStatus;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This test verifies that the snapshot detects the changed files, the persistent classes and the classes they
+ * reference.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestClassDirectorySnapshot {
+
+    @Rule
+    public TemporaryFolder classDirectory = new TemporaryFolder();
+
+    @Test
+    public void shouldFindPersistentClassesAndReferencedClasses() throws IOException {
+        copyClasses(classDirectory.getRoot(), MyOrder.class, MyOrderLine.class, MyOrderStatus.class, MyOrderEJBService.class);
+
+        ClassDirectorySnapshot snapshot = ClassDirectorySnapshot.of(getClassDirectories());
+
+        assertThat(snapshot.getPersistentClassNames(), containsInAnyOrder(MyOrder.class.getName(), MyOrderLine.class.getName()));
+        assertThat(snapshot.getPersistentClassClosure(), containsInAnyOrder(MyOrder.class.getName(), MyOrderLine.class.getName(),
+                MyOrderStatus.class.getName()));
+    }
+
+    @Test
+    public void shouldDetectChangedFiles() throws IOException {
+        copyClasses(classDirectory.getRoot(), MyOrder.class, MyOrderStatus.class, MyOrderEJBService.class);
+        ClassDirectorySnapshot previous = ClassDirectorySnapshot.of(getClassDirectories());
+
+        assertThat(ClassDirectorySnapshot.of(getClassDirectories()).getChangedPaths(previous), is(empty()));
+
+        touch(MyOrderEJBService.class);
+        ClassDirectorySnapshot current = ClassDirectorySnapshot.of(getClassDirectories());
+        assertThat(current.getChangedPaths(previous), containsInAnyOrder(getPath(MyOrderEJBService.class)));
+        assertThat(current.affectsPersistenceUnits(previous, current.getChangedPaths(previous)), is(false));
+    }
+
+    @Test
+    public void shouldRebuildPersistenceUnitsIfReferencedClassChanged() throws IOException {
+        copyClasses(classDirectory.getRoot(), MyOrder.class, MyOrderStatus.class, MyOrderEJBService.class);
+        ClassDirectorySnapshot previous = ClassDirectorySnapshot.of(getClassDirectories());
+
+        touch(MyOrderStatus.class);
+        ClassDirectorySnapshot current = ClassDirectorySnapshot.of(getClassDirectories());
+
+        assertThat(current.affectsPersistenceUnits(previous, current.getChangedPaths(previous)), is(true));
+    }
+
+    @Test
+    public void shouldRebuildPersistenceUnitsIfResourceWasAdded() throws IOException {
+        copyClasses(classDirectory.getRoot(), MyOrderEJBService.class);
+        ClassDirectorySnapshot previous = ClassDirectorySnapshot.of(getClassDirectories());
+
+        classDirectory.newFolder("META-INF");
+        classDirectory.newFile("META-INF/persistence.xml");
+        ClassDirectorySnapshot current = ClassDirectorySnapshot.of(getClassDirectories());
+
+        assertThat(current.getChangedPaths(previous), hasItem("META-INF/persistence.xml"));
+        assertThat(current.getPersistentClassClosure(), not(hasItem(MyOrderEJBService.class.getName())));
+        assertThat(current.affectsPersistenceUnits(previous, current.getChangedPaths(previous)), is(true));
+    }
+
+    private List<File> getClassDirectories() {
+        return Collections.singletonList(classDirectory.getRoot());
+    }
+
+    /**
+     * Appends a byte to the class file, which changes its hash but not its constant pool.
+     */
+    private void touch(Class<?> clazz) throws IOException {
+        OutputStream output = new FileOutputStream(new File(classDirectory.getRoot(), getPath(clazz)), true);
+        try {
+            output.write(0);
+        } finally {
+            output.close();
+        }
+    }
+
+    static String getPath(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    static void copyClasses(File directory, Class<?>... classes) throws IOException {
+        for (Class<?> clazz : classes) {
+            File target = new File(directory, getPath(clazz));
+            target.getParentFile().mkdirs();
+            InputStream input = clazz.getResourceAsStream(clazz.getSimpleName() + ".class");
+            try {
+                OutputStream output = new FileOutputStream(target);
+                try {
+                    byte[] buffer = new byte[4096];
+                    for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                        output.write(buffer, 0, read);
+                    }
+                } finally {
+                    output.close();
+                }
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.daemon;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.demo.ejb.MyOrderEJBService;
+import info.novatec.beantest.demo.entities.MyOrder;
+import info.novatec.beantest.demo.entities.MyOrderLine;
+import info.novatec.beantest.demo.entities.MyOrderStatus;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This test verifies that the entity class loader defines the persistent classes together with the classes they
+ * reference, and leaves the other classes and the resources to its child class loader.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestEntityClassLoader {
+
+    @Rule
+    public TemporaryFolder classDirectory = new TemporaryFolder();
+
+    private URL[] urls;
+
+    private EntityClassLoader entityClassLoader;
+
+    @Before
+    public void createClassLoader() throws IOException {
+        TestClassDirectorySnapshot.copyClasses(classDirectory.getRoot(), MyOrder.class, MyOrderLine.class, MyOrderStatus.class,
+                MyOrderEJBService.class);
+        classDirectory.newFolder("META-INF");
+        classDirectory.newFile("META-INF/beans.xml");
+        urls = new URL[] {classDirectory.getRoot().toURI().toURL()};
+        ClassDirectorySnapshot snapshot = ClassDirectorySnapshot.of(Collections.singletonList(classDirectory.getRoot()));
+        // No parent with the test classes, so that the classes are defined by the class loaders under test.
+        entityClassLoader = new EntityClassLoader(urls, snapshot.getPersistentClassClosure(), null);
+    }
+
+    @Test
+    public void shouldDefineClassesReferencedByEntities() throws Exception {
+        Class<?> orderClass = entityClassLoader.loadClass(MyOrder.class.getName());
+        Object order = orderClass.newInstance();
+        Object status = orderClass.getMethod("getStatus").invoke(order);
+
+        assertThat(orderClass.getClassLoader(), is(sameInstance((ClassLoader) entityClassLoader)));
+        assertThat(status.getClass().getClassLoader(), is(sameInstance((ClassLoader) entityClassLoader)));
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void shouldNotDefineBeanClasses() throws ClassNotFoundException {
+        entityClassLoader.loadClass(MyOrderEJBService.class.getName());
+    }
+
+    @Test
+    public void shouldLeaveBeanClassesAndResourcesToChildClassLoader() throws ClassNotFoundException {
+        URLClassLoader classLoader = new URLClassLoader(urls, entityClassLoader);
+
+        assertThat(entityClassLoader.getResource("META-INF/beans.xml"), is(nullValue()));
+        assertThat(classLoader.loadClass(MyOrderEJBService.class.getName()).getClassLoader(),
+                is(sameInstance((ClassLoader) classLoader)));
+        assertThat(classLoader.loadClass(MyOrderStatus.class.getName()).getClassLoader(),
+                is(sameInstance((ClassLoader) entityClassLoader)));
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo;
+
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.demo.entities.MyOrder;
+import info.novatec.beantest.demo.entities.MyOrderLine;
+import info.novatec.beantest.producers.DatabaseBackend;
+import info.novatec.beantest.producers.DatabaseBackends;
+import info.novatec.beantest.producers.DerbyBackend;
+import info.novatec.beantest.producers.H2Backend;
+import info.novatec.beantest.producers.HsqldbBackend;
+import info.novatec.beantest.producers.SchemaScriptCache;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Compares the built-in database backends on the demo entities.
+ * <p>
+ * Every round creates an entity manager factory, including the schema, executes a number of transactions persisting
+ * an order with its lines and an entity and querying the orders, and closes the factory, which drops the database.
+ * The first round of every backend is a warmup. The average time of the factory startup and the transactions is
+ * printed per backend.
+ * <p>
+ * Usage: <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=info.novatec.beantest.demo.DatabaseBackendBenchmark [-Dexec.args="rounds transactions"]</code>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class DatabaseBackendBenchmark {
+
+    private static final String PERSISTENCE_UNIT = "beanTestPU";
+
+    private static final int DEFAULT_ROUNDS = 5;
+
+    private static final int DEFAULT_TRANSACTIONS = 500;
+
+    private static final int LINES_PER_ORDER = 5;
+
+    private DatabaseBackendBenchmark() {
+        // Empty on purpose.
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TRANSACTIONS;
+        List<Class<? extends DatabaseBackend>> backends = Arrays.asList(DerbyBackend.class, H2Backend.class, HsqldbBackend.class);
+
+        StringBuilder table = new StringBuilder(String.format("%-15s %15s %20s%n", "Backend", "Startup (ms)", "Transactions (ms)"));
+        for (Class<? extends DatabaseBackend> backend : backends) {
+            long startup = 0;
+            long work = 0;
+            for (int round = 0; round <= rounds; round++) {
+                long start = System.nanoTime();
+                EntityManagerFactory emf = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT, getProperties(backend));
+                long started = System.nanoTime();
+                try {
+                    executeTransactions(emf, transactions);
+                } finally {
+                    emf.close();
+                }
+                if (round > 0) {
+                    startup += started - start;
+                    work += System.nanoTime() - started;
+                }
+            }
+            table.append(String.format("%-15s %15d %20d%n", backend.getSimpleName(), TimeUnit.NANOSECONDS.toMillis(startup / rounds),
+                    TimeUnit.NANOSECONDS.toMillis(work / rounds)));
+        }
+        System.out.print(table);
+    }
+
+    private static Map<String, String> getProperties(Class<? extends DatabaseBackend> backend) {
+        Map<String, String> properties = DatabaseBackends.getProperties(backend, PERSISTENCE_UNIT);
+        properties.put("hibernate.show_sql", "false");
+        return properties;
+    }
+
+    private static void executeTransactions(EntityManagerFactory emf, int transactions) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (int i = 0; i < transactions; i++) {
+                em.getTransaction().begin();
+                MyOrder order = new MyOrder();
+                for (int line = 0; line < LINES_PER_ORDER; line++) {
+                    order.getLines().add(new MyOrderLine("article " + line));
+                }
+                em.persist(order);
+                MyEntity entity = new MyEntity();
+                entity.setName("entity " + i);
+                em.persist(entity);
+                em.createQuery("select count(o) from MyOrder o").getSingleResult();
+                em.getTransaction().commit();
+                em.clear();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+}
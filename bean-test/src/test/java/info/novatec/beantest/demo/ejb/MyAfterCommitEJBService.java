@@ -0,0 +1,117 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.transactions.ReadOnly;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Demo EJB Service which publishes notifications in one batch after the commit of the transaction.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MyAfterCommitEJBService {
+
+    private static final Object NOTIFICATIONS_KEY = MyAfterCommitEJBService.class.getName() + ".notifications";
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Resource
+    TransactionSynchronizationRegistry registry;
+
+    /**
+     * Persists an entity for every given name and publishes the names to the given list after the commit.
+     *
+     * @param published the list the batches of names are published to.
+     * @param names the names of the entities.
+     */
+    public void saveEntitiesAndNotify(List<List<String>> published, String... names) {
+        for (String name : names) {
+            MyEntity entity = new MyEntity();
+            entity.setName(name);
+            em.persist(entity);
+            queueNotification(published, name);
+        }
+    }
+
+    /**
+     * Queues a notification and throws an exception afterwards, so that the notification is never published.
+     *
+     * @param published the list the batches of names are published to.
+     * @param name the name to publish.
+     */
+    public void notifyAndFail(List<List<String>> published, String name) {
+        queueNotification(published, name);
+        throw new IllegalStateException("Failed on purpose");
+    }
+
+    /**
+     * Queues a notification in a read-only transaction and marks the transaction for rollback, so that the notification
+     * is never published.
+     *
+     * @param published the list the batches of names are published to.
+     * @param name the name to publish.
+     */
+    @ReadOnly
+    public void notifyAndRollBackReadOnly(List<List<String>> published, String name) {
+        queueNotification(published, name);
+        registry.setRollbackOnly();
+    }
+
+    public Object getTransactionKey() {
+        return registry.getTransactionKey();
+    }
+
+    public int getTransactionStatus() {
+        return registry.getTransactionStatus();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void queueNotification(final List<List<String>> published, String name) {
+        List<String> notifications = (List<String>) registry.getResource(NOTIFICATIONS_KEY);
+        if (notifications == null) {
+            final List<String> batch = new ArrayList<String>();
+            registry.putResource(NOTIFICATIONS_KEY, batch);
+            registry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to prepare.
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == javax.transaction.Status.STATUS_COMMITTED) {
+                        published.add(batch);
+                    }
+                }
+            });
+            notifications = batch;
+        }
+        notifications.add(name);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.concurrent.ObservesAsync;
+import info.novatec.beantest.demo.entities.MyEntity;
+import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Demo EJB Service which audits its calls with an asynchronously observed event.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MyAuditEJBService {
+
+    @Inject
+    Event<MyAuditEvent> auditEvents;
+
+    @PersistenceContext
+    EntityManager em;
+
+    public void publish(MyAuditEvent event) {
+        auditEvents.fire(event);
+    }
+
+    /**
+     * Persists an entity named after the given event, in its own transaction on an event thread, and fires the
+     * follow-up events of the given event.
+     *
+     * @param event the audit event.
+     * @throws InterruptedException if interrupted while waiting for the release of the event.
+     */
+    public void audit(@ObservesAsync MyAuditEvent event) throws InterruptedException {
+        event.awaitRelease();
+        if (event.isFailing()) {
+            throw new IllegalStateException("Audit of " + event.getName() + " failed");
+        }
+        MyEntity entity = new MyEntity();
+        entity.setName(event.getName());
+        em.persist(entity);
+        event.setObserverThread(Thread.currentThread().getName());
+        for (int i = 0; i < event.getFollowUps(); i++) {
+            auditEvents.fire(new MyAuditEvent(event.getName() + "-" + i));
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Demo event which is observed asynchronously by {@link MyAuditEJBService}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class MyAuditEvent {
+
+    private final String name;
+
+    private final boolean failing;
+
+    private final CountDownLatch release;
+
+    private final int followUps;
+
+    private volatile String observerThread;
+
+    public MyAuditEvent(String name) {
+        this(name, false, new CountDownLatch(0));
+    }
+
+    public MyAuditEvent(String name, boolean failing, CountDownLatch release) {
+        this(name, failing, release, 0);
+    }
+
+    public MyAuditEvent(String name, int followUps) {
+        this(name, false, new CountDownLatch(0), followUps);
+    }
+
+    private MyAuditEvent(String name, boolean failing, CountDownLatch release, int followUps) {
+        this.name = name;
+        this.failing = failing;
+        this.release = release;
+        this.followUps = followUps;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isFailing() {
+        return failing;
+    }
+
+    /**
+     * Returns the number of events the observer fires in turn.
+     *
+     * @return the number of follow-up events.
+     */
+    public int getFollowUps() {
+        return followUps;
+    }
+
+    /**
+     * Blocks the observer until the test releases it.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitRelease() throws InterruptedException {
+        release.await();
+    }
+
+    public String getObserverThread() {
+        return observerThread;
+    }
+
+    public void setObserverThread(String observerThread) {
+        this.observerThread = observerThread;
+    }
+
+    @Override
+    public String toString() {
+        return "MyAuditEvent[" + name + "]";
+    }
+
+}
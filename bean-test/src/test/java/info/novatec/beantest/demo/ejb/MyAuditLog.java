@@ -0,0 +1,42 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+
+/**
+ * Demo bean which observes the audit events of {@link MyAuditEJBService} synchronously.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@ApplicationScoped
+public class MyAuditLog {
+
+    private final List<String> names = new ArrayList<String>();
+
+    public synchronized void record(@Observes MyAuditEvent event) {
+        names.add(event.getName());
+    }
+
+    public synchronized List<String> getNames() {
+        return new ArrayList<String>(names);
+    }
+
+}
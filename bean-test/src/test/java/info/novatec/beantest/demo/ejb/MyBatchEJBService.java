@@ -0,0 +1,86 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.concurrent.ManagedExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Demo EJB Service which splits a batch into chunks processed by worker threads.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MyBatchEJBService {
+
+    @Inject
+    ManagedExecutor executor;
+
+    @EJB
+    MyEJBService myEJBService;
+
+    @PersistenceContext
+    EntityManager em;
+
+    /**
+     * Persists the given number of entities per chunk, every chunk in its own transaction on a worker thread.
+     *
+     * @param chunks the number of chunks.
+     * @param entitiesPerChunk the number of entities per chunk.
+     * @return the names of the threads which processed the chunks.
+     * @throws InterruptedException if interrupted while waiting for the chunks.
+     * @throws ExecutionException if a chunk failed.
+     */
+    public List<String> persistInParallel(int chunks, final int entitiesPerChunk) throws InterruptedException, ExecutionException {
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < chunks; i++) {
+            results.add(executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() {
+                    for (int j = 0; j < entitiesPerChunk; j++) {
+                        myEJBService.callOtherServiceAndPersistAnEntity();
+                    }
+                    return Thread.currentThread().getName();
+                }
+            }));
+        }
+        List<String> threadNames = new ArrayList<String>();
+        for (Future<String> result : results) {
+            threadNames.add(result.get());
+        }
+        return threadNames;
+    }
+
+    /**
+     * Returns the session of the entity manager of the current thread.
+     *
+     * @return the Hibernate session.
+     */
+    public Object getSession() {
+        return em.getDelegate();
+    }
+}
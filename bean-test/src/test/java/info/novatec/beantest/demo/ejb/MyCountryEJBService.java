@@ -0,0 +1,42 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.demo.entities.MyCountry;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Demo EJB Service for cached reference data.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MyCountryEJBService {
+
+    @PersistenceContext
+    EntityManager em;
+
+    public void saveCountry(String code, String name) {
+        em.persist(new MyCountry(code, name));
+    }
+
+    public MyCountry findCountry(String code) {
+        return em.find(MyCountry.class, code);
+    }
+}
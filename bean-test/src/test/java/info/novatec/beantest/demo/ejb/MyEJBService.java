@@ -18,6 +18,7 @@ package info.novatec.beantest.demo.ejb;
 import info.novatec.beantest.demo.entities.MyEntity;
 import info.novatec.beantest.demo.entities.MyEntityWithConstraints;
 import info.novatec.beantest.demo.exceptions.MyException;
+import java.util.List;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
@@ -112,4 +113,58 @@ public class MyEJBService {
      public void save(MyEntityWithConstraints entity) {
          otherService.save(entity);
      }
+
+     /**
+      * Persists the given entity and throws the given exception afterwards.
+      *
+      * @param entity the entity that should be persisted.
+      * @param exception the exception to throw.
+      * @throws Exception always the given exception.
+      */
+     public void saveEntityAndThrow(MyEntity entity, Exception exception) throws Exception {
+         em.persist(entity);
+         throw exception;
+     }
+
+     /**
+      * Renames all the entities and counts the entities with the new name afterwards, which requires the changes to be
+      * flushed before the query (unless the flush mode is COMMIT).
+      *
+      * @param name the new name.
+      * @return the number of entities with the new name, as seen by the query.
+      */
+     public long renameAllEntities(String name) {
+         for (MyEntity entity : otherService.getAllEntities()) {
+             entity.setName(name);
+         }
+         return em.createQuery("Select count(e) from MyEntity as e where e.name = :name", Long.class).setParameter("name", name).getSingleResult();
+     }
+
+     /**
+      * Renames the given entities.
+      *
+      * @param entities the entities of the current persistence context.
+      * @param name the new name.
+      */
+     public void renameEntities(List<MyEntity> entities, String name) {
+         for (MyEntity entity : entities) {
+             entity.setName(name);
+         }
+     }
+
+     /**
+      * Persists an entity and waits for the given time within the transaction, like a transaction waiting for a lock.
+      *
+      * @param millis the time to wait in milliseconds.
+      */
+     public void persistEntityAndWait(long millis) {
+         callOtherServiceAndPersistAnEntity();
+         em.createQuery("Select e from MyEntity as e", MyEntity.class).getResultList();
+         try {
+             Thread.sleep(millis);
+         } catch (InterruptedException e) {
+             Thread.currentThread().interrupt();
+             throw new IllegalStateException("Interrupted while waiting", e);
+         }
+     }
 }
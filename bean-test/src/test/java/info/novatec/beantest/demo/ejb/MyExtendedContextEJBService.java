@@ -0,0 +1,46 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.transactions.PersistenceContextRetention;
+import info.novatec.beantest.transactions.PersistenceContextStrategy;
+import java.util.Collection;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Demo EJB Service whose transactions keep the persistence context.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+@PersistenceContextRetention(PersistenceContextStrategy.EXTENDED)
+public class MyExtendedContextEJBService {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    public Collection<MyEntity> getAllEntities() {
+        return entityManager.createQuery("Select E from MyEntity as E", MyEntity.class).getResultList();
+    }
+
+    public boolean isManaged(MyEntity entity) {
+        return entityManager.contains(entity);
+    }
+}
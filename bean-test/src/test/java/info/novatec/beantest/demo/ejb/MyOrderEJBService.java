@@ -0,0 +1,50 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.demo.entities.MyOrder;
+import info.novatec.beantest.demo.entities.MyOrderLine;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Demo EJB Service saving orders.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MyOrderEJBService {
+
+    @PersistenceContext
+    EntityManager em;
+
+    /**
+     * Saves an order with a line for every given article.
+     *
+     * @param articles the articles of the order.
+     * @return the number of saved orders.
+     */
+    public long saveOrder(String... articles) {
+        MyOrder order = new MyOrder();
+        for (String article : articles) {
+            order.getLines().add(new MyOrderLine(article));
+        }
+        em.persist(order);
+        return em.createQuery("Select count(o) from MyOrder as o", Long.class).getSingleResult();
+    }
+}
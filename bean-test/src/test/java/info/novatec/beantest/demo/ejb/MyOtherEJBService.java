@@ -60,4 +60,23 @@ public class MyOtherEJBService {
     public void save(MyEntityWithConstraints entity) {
         entityManager.persist(entity);
     }
+
+    /**
+     * Returns whether the given entity is managed by the current persistence context.
+     *
+     * @param entity the entity.
+     * @return <code>true</code> if the entity is managed.
+     */
+    public boolean isManaged(MyEntity entity) {
+        return entityManager.contains(entity);
+    }
+
+    /**
+     * Returns the provider specific object underlying the current entity manager.
+     *
+     * @return the delegate of the entity manager.
+     */
+    public Object getEntityManagerDelegate() {
+        return entityManager.getDelegate();
+    }
 }
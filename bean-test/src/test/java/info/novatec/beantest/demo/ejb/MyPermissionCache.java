@@ -0,0 +1,53 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.transactions.TransactionScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+
+/**
+ * Demo per-transaction cache of permission lookups.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@TransactionScoped
+public class MyPermissionCache {
+
+    static final AtomicInteger LOOKUPS = new AtomicInteger();
+
+    static final AtomicInteger DESTROYED = new AtomicInteger();
+
+    private final Map<String, Boolean> permissions = new HashMap<String, Boolean>();
+
+    public boolean hasPermission(String user) {
+        Boolean permission = permissions.get(user);
+        if (permission == null) {
+            LOOKUPS.incrementAndGet();
+            permission = !user.isEmpty();
+            permissions.put(user, permission);
+        }
+        return permission;
+    }
+
+    @PreDestroy
+    void destroy() {
+        DESTROYED.incrementAndGet();
+    }
+}
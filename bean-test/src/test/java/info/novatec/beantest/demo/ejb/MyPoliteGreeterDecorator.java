@@ -0,0 +1,45 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import javax.annotation.Priority;
+import javax.decorator.Decorator;
+import javax.decorator.Delegate;
+import javax.enterprise.inject.Any;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+
+/**
+ * Demo decorator of {@link MyGreeter}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Decorator
+@Priority(Interceptor.Priority.APPLICATION)
+public abstract class MyPoliteGreeterDecorator implements MyGreeter {
+
+    @Inject
+    @Delegate
+    @Any
+    MyGreeter delegate;
+
+    @Override
+    public String greet(String name) {
+        return delegate.greet(name) + ", nice to meet you";
+    }
+
+}
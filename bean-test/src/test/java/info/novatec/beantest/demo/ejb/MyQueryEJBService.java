@@ -0,0 +1,93 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.transactions.ReadOnly;
+import java.util.List;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Demo EJB Service with read-only business methods.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MyQueryEJBService {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @EJB
+    MyEJBService myEJBService;
+
+    @Inject
+    MyPermissionCache permissionCache;
+
+    /**
+     * Renames all the entities in a read-only transaction, so the new names are never written.
+     *
+     * @param name the new name.
+     */
+    @ReadOnly
+    public void renameAllEntitiesReadOnly(String name) {
+        for (MyEntity entity : getAllEntities()) {
+            entity.setName(name);
+        }
+    }
+
+    /**
+     * Calls a read-write business method from a read-only one.
+     */
+    @ReadOnly
+    public void persistAnEntityFromReadOnlyMethod() {
+        myEJBService.callOtherServiceAndPersistAnEntity();
+    }
+
+    /**
+     * Loads the entities in a read-only method and renames them in a read-write business method.
+     *
+     * @param name the new name.
+     */
+    @ReadOnly
+    public void renameLoadedEntitiesInReadWriteMethod(String name) {
+        myEJBService.renameEntities(getAllEntities(), name);
+    }
+
+    /**
+     * Checks the permission of the given user several times within one transaction.
+     *
+     * @param user the user.
+     * @param times the number of checks.
+     * @return <code>true</code> if the user has the permission.
+     */
+    public boolean checkPermission(String user, int times) {
+        boolean permission = false;
+        for (int i = 0; i < times; i++) {
+            permission = permissionCache.hasPermission(user);
+        }
+        return permission;
+    }
+
+    public List<MyEntity> getAllEntities() {
+        return entityManager.createQuery("Select E from MyEntity as E", MyEntity.class).getResultList();
+    }
+}
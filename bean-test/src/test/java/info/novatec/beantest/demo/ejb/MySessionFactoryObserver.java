@@ -0,0 +1,46 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+
+/**
+ * Session factory observer configured by a persistence unit, counting the session factories it has seen.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class MySessionFactoryObserver implements SessionFactoryObserver {
+
+    private static final long serialVersionUID = 1L;
+
+    static final AtomicInteger CREATED = new AtomicInteger();
+
+    static final AtomicInteger CLOSED = new AtomicInteger();
+
+    @Override
+    public void sessionFactoryCreated(SessionFactory factory) {
+        CREATED.incrementAndGet();
+    }
+
+    @Override
+    public void sessionFactoryClosed(SessionFactory factory) {
+        CLOSED.incrementAndGet();
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.ejb.EJB;
+import javax.ejb.SessionSynchronization;
+import javax.ejb.Stateless;
+
+/**
+ * Demo EJB Service which records the notifications about the transactions it takes part in.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+public class MySessionSynchronizationEJBService implements SessionSynchronization {
+
+    @EJB
+    MyOtherEJBService otherService;
+
+    private final List<String> notifications = new ArrayList<String>();
+
+    @Override
+    public void afterBegin() {
+        notifications.add("afterBegin");
+    }
+
+    @Override
+    public void beforeCompletion() {
+        notifications.add("beforeCompletion");
+    }
+
+    @Override
+    public void afterCompletion(boolean committed) {
+        notifications.add("afterCompletion:" + committed);
+    }
+
+    public void doSomething() {
+        otherService.doSomething();
+    }
+
+    public void fail() {
+        throw new IllegalStateException("Failed on purpose");
+    }
+
+    public List<String> getNotifications() {
+        return new ArrayList<String>(notifications);
+    }
+}
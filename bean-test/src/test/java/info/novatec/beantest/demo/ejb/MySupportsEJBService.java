@@ -0,0 +1,57 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.demo.entities.MyEntity;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+/**
+ * Demo EJB Service whose business methods support transactions without requiring them.
+ * <p>
+ * The attribute is declared on the class: Weld 2.1 copies method annotations with enum values into the bytecode of its
+ * intercepted subclasses with an invalid descriptor, which JDK 9 and later reject when the annotations are read.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class MySupportsEJBService {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * Checks whether the entities are loaded read-only.
+     *
+     * @return <code>true</code> if all the entities are loaded read-only.
+     */
+    public boolean areEntitiesLoadedReadOnly() {
+        Session session = entityManager.unwrap(Session.class);
+        for (MyEntity entity : entityManager.createQuery("Select E from MyEntity as E", MyEntity.class).getResultList()) {
+            if (!session.isReadOnly(entity)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
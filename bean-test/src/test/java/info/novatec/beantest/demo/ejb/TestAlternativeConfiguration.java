@@ -0,0 +1,40 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanTestConfiguration;
+import info.novatec.beantest.demo.mocks.StubExternalServicesProducer;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * This test verifies that alternatives declared via {@link BeanTestConfiguration} are enabled for the test class.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@BeanTestConfiguration(alternatives = StubExternalServicesProducer.class)
+public class TestAlternativeConfiguration extends BaseBeanTest {
+
+    @Test
+    public void shouldUseAlternativeProducer() {
+        MyEjbServiceThatCallsAnExternalService service = getBean(MyEjbServiceThatCallsAnExternalService.class);
+        assertThat(service.callExternalService(), is(StubExternalServicesProducer.STUB_RESPONSE));
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.concurrent.AsyncEvents;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.event.ObserverException;
+import org.junit.Test;
+
+/**
+ * This test verifies that the asynchronous observers are notified on the event threads, without blocking the firing
+ * thread, and that the test can await them.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestAsyncEvents extends BaseBeanTest {
+
+    @Test
+    public void shouldNotifyObserversOnEventThreads() throws InterruptedException {
+        MyAuditEJBService auditService = getBean(MyAuditEJBService.class);
+        List<MyAuditEvent> events = new ArrayList<MyAuditEvent>();
+        for (int i = 0; i < 5; i++) {
+            MyAuditEvent event = new MyAuditEvent("audit-" + i);
+            auditService.publish(event);
+            events.add(event);
+        }
+
+        assertThat(getBean(AsyncEvents.class).awaitQuiescence(10, TimeUnit.SECONDS), is(true));
+
+        for (MyAuditEvent event : events) {
+            assertThat(event.getObserverThread(), startsWith("bean-test-events-"));
+        }
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(5));
+    }
+
+    @Test
+    public void shouldNotBlockFiringThread() throws InterruptedException {
+        AsyncEvents asyncEvents = getBean(AsyncEvents.class);
+        CountDownLatch release = new CountDownLatch(1);
+
+        getBean(MyAuditEJBService.class).publish(new MyAuditEvent("blocked", false, release));
+
+        assertThat(asyncEvents.getPendingNotifications(), is(1));
+        assertThat(asyncEvents.awaitQuiescence(10, TimeUnit.MILLISECONDS), is(false));
+        release.countDown();
+        assertThat(asyncEvents.awaitQuiescence(10, TimeUnit.SECONDS), is(true));
+        assertThat(asyncEvents.getPendingNotifications(), is(0));
+    }
+
+    @Test
+    public void shouldRunNotificationOnEventThreadIfQueueIsFull() throws InterruptedException {
+        System.setProperty(AsyncEvents.THREADS_PROPERTY, "1");
+        System.setProperty(AsyncEvents.QUEUE_PROPERTY, "1");
+        try {
+            getBean(MyAuditEJBService.class).publish(new MyAuditEvent("cascading", 3));
+
+            // The only event thread fires three events into a queue with a single slot.
+            assertThat(getBean(AsyncEvents.class).awaitQuiescence(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            System.clearProperty(AsyncEvents.THREADS_PROPERTY);
+            System.clearProperty(AsyncEvents.QUEUE_PROPERTY);
+        }
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(4));
+    }
+
+    @Test(expected = ObserverException.class)
+    public void shouldRethrowObserverFailure() throws InterruptedException {
+        getBean(MyAuditEJBService.class).publish(new MyAuditEvent("failing", true, new CountDownLatch(0)));
+
+        getBean(AsyncEvents.class).awaitQuiescence(10, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import info.novatec.beantest.api.BeanTestSuite;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * Runs the bean tests grouped by their container configuration.
+ * <p>
+ * {@link TestAlternativeConfiguration} declares a different configuration than the other classes, so it runs either
+ * before or after them and the container is booted only twice.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@RunWith(BeanTestSuite.class)
+@SuiteClasses({
+    TestEJBInjection.class,
+    TestAlternativeConfiguration.class,
+    TestSingletonInjection.class,
+    TestNoRollbackException.class,
+    TestExternalServices.class,
+    TestPersistenceExceptionPropagation.class})
+public class TestBeanTestSuite {
+
+}
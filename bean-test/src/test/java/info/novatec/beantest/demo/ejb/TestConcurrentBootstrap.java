@@ -0,0 +1,114 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.producers.EntityManagerFactoryPrebuild;
+import info.novatec.beantest.startup.ConcurrentBootstrap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+import org.jboss.weld.bean.builtin.BeanManagerProxy;
+import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.bootstrap.spi.BootstrapConfiguration;
+import org.jboss.weld.executor.FixedThreadPoolExecutorServices;
+import org.jboss.weld.manager.api.ExecutorServices;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This test verifies that the container boots with the configured bootstrap threads and takes the entity manager
+ * factory which was built in parallel to the deployment validation.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestConcurrentBootstrap extends BaseBeanTest {
+
+    @BeforeClass
+    public static void configureBootstrap() {
+        ConcurrentBootstrap.setThreads(4);
+        ConcurrentBootstrap.setEntityManagerFactoryPrebuild(true);
+    }
+
+    @AfterClass
+    public static void resetBootstrap() {
+        ConcurrentBootstrap.setThreads(0);
+        ConcurrentBootstrap.setEntityManagerFactoryPrebuild(false);
+    }
+
+    @Test
+    public void shouldUsePrebuiltEntityManagerFactory() {
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        assertThat(EntityManagerFactoryPrebuild.isPending(), is(true));
+
+        myEJBService.callOtherServiceAndPersistAnEntity();
+
+        assertThat(EntityManagerFactoryPrebuild.isPending(), is(false));
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(1));
+    }
+
+    @Test
+    public void shouldDeployWithConfiguredThreads() {
+        getBean(MyEJBService.class);
+        ServiceRegistry services = BeanManagerProxy.unwrap(BeanProviderHelper.getInstance().getBeanManager()).getServices();
+
+        assertThat(services.get(BootstrapConfiguration.class).isConcurrentDeploymentEnabled(), is(true));
+        assertThat(services.get(ExecutorServices.class), instanceOf(FixedThreadPoolExecutorServices.class));
+        assertThat(((FixedThreadPoolExecutorServices) services.get(ExecutorServices.class)).getThreadPoolSize(), is(4));
+    }
+
+    @Test
+    public void shouldServeWeldConfiguration() throws IOException {
+        ClassLoader parent = getClass().getClassLoader();
+        ClassLoader bootClassLoader = ConcurrentBootstrap.getBootClassLoader(parent);
+
+        assertThat(load(bootClassLoader.getResource("org.jboss.weld.executor.properties")).getProperty("threadPoolSize"), is("4"));
+        assertThat(load(bootClassLoader.getResource("org.jboss.weld.bootstrap.properties")).getProperty("concurrentDeployment"), is("true"));
+        assertThat(bootClassLoader.getResource("META-INF/beans.xml"), is(parent.getResource("META-INF/beans.xml")));
+        assertThat(ConcurrentBootstrap.getApplicationClassLoader(bootClassLoader), is(parent));
+    }
+
+    @Test
+    public void shouldUseWeldDefaultsIfNotConfigured() {
+        ConcurrentBootstrap.setThreads(0);
+        try {
+            ClassLoader parent = getClass().getClassLoader();
+            assertThat(ConcurrentBootstrap.getBootClassLoader(parent), is(parent));
+        } finally {
+            ConcurrentBootstrap.setThreads(4);
+        }
+    }
+
+    private static Properties load(URL resource) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = resource.openStream();
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+}
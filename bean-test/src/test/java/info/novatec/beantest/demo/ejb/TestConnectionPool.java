@@ -0,0 +1,83 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.producers.ConnectionPool;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This test verifies that the entity manager factories take their connections from the shared connection pool.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestConnectionPool extends BaseBeanTest {
+
+    private static final String URL = "jdbc:derby:memory:myDB;create=true";
+
+    @BeforeClass
+    public static void enablePool() {
+        ConnectionPool.setEnabled(true);
+    }
+
+    @AfterClass
+    public static void disablePool() {
+        ConnectionPool.setEnabled(false);
+        ConnectionPool.closeAll();
+    }
+
+    @Test
+    public void shouldReuseConnections() {
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        for (int i = 0; i < 5; i++) {
+            myEJBService.callOtherServiceAndPersistAnEntity();
+        }
+
+        ConnectionPool pool = ConnectionPool.get(URL);
+        assertThat(pool, is(notNullValue()));
+        assertThat(pool.getCreatedConnections(), lessThan(pool.getAcquisitions()));
+        assertThat(pool.getIdleConnections(), greaterThan(0));
+    }
+
+    @Test
+    public void shouldResetReturnedConnections() throws SQLException {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        ConnectionPool pool = ConnectionPool.get(URL);
+
+        Connection connection = pool.getConnection();
+        connection.setAutoCommit(false);
+        connection.close();
+        assertThat(connection.isClosed(), is(true));
+
+        Connection reused = pool.getConnection();
+        try {
+            assertThat(reused.getAutoCommit(), is(true));
+        } finally {
+            reused.close();
+        }
+    }
+
+}
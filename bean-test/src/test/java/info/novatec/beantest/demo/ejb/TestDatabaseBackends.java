@@ -0,0 +1,161 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanTestConfiguration;
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.producers.DatabaseBackend;
+import info.novatec.beantest.producers.DatabaseBackends;
+import info.novatec.beantest.producers.DerbyBackend;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.H2Backend;
+import info.novatec.beantest.producers.HsqldbBackend;
+import info.novatec.beantest.producers.InMemoryDatabases;
+import info.novatec.beantest.producers.PersistenceUnitBackend;
+import info.novatec.beantest.producers.SchemaScriptCache;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.Test;
+
+/**
+ * This test verifies that the entity manager factories connect to the database of the configured backend, and that
+ * the databases of the backends are dropped once their last entity manager factory has been closed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@BeanTestConfiguration(database = H2Backend.class)
+public class TestDatabaseBackends extends BaseBeanTest {
+
+    private static final String PERSISTENCE_UNIT = "beanTestPU";
+
+    private static final String OBSERVED_PERSISTENCE_UNIT = "observedPU";
+
+    @Test
+    public void shouldUseTheDatabaseOfTheBackend() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(1));
+        EntityManagerFactory emf = getBean(EntityManagerProducer.class).getEntityManagerFactory();
+        assertThat((String) emf.getProperties().get("javax.persistence.jdbc.url"),
+                startsWith("jdbc:h2:mem:" + DatabaseBackends.getDatabaseName(PERSISTENCE_UNIT)));
+    }
+
+    @Test
+    public void shouldDropDerbyDatabase() {
+        verifyDatabaseIsDropped(DerbyBackend.class, "jdbc:derby:memory:" + DatabaseBackends.getDatabaseName(PERSISTENCE_UNIT));
+    }
+
+    @Test
+    public void shouldDropHsqldbDatabase() {
+        verifyDatabaseIsDropped(HsqldbBackend.class, "jdbc:hsqldb:mem:" + DatabaseBackends.getDatabaseName(PERSISTENCE_UNIT) + ";ifexists=true");
+    }
+
+    @Test
+    public void shouldNotifySessionFactoryObserverOfPersistenceUnit() {
+        verifySessionFactoryObserverIsNotified(H2Backend.class);
+        verifySessionFactoryObserverIsNotified(PersistenceUnitBackend.class);
+    }
+
+    @Test
+    public void shouldNotRegisterLifecycleObserverForDatabaseOutsideMemory() {
+        assertThat(DatabaseBackends.getProperties(PersistenceUnitBackend.class, "production-persistence-unit").isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldConfigureDerbyDatabaseInsteadOfSystemProperties() throws SQLException {
+        String databaseName = DatabaseBackends.getDatabaseName("derbyConfigurationPU");
+        new DerbyBackend().getProperties(databaseName);
+        try {
+            Connection connection = DriverManager.getConnection("jdbc:derby:memory:" + databaseName);
+            try {
+                Statement statement = connection.createStatement();
+                try {
+                    ResultSet resultSet = statement.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_DATABASE_PROPERTY('derby.locks.waitTimeout')");
+                    resultSet.next();
+                    assertThat(resultSet.getString(1), is("10"));
+                } finally {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+        } finally {
+            new DerbyBackend().drop(databaseName);
+        }
+        assertThat(System.getProperty("derby.locks.waitTimeout"), is(nullValue()));
+        assertThat(System.getProperty("derby.system.durability"), is(nullValue()));
+    }
+
+    private void verifySessionFactoryObserverIsNotified(Class<? extends DatabaseBackend> backend) {
+        int created = MySessionFactoryObserver.CREATED.get();
+        int closed = MySessionFactoryObserver.CLOSED.get();
+        EntityManagerFactory emf = SchemaScriptCache.createEntityManagerFactory(OBSERVED_PERSISTENCE_UNIT,
+                DatabaseBackends.getProperties(backend, OBSERVED_PERSISTENCE_UNIT));
+        try {
+            assertThat(MySessionFactoryObserver.CREATED.get(), is(created + 1));
+            assertThat(InMemoryDatabases.getDatabases(), hasItem(containsString(backend == H2Backend.class
+                    ? DatabaseBackends.getDatabaseName(OBSERVED_PERSISTENCE_UNIT) : "observedDB")));
+        } finally {
+            emf.close();
+        }
+        assertThat(MySessionFactoryObserver.CLOSED.get(), is(closed + 1));
+    }
+
+    private void verifyDatabaseIsDropped(Class<? extends DatabaseBackend> backend, String urlOfExistingDatabase) {
+        String databaseName = DatabaseBackends.getDatabaseName(PERSISTENCE_UNIT);
+        EntityManagerFactory first = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT,
+                DatabaseBackends.getProperties(backend, PERSISTENCE_UNIT));
+        EntityManagerFactory second = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT,
+                DatabaseBackends.getProperties(backend, PERSISTENCE_UNIT));
+        EntityManager em = first.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.persist(new MyEntity());
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        second.close();
+        assertThat(InMemoryDatabases.isInUse(backend, databaseName), is(true));
+        first.close();
+        assertThat(InMemoryDatabases.isInUse(backend, databaseName), is(false));
+        InMemoryDatabases.dropIdleDatabases(false);
+        assertThat(InMemoryDatabases.isTracked(backend, databaseName), is(false));
+        try {
+            DriverManager.getConnection(urlOfExistingDatabase, "SA", "").close();
+            fail("The database " + databaseName + " was not dropped");
+        } catch (SQLException expected) {
+            // The database doesn't exist anymore.
+        }
+    }
+
+}
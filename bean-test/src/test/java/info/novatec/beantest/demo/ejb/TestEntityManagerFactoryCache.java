@@ -0,0 +1,67 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.entities.MyEntityWithConstraints;
+import info.novatec.beantest.producers.EntityManagerFactoryCache;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This test verifies that the data is deleted after each test when the entity manager factory is cached.
+ * <p>
+ * Both tests save an entity with the same unique value, so the second one would fail if the data of the first one
+ * were still present.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestEntityManagerFactoryCache extends BaseBeanTest {
+
+    @BeforeClass
+    public static void enableCache() {
+        EntityManagerFactoryCache.setEnabled(true);
+    }
+
+    @AfterClass
+    public static void disableCache() {
+        EntityManagerFactoryCache.setEnabled(false);
+        EntityManagerFactoryCache.clear();
+    }
+
+    @Test
+    public void shouldSaveEntity() {
+        saveEntityAndVerifyItIsTheOnlyOne();
+    }
+
+    @Test
+    public void shouldSaveSameEntityAgain() {
+        saveEntityAndVerifyItIsTheOnlyOne();
+    }
+
+    private void saveEntityAndVerifyItIsTheOnlyOne() {
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        myEJBService.save(new MyEntityWithConstraints("unique"));
+        myEJBService.callOtherServiceAndPersistAnEntity();
+
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(1));
+    }
+
+}
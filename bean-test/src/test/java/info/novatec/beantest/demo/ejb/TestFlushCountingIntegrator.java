@@ -0,0 +1,73 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.ContainerConfiguration;
+import info.novatec.beantest.producers.FlushCountingIntegrator;
+import java.util.Collections;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEventListener;
+import org.junit.Test;
+
+/**
+ * This test verifies that the flush counting only integrates into the session factories which enable it, and keeps
+ * the configured flush listeners.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestFlushCountingIntegrator {
+
+    @Test
+    public void shouldNotChangeListenersOfOtherSessionFactories() {
+        assertThat(hasCountingListener(Collections.<String, String> emptyMap()), is(false));
+    }
+
+    @Test
+    public void shouldAddListenersIfEnabled() {
+        assertThat(hasCountingListener(Collections.singletonMap(FlushCountingIntegrator.ENABLED_PROPERTY, "true")), is(true));
+    }
+
+    private static boolean hasCountingListener(Map<String, String> properties) {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(ContainerConfiguration.DEFAULT_PERSISTENCE_UNIT, properties);
+        try {
+            SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) ((HibernateEntityManagerFactory) emf).getSessionFactory();
+            boolean counting = false;
+            boolean configured = false;
+            for (FlushEventListener listener : sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class)
+                    .getEventListenerGroup(EventType.FLUSH).listeners()) {
+                if (listener.getClass().getName().startsWith(FlushCountingIntegrator.class.getName())) {
+                    counting = true;
+                } else {
+                    configured = true;
+                }
+            }
+            assertThat("configured flush listener kept", configured, is(true));
+            return counting;
+        } finally {
+            emf.close();
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.producers.DerbyBackend;
+import info.novatec.beantest.producers.InMemoryDatabases;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * This test verifies that the in-memory database of the persistence unit is tracked while it is used and dropped when
+ * the container is shut down.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestInMemoryDatabases extends BaseBeanTest {
+
+    private static final String DATABASE_NAME = "myDB";
+
+    @After
+    public void disableHeapReport() {
+        InMemoryDatabases.setHeapReport(false);
+    }
+
+    @Test
+    public void shouldDropDatabaseOfPersistenceUnitAtShutdown() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        assertThat(InMemoryDatabases.isInUse(DerbyBackend.class, DATABASE_NAME), is(true));
+        long droppedDatabases = InMemoryDatabases.getDroppedDatabases();
+
+        BeanProviderHelper.getInstance().shutdown();
+
+        assertThat(InMemoryDatabases.isTracked(DerbyBackend.class, DATABASE_NAME), is(false));
+        assertThat(InMemoryDatabases.getDroppedDatabases(), is(droppedDatabases + 1));
+        try {
+            DriverManager.getConnection("jdbc:derby:memory:" + DATABASE_NAME).close();
+            fail("The database " + DATABASE_NAME + " was not dropped");
+        } catch (SQLException expected) {
+            // The database doesn't exist anymore.
+        }
+    }
+
+    @Test
+    public void shouldReportReclaimedHeap() {
+        InMemoryDatabases.setHeapReport(true);
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        for (int i = 0; i < 200; i++) {
+            myEJBService.callOtherServiceAndPersistAnEntity();
+        }
+        long reclaimedHeap = InMemoryDatabases.getReclaimedHeap();
+
+        BeanProviderHelper.getInstance().shutdown();
+
+        assertThat(InMemoryDatabases.getReclaimedHeap(), greaterThan(reclaimedHeap));
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanTestConfiguration;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.JpaProfile;
+import info.novatec.beantest.transactions.TransactionMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This test verifies that the performance profile enables JDBC batching and keeps the changes visible to queries.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@BeanTestConfiguration(jpaProfile = JpaProfile.PERFORMANCE)
+public class TestJpaPerformanceProfile extends BaseBeanTest {
+
+    @Before
+    public void resetMetrics() {
+        TransactionMetrics.reset();
+    }
+
+    @Test
+    public void shouldEnableJdbcBatching() {
+        Object batchSize = getBean(EntityManagerProducer.class).getEntityManagerFactory().getProperties().get("hibernate.jdbc.batch_size");
+
+        assertThat(batchSize, is((Object) "50"));
+    }
+
+    @Test
+    public void shouldFlushBeforeQueryOnChangedTable() {
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        myEJBService.callOtherServiceAndPersistAnEntity();
+
+        assertThat(myEJBService.renameAllEntities("renamed"), is(1L));
+        // Before the query; nothing is left to flush on commit.
+        assertThat(TransactionMetrics.get(MyEJBService.class, "renameAllEntities").get(0).getFlushes(), is(1L));
+    }
+
+}
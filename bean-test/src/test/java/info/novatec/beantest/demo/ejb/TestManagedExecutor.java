@@ -0,0 +1,123 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.concurrent.ManagedExecutor;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.SharedEntityManagerFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.Test;
+
+/**
+ * This test verifies that the tasks of the managed executor run in their own request contexts with the entity manager
+ * factory of the test, if the test has created one, and keep it open until they have completed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestManagedExecutor extends BaseBeanTest {
+
+    @Test
+    public void shouldPersistChunksOnWorkerThreads() throws InterruptedException, ExecutionException {
+        assertThat(getBean(MyBatchEJBService.class).persistInParallel(4, 5), everyItem(startsWith("bean-test-executor-")));
+
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(20));
+    }
+
+    @Test
+    public void shouldShareEntityManagerFactoryButNotEntityManager() throws InterruptedException, ExecutionException {
+        final EntityManagerProducer producer = getBean(EntityManagerProducer.class);
+        final MyBatchEJBService batchService = getBean(MyBatchEJBService.class);
+        ManagedExecutor executor = getBean(ManagedExecutor.class);
+        EntityManagerFactory emf = producer.getEntityManagerFactory();
+
+        EntityManagerFactory workerEmf = executor.submit(new Callable<EntityManagerFactory>() {
+
+            @Override
+            public EntityManagerFactory call() {
+                return producer.getEntityManagerFactory();
+            }
+        }).get();
+        // The bean reference of the test resolves to the bean instance of the worker's request context.
+        Object workerSession = executor.submit(new Callable<Object>() {
+
+            @Override
+            public Object call() {
+                return batchService.getSession();
+            }
+        }).get();
+
+        assertThat(workerEmf, is(sameInstance(emf)));
+        assertThat(workerSession, is(not(sameInstance(batchService.getSession()))));
+    }
+
+    @Test
+    public void shouldKeepEntityManagerFactoryOpenUntilTasksHaveCompleted() throws InterruptedException, ExecutionException {
+        EntityManagerFactory emf = getBean(EntityManagerProducer.class).getEntityManagerFactory();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Future<?> task = getBean(ManagedExecutor.class).submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws InterruptedException {
+                release.await();
+                return null;
+            }
+        });
+
+        assertThat(SharedEntityManagerFactory.getRetainingTasks(emf), is(1));
+        release.countDown();
+        task.get();
+        // The task releases the entity manager factory after its request context has been stopped.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (SharedEntityManagerFactory.getRetainingTasks(emf) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(SharedEntityManagerFactory.getRetainingTasks(emf), is(0));
+    }
+
+    @Test
+    public void shouldNotCreateEntityManagerFactoryToShareIt() throws InterruptedException, ExecutionException {
+        getBean(ManagedExecutor.class).submit(new Callable<String>() {
+
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        }).get();
+
+        BeanManager beanManager = getBean(BeanManager.class);
+        Bean<?> producerBean = beanManager.resolve(beanManager.getBeans(EntityManagerProducer.class));
+        assertThat(beanManager.getContext(RequestScoped.class).get(producerBean), is(nullValue()));
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.entities.MyEntity;
+import org.junit.Test;
+
+/**
+ * This test verifies the default persistence context strategy, which clears the persistence context after every
+ * transaction, and its override by a bean.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestPersistenceContextStrategy extends BaseBeanTest {
+
+    @Test
+    public void shouldClearPersistenceContextAfterTransaction() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        MyOtherEJBService myOtherEJBService = getBean(MyOtherEJBService.class);
+        MyEntity entity = myOtherEJBService.getAllEntities().iterator().next();
+
+        assertThat(myOtherEJBService.isManaged(entity), is(false));
+    }
+
+    @Test
+    public void shouldKeepEntityManager() {
+        MyOtherEJBService myOtherEJBService = getBean(MyOtherEJBService.class);
+        Object delegate = myOtherEJBService.getEntityManagerDelegate();
+
+        assertThat(myOtherEJBService.getEntityManagerDelegate(), is(sameInstance(delegate)));
+    }
+
+    @Test
+    public void shouldKeepPersistenceContextOfBeanWithExtendedStrategy() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        MyExtendedContextEJBService service = getBean(MyExtendedContextEJBService.class);
+        MyEntity entity = service.getAllEntities().iterator().next();
+
+        assertThat(service.isManaged(entity), is(true));
+        assertThat(service.getAllEntities().iterator().next(), is(sameInstance(entity)));
+    }
+
+}
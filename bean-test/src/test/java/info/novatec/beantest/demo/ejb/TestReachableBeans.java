@@ -0,0 +1,74 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.api.BeanTestConfiguration;
+import info.novatec.beantest.extension.BeanTestExtension;
+import java.util.ArrayList;
+import java.util.List;
+import javax.enterprise.inject.spi.ObserverMethod;
+import org.junit.Test;
+
+/**
+ * This test verifies that only the beans reachable from the test class are deployed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@BeanTestConfiguration(reachableBeansOnly = true)
+public class TestReachableBeans extends BaseBeanTest {
+
+    @Test
+    public void shouldDeployTransitivelyInjectedBeans() {
+        assertThat(getBean(MyQueryEJBService.class).checkPermission("user", 2), is(true));
+        assertThat(BeanProviderHelper.getInstance().getBeanManager().getBeans(MyOtherEJBService.class), is(not(empty())));
+    }
+
+    @Test
+    public void shouldPruneUnreachableBeans() {
+        // Class literals would make the beans reachable, hence their names.
+        List<String> prunedClassNames = new ArrayList<String>();
+        for (Class<?> prunedType : getBean(BeanTestExtension.class).getPrunedTypes()) {
+            prunedClassNames.add(prunedType.getName());
+        }
+
+        assertThat(prunedClassNames, hasItems("info.novatec.beantest.demo.ejb.MyCountryEJBService",
+                "info.novatec.beantest.demo.ejb.MyOrderEJBService"));
+        assertThat(prunedClassNames, not(hasItem(MyEJBService.class.getName())));
+    }
+
+    @Test
+    public void shouldDeployBeansOnlyReachedByEvents() {
+        // MyAuditLog observes the event, MyAuditEJBService observes it asynchronously, neither is injected anywhere.
+        List<String> observerClassNames = new ArrayList<String>();
+        for (ObserverMethod<?> observerMethod : BeanProviderHelper.getInstance().getBeanManager()
+                .resolveObserverMethods(new MyAuditEvent("audit"))) {
+            observerClassNames.add(observerMethod.getBeanClass().getName());
+        }
+
+        assertThat(observerClassNames, hasItems("info.novatec.beantest.demo.ejb.MyAuditLog",
+                "info.novatec.beantest.demo.ejb.MyAuditEJBService"));
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanTestConfiguration;
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.demo.entities.MyUnusedEntity;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.metamodel.EntityType;
+import org.junit.Test;
+
+/**
+ * This test verifies that a persistence unit without class entries keeps its scanned entities, although only the
+ * reachable entities should be mapped.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@BeanTestConfiguration(persistenceUnit = "scannedPU", reachableEntitiesOnly = true)
+public class TestReachableEntitiesOfScannedPersistenceUnit extends BaseBeanTest {
+
+    @Test
+    public void shouldMapAllEntitiesIfPersistenceUnitListsNoClasses() {
+        List<Class<?>> entityClasses = new ArrayList<Class<?>>();
+        for (EntityType<?> entityType : getBean(EntityManagerProducer.class).getEntityManagerFactory().getMetamodel().getEntities()) {
+            entityClasses.add(entityType.getJavaType());
+        }
+
+        assertThat(entityClasses, hasItems((Class<?>) MyEntity.class, MyUnusedEntity.class));
+    }
+
+}
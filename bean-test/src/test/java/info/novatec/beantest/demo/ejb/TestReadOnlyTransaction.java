@@ -0,0 +1,87 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.transactions.MethodMetrics;
+import info.novatec.beantest.transactions.TransactionMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This test verifies that read-only business methods are neither flushed nor committed.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestReadOnlyTransaction extends BaseBeanTest {
+
+    @Before
+    public void persistEntityAndResetMetrics() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        TransactionMetrics.reset();
+    }
+
+    @Test
+    public void shouldDiscardChangesOfReadOnlyMethod() {
+        MyQueryEJBService queryService = getBean(MyQueryEJBService.class);
+        queryService.renameAllEntitiesReadOnly("renamed");
+
+        for (MyEntity entity : queryService.getAllEntities()) {
+            assertThat(entity.getName(), is("Hello"));
+        }
+        MethodMetrics metrics = TransactionMetrics.get(MyQueryEJBService.class, "renameAllEntitiesReadOnly").get(0);
+        assertThat(metrics.getCommits(), is(0L));
+        assertThat(metrics.getReadOnlyCompletions(), is(1L));
+        assertThat(metrics.getFlushes(), is(0L));
+    }
+
+    @Test
+    public void shouldLoadEntitiesReadOnlyForSupportsAttribute() {
+        assertThat(getBean(MySupportsEJBService.class).areEntitiesLoadedReadOnly(), is(true));
+    }
+
+    @Test
+    public void shouldLoadEntitiesForUpdateInReadWriteTransaction() {
+        getBean(MySupportsEJBService.class).areEntitiesLoadedReadOnly();
+
+        assertThat(getBean(MyEJBService.class).renameAllEntities("renamed"), is(1L));
+    }
+
+    @Test
+    public void shouldCommitWhenReadOnlyMethodCallsReadWriteMethod() {
+        MyQueryEJBService queryService = getBean(MyQueryEJBService.class);
+        queryService.persistAnEntityFromReadOnlyMethod();
+
+        assertThat(queryService.getAllEntities(), hasSize(2));
+        assertThat(TransactionMetrics.get(MyQueryEJBService.class, "persistAnEntityFromReadOnlyMethod").get(0).getCommits(), is(1L));
+    }
+
+    @Test
+    public void shouldFlushChangesOfReadWriteMethodToEntitiesLoadedReadOnly() {
+        MyQueryEJBService queryService = getBean(MyQueryEJBService.class);
+        queryService.renameLoadedEntitiesInReadWriteMethod("renamed");
+
+        for (MyEntity entity : queryService.getAllEntities()) {
+            assertThat(entity.getName(), is("renamed"));
+        }
+    }
+
+}
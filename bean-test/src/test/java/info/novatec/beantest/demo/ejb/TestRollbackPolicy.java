@@ -0,0 +1,110 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.demo.exceptions.MyCheckedException;
+import info.novatec.beantest.demo.exceptions.MyException;
+import info.novatec.beantest.demo.exceptions.MyRollbackException;
+import info.novatec.beantest.transactions.RollbackPolicy;
+import java.rmi.RemoteException;
+import javax.ejb.ApplicationException;
+import javax.persistence.NoResultException;
+import org.junit.Test;
+
+/**
+ * This test verifies that exceptions cause a rollback according to the EJB rules for application and system
+ * exceptions.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestRollbackPolicy extends BaseBeanTest {
+
+    @Test
+    public void shouldCommitWhenCheckedExceptionIsThrown() {
+        assertEntitiesAfterException(new MyCheckedException("checked"), 1);
+    }
+
+    @Test
+    public void shouldRollbackWhenApplicationExceptionRequiresIt() {
+        assertEntitiesAfterException(new MyRollbackException("rollback"), 0);
+    }
+
+    @Test
+    public void shouldRollbackWhenRuntimeExceptionIsThrown() {
+        assertEntitiesAfterException(new MyException("runtime"), 0);
+    }
+
+    @Test
+    public void shouldInheritApplicationException() {
+        RollbackPolicy rollbackPolicy = getBean(RollbackPolicy.class);
+        assertThat(rollbackPolicy.shouldRollback(new MyInheritedRollbackException()), is(true));
+        assertThat(rollbackPolicy.shouldRollback(new MyInheritedRollbackException()), is(true));
+    }
+
+    @Test
+    public void shouldNotInheritApplicationExceptionWithInheritedFalse() {
+        RollbackPolicy rollbackPolicy = getBean(RollbackPolicy.class);
+        assertThat(rollbackPolicy.shouldRollback(new MyNotInheritedException()), is(false));
+        assertThat(rollbackPolicy.shouldRollback(new MySubclassOfNotInheritedException()), is(true));
+    }
+
+    @Test
+    public void shouldNotRollbackSubclassOfNoRollbackPersistenceException() {
+        assertThat(getBean(RollbackPolicy.class).shouldRollback(new MyNoResultException()), is(false));
+    }
+
+    @Test
+    public void shouldRollbackRemoteException() {
+        assertThat(getBean(RollbackPolicy.class).shouldRollback(new RemoteException()), is(true));
+    }
+
+    private void assertEntitiesAfterException(Exception exception, int expectedEntities) {
+        MyEntity entity = new MyEntity();
+        entity.setName("some name");
+        try {
+            getBean(MyEJBService.class).saveEntityAndThrow(entity, exception);
+            fail("Exception expected");
+        } catch (Exception e) {
+            assertThat(e, is(exception));
+        }
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(expectedEntities));
+    }
+
+    private static class MyInheritedRollbackException extends MyRollbackException {
+
+        MyInheritedRollbackException() {
+            super("inherited");
+        }
+    }
+
+    @ApplicationException(inherited = false)
+    private static class MyNotInheritedException extends RuntimeException {
+    }
+
+    private static class MySubclassOfNotInheritedException extends MyNotInheritedException {
+    }
+
+    private static class MyNoResultException extends NoResultException {
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.producers.SchemaScriptCache;
+import java.io.File;
+import java.util.Collections;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This test verifies that the schema is created from a cached DDL script, which is generated once per mapping.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestSchemaScriptCache extends BaseBeanTest {
+
+    private static final String PERSISTENCE_UNIT = "beanTestPU";
+
+    private static File previousDirectory;
+
+    @BeforeClass
+    public static void enableCache() {
+        previousDirectory = SchemaScriptCache.getDirectory();
+        SchemaScriptCache.setDirectory(new File("target/test-ddl-cache"));
+        SchemaScriptCache.setEnabled(true);
+    }
+
+    @Before
+    public void deleteScripts() {
+        for (File file : SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT)) {
+            file.delete();
+        }
+    }
+
+    @AfterClass
+    public static void disableCache() {
+        SchemaScriptCache.setEnabled(false);
+        SchemaScriptCache.setDirectory(previousDirectory);
+    }
+
+    @Test
+    public void shouldReplayCachedScriptForNewEntityManagerFactory() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        assertThat(SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT), hasSize(1));
+        File scriptFile = SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT).get(0);
+        long lastModified = scriptFile.lastModified();
+
+        EntityManagerFactory emf = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT, Collections.<String, String> emptyMap());
+        try {
+            // The schema has been created again, so the entity of the first factory is gone.
+            assertThat(countEntities(emf), is(0L));
+        } finally {
+            emf.close();
+        }
+        assertThat(SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT), hasSize(1));
+        assertThat(scriptFile.lastModified(), is(lastModified));
+    }
+
+    @Test
+    public void shouldGenerateNewScriptWhenSettingsChange() {
+        EntityManagerFactory emf = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT, Collections.<String, String> emptyMap());
+        emf.close();
+        int scriptCount = SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT).size();
+
+        emf = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT, Collections.singletonMap("hibernate.default_batch_fetch_size", "16"));
+        emf.close();
+
+        assertThat(SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT), hasSize(scriptCount + 1));
+    }
+
+    @Test
+    public void shouldReuseScriptForOtherDatabase() {
+        EntityManagerFactory emf = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT, Collections.<String, String> emptyMap());
+        emf.close();
+        int scriptCount = SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT).size();
+
+        emf = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT,
+                Collections.singletonMap("javax.persistence.jdbc.url", "jdbc:derby:memory:otherWorkerDB;create=true"));
+        emf.close();
+
+        assertThat(SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT), hasSize(scriptCount));
+    }
+
+    @Test
+    public void shouldKeepSchemaIfPersistenceUnitDoesNotCreateIt() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        int scriptCount = SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT).size();
+
+        EntityManagerFactory emf = SchemaScriptCache.createEntityManagerFactory(PERSISTENCE_UNIT, Collections.singletonMap("hibernate.hbm2ddl.auto", "update"));
+        try {
+            assertThat(countEntities(emf), is(1L));
+        } finally {
+            emf.close();
+        }
+        assertThat(SchemaScriptCache.getScriptFiles(PERSISTENCE_UNIT), hasSize(scriptCount));
+    }
+
+    private static long countEntities(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("Select count(e) from " + MyEntity.class.getSimpleName() + " as e", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+}
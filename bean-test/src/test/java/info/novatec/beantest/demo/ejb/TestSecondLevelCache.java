@@ -0,0 +1,89 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.demo.entities.MyCountry;
+import info.novatec.beantest.producers.EntityManagerFactoryCache;
+import info.novatec.beantest.producers.EntityManagerProducer;
+import info.novatec.beantest.producers.SecondLevelCache;
+import info.novatec.beantest.producers.SecondLevelCacheReport;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This test verifies that the cached entity manager factories use the second-level cache, and that only the regions
+ * of the tables modified by a test are evicted afterwards.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestSecondLevelCache extends BaseBeanTest {
+
+    @BeforeClass
+    public static void enableCache() {
+        EntityManagerFactoryCache.setEnabled(true);
+        SecondLevelCache.setEnabled(true);
+    }
+
+    @AfterClass
+    public static void disableCache() {
+        SecondLevelCache.setEnabled(false);
+        EntityManagerFactoryCache.setEnabled(false);
+        EntityManagerFactoryCache.clear();
+    }
+
+    @Test
+    public void shouldFindEntityInSecondLevelCache() {
+        MyCountryEJBService countryService = getBean(MyCountryEJBService.class);
+        countryService.saveCountry("DE", "Germany");
+        // A new session, so that the entity put into the cache by the save is readable.
+        getBean(EntityManagerProducer.class).renewEntityManager();
+
+        assertThat(countryService.findCountry("DE").getName(), is("Germany"));
+        assertThat(getStatistics().getSecondLevelCacheHitCount(), greaterThan(0L));
+    }
+
+    @Test
+    public void shouldEvictRegionsOfModifiedTablesOnly() {
+        getBean(MyCountryEJBService.class).saveCountry("FR", "France");
+        BeanProviderHelper.getInstance().shutdown();
+
+        SecondLevelCacheReport report = SecondLevelCache.getLastReport();
+        assertThat(report.getPuts(), greaterThan(0L));
+        assertThat(report.getEvictedRegions(), contains(MyCountry.class.getName()));
+
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        BeanProviderHelper.getInstance().shutdown();
+
+        assertThat(SecondLevelCache.getLastReport().getEvictedRegions(), is(empty()));
+    }
+
+    private Statistics getStatistics() {
+        return ((HibernateEntityManagerFactory) getBean(EntityManagerProducer.class).getEntityManagerFactory()).getSessionFactory()
+                .getStatistics();
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.impact.TestImpactAnalysis;
+import info.novatec.beantest.impact.TestImpactAnalysis.Mode;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+/**
+ * This test verifies that the classes exercised by a test class are recorded and that unaffected test classes are
+ * skipped.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestTestImpactSelection {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void enableSelection() {
+        directory = TestImpactAnalysis.getDirectory();
+        TestImpactAnalysis.setDirectory(folder.getRoot());
+        TestImpactAnalysis.setMode(Mode.SELECT);
+    }
+
+    @After
+    public void disableSelection() {
+        TestImpactAnalysis.setMode(Mode.OFF);
+        TestImpactAnalysis.setDirectory(directory);
+    }
+
+    @Test
+    public void shouldRecordTransitivelyExercisedClasses() {
+        assertThat(JUnitCore.runClasses(ImpactSampleTest.class).wasSuccessful(), is(true));
+
+        Map<String, Long> checksums = TestImpactAnalysis.getRecordedChecksums(ImpactSampleTest.class);
+        assertThat(checksums, hasKey(ImpactSampleTest.class.getName()));
+        assertThat(checksums, hasKey(MyEJBService.class.getName()));
+        assertThat(checksums, hasKey(MyOtherEJBService.class.getName()));
+        assertThat(checksums, hasKey(MyEntity.class.getName()));
+        assertThat(checksums, not(hasKey("info.novatec.beantest.demo.ejb.MyCountryEJBService")));
+    }
+
+    @Test
+    public void shouldSkipUnaffectedTestClasses() throws IOException {
+        JUnitCore.runClasses(ImpactSampleTest.class);
+
+        Result result = JUnitCore.runClasses(ImpactSampleTest.class);
+
+        assertThat(result.getRunCount(), is(0));
+        assertThat(TestImpactAnalysis.isAffected(ImpactSampleTest.class), is(false));
+    }
+
+    @Test
+    public void shouldRunTestClassesAffectedByChange() throws IOException {
+        JUnitCore.runClasses(ImpactSampleTest.class);
+
+        File file = new File(folder.getRoot(), ImpactSampleTest.class.getName() + ".properties");
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        // Simulates a modification of a transitively injected bean.
+        properties.setProperty(MyOtherEJBService.class.getName(), "0");
+        OutputStream output = new FileOutputStream(file);
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+
+        assertThat(TestImpactAnalysis.isAffected(ImpactSampleTest.class), is(true));
+        assertThat(JUnitCore.runClasses(ImpactSampleTest.class).getRunCount(), is(1));
+    }
+
+    @Test
+    public void shouldRecordObserversOfFiredEventsAndDecorators() {
+        assertThat(JUnitCore.runClasses(ImpactEventSampleTest.class).wasSuccessful(), is(true));
+
+        // Class names instead of class literals, which would make the sample refer to the classes via this class.
+        Map<String, Long> checksums = TestImpactAnalysis.getRecordedChecksums(ImpactEventSampleTest.class);
+        assertThat(checksums, hasKey("info.novatec.beantest.demo.ejb.MyAuditLog"));
+        assertThat(checksums, hasKey("info.novatec.beantest.demo.ejb.MyGreeterBean"));
+        assertThat(checksums, hasKey("info.novatec.beantest.demo.ejb.MyPoliteGreeterDecorator"));
+    }
+
+    @Test
+    public void shouldRunAllTestClassesIfClassWasAddedToBeanArchive() throws IOException, URISyntaxException {
+        JUnitCore.runClasses(ImpactSampleTest.class);
+        File beanArchive = new File(getClass().getResource("/META-INF/beans.xml").toURI()).getParentFile().getParentFile();
+        File addedClass = new File(beanArchive, "info/novatec/beantest/demo/ejb/MyAddedBean.class");
+
+        assertThat(addedClass.createNewFile(), is(true));
+        try {
+            assertThat(TestImpactAnalysis.isAffected(ImpactSampleTest.class), is(true));
+        } finally {
+            addedClass.delete();
+        }
+        assertThat(TestImpactAnalysis.isAffected(ImpactSampleTest.class), is(false));
+    }
+
+    /**
+     * Test class whose graph is recorded.
+     */
+    public static class ImpactSampleTest extends BaseBeanTest {
+
+        @Test
+        public void shouldPersistEntity() {
+            getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+        }
+    }
+
+    /**
+     * Test class which fires an event and calls a decorated bean.
+     */
+    public static class ImpactEventSampleTest extends BaseBeanTest {
+
+        @Test
+        public void shouldAuditAndGreet() {
+            getBean(MyAuditEJBService.class).publish(new MyAuditEvent("impact"));
+
+            assertThat(getBean(MyGreeter.class).greet("Bob"), is("Hello Bob, nice to meet you"));
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.demo.entities.MyEntity;
+import info.novatec.beantest.demo.exceptions.MyException;
+import info.novatec.beantest.transactions.MethodMetrics;
+import info.novatec.beantest.transactions.TransactionMetrics;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This test verifies that the transactional interceptor records calls, commits and rollbacks per method.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestTransactionMetrics extends BaseBeanTest {
+
+    @Before
+    public void resetMetrics() {
+        TransactionMetrics.reset();
+    }
+
+    @Test
+    public void shouldRecordCommitsOfTheOutermostMethod() {
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        myEJBService.callOtherServiceAndPersistAnEntity();
+        myEJBService.callOtherServiceAndPersistAnEntity();
+
+        MethodMetrics outer = getMetrics(MyEJBService.class, "callOtherServiceAndPersistAnEntity");
+        assertThat(outer.getCalls(), is(2L));
+        assertThat(outer.getCommits(), is(2L));
+        assertThat(outer.getRollbacks(), is(0L));
+        assertThat(outer.getTotalTime(TimeUnit.NANOSECONDS), greaterThan(outer.getBusinessTime(TimeUnit.NANOSECONDS)));
+
+        MethodMetrics nested = getMetrics(MyOtherEJBService.class, "doSomething");
+        assertThat(nested.getCalls(), is(2L));
+        assertThat(nested.getCommits(), is(0L));
+    }
+
+    @Test
+    public void shouldCountAutomaticFlushBeforeQuery() {
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        myEJBService.callOtherServiceAndPersistAnEntity();
+
+        assertThat(myEJBService.renameAllEntities("renamed"), is(1L));
+        // Before the query; nothing is left to flush on commit.
+        assertThat(getMetrics(MyEJBService.class, "renameAllEntities").getFlushes(), is(1L));
+    }
+
+    @Test
+    public void shouldRecordRollbacksAndErrors() {
+        try {
+            getBean(MyEJBService.class).attemptToSaveEntityAndThrowException(new MyEntity());
+            fail("MyException expected");
+        } catch (MyException e) {
+            // Expected.
+        }
+
+        MethodMetrics outer = getMetrics(MyEJBService.class, "attemptToSaveEntityAndThrowException");
+        assertThat(outer.getErrors(), is(1L));
+        assertThat(outer.getRollbacks(), is(1L));
+        assertThat(outer.getCommits(), is(0L));
+        assertThat(getMetrics(MyOtherEJBService.class, "throwException").getErrors(), is(1L));
+    }
+
+    private static MethodMetrics getMetrics(Class<?> beanClass, String methodName) {
+        List<MethodMetrics> metrics = TransactionMetrics.get(beanClass, methodName);
+        assertThat(metrics, hasSize(1));
+        return metrics.get(0);
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import javax.enterprise.context.ContextNotActiveException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This test verifies that transaction scoped beans live as long as the outermost transaction.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestTransactionScoped extends BaseBeanTest {
+
+    @Before
+    public void resetCounters() {
+        MyPermissionCache.LOOKUPS.set(0);
+        MyPermissionCache.DESTROYED.set(0);
+    }
+
+    @Test
+    public void shouldShareInstanceWithinTransaction() {
+        assertThat(getBean(MyQueryEJBService.class).checkPermission("user", 3), is(true));
+
+        assertThat(MyPermissionCache.LOOKUPS.get(), is(1));
+        assertThat(MyPermissionCache.DESTROYED.get(), is(1));
+    }
+
+    @Test
+    public void shouldCreateNewInstanceForEveryTransaction() {
+        MyQueryEJBService queryService = getBean(MyQueryEJBService.class);
+        queryService.checkPermission("user", 2);
+        queryService.checkPermission("user", 2);
+
+        assertThat(MyPermissionCache.LOOKUPS.get(), is(2));
+        assertThat(MyPermissionCache.DESTROYED.get(), is(2));
+    }
+
+    @Test(expected = ContextNotActiveException.class)
+    public void shouldNotBeActiveOutsideOfTransaction() {
+        getBean(MyPermissionCache.class).hasPermission("user");
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.api.BeanTestConfiguration;
+import info.novatec.beantest.transactions.PersistenceContextStrategy;
+import org.junit.Test;
+
+/**
+ * This test verifies that every transaction gets a new entity manager with the transaction scoped persistence context
+ * strategy.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@BeanTestConfiguration(persistenceContext = PersistenceContextStrategy.TRANSACTION)
+public class TestTransactionScopedPersistenceContext extends BaseBeanTest {
+
+    @Test
+    public void shouldUseNewEntityManagerForEveryTransaction() {
+        MyOtherEJBService myOtherEJBService = getBean(MyOtherEJBService.class);
+        Object delegate = myOtherEJBService.getEntityManagerDelegate();
+
+        assertThat(myOtherEJBService.getEntityManagerDelegate(), is(not(sameInstance(delegate))));
+    }
+
+    @Test
+    public void shouldSeeDataOfPreviousTransactions() {
+        MyEJBService myEJBService = getBean(MyEJBService.class);
+        myEJBService.callOtherServiceAndPersistAnEntity();
+        myEJBService.callOtherServiceAndPersistAnEntity();
+
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), hasSize(2));
+    }
+
+}
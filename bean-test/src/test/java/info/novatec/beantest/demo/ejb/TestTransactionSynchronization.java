@@ -0,0 +1,101 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import info.novatec.beantest.api.BaseBeanTest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.transaction.Status;
+import javax.transaction.TransactionSynchronizationRegistry;
+import org.junit.Test;
+
+/**
+ * This test verifies that transaction synchronizations are notified about the completion of the transactions.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestTransactionSynchronization extends BaseBeanTest {
+
+    @Test
+    public void shouldPublishBatchAfterCommit() {
+        List<List<String>> published = new ArrayList<List<String>>();
+        getBean(MyAfterCommitEJBService.class).saveEntitiesAndNotify(published, "first", "second");
+
+        assertThat(published, contains(Arrays.asList("first", "second")));
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities().size(), is(2));
+    }
+
+    @Test
+    public void shouldNotPublishAfterRollback() {
+        List<List<String>> published = new ArrayList<List<String>>();
+        try {
+            getBean(MyAfterCommitEJBService.class).notifyAndFail(published, "first");
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertThat(published, is(empty()));
+        }
+    }
+
+    @Test
+    public void shouldNotPublishAfterRollbackOfReadOnlyTransaction() {
+        List<List<String>> published = new ArrayList<List<String>>();
+        getBean(MyAfterCommitEJBService.class).notifyAndRollBackReadOnly(published, "first");
+
+        assertThat(published, is(empty()));
+    }
+
+    @Test
+    public void shouldInjectRegistryIntoResourceInjectionPoint() {
+        MyAfterCommitEJBService service = getBean(MyAfterCommitEJBService.class);
+
+        assertThat(service.getTransactionKey(), is(notNullValue()));
+        assertThat(service.getTransactionStatus(), is(Status.STATUS_ACTIVE));
+    }
+
+    @Test
+    public void shouldReportNoTransactionOutsideOfBusinessMethods() {
+        TransactionSynchronizationRegistry registry = getBean(TransactionSynchronizationRegistry.class);
+
+        assertThat(registry.getTransactionKey(), is(nullValue()));
+        assertThat(registry.getTransactionStatus(), is(Status.STATUS_NO_TRANSACTION));
+    }
+
+    @Test
+    public void shouldNotifySessionSynchronization() {
+        MySessionSynchronizationEJBService service = getBean(MySessionSynchronizationEJBService.class);
+        service.doSomething();
+        try {
+            service.fail();
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        // The last call of afterBegin belongs to the transaction of getNotifications itself.
+        assertThat(service.getNotifications(), contains("afterBegin", "beforeCompletion", "afterCompletion:true",
+                "afterBegin", "afterCompletion:false", "afterBegin"));
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.ejb;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import info.novatec.beantest.api.BaseBeanTest;
+import info.novatec.beantest.transactions.TransactionTimeoutException;
+import info.novatec.beantest.transactions.TransactionWatchdog;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This test verifies that the watchdog reports and optionally fails long running transactions.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestTransactionWatchdog extends BaseBeanTest {
+
+    @Before
+    public void enableWatchdog() {
+        TransactionWatchdog.setThreshold(100, TimeUnit.MILLISECONDS);
+        TransactionWatchdog.clearReports();
+    }
+
+    @After
+    public void disableWatchdog() {
+        TransactionWatchdog.setThreshold(0, TimeUnit.MILLISECONDS);
+        TransactionWatchdog.setFailing(false);
+    }
+
+    @Test
+    public void shouldReportLongRunningTransaction() {
+        getBean(MyEJBService.class).persistEntityAndWait(500);
+
+        assertThat(TransactionWatchdog.getReports(), hasSize(1));
+        String report = TransactionWatchdog.getReports().get(0);
+        assertThat(report, containsString("MyEJBService.persistEntityAndWait"));
+        assertThat(report, containsString("insert into MyEntity"));
+        assertThat(report, containsString("java.lang.Thread.sleep"));
+    }
+
+    @Test
+    public void shouldNotReportShortTransaction() {
+        getBean(MyEJBService.class).callOtherServiceAndPersistAnEntity();
+
+        assertThat(TransactionWatchdog.getReports(), is(empty()));
+    }
+
+    @Test
+    public void shouldFailLongRunningTransaction() {
+        TransactionWatchdog.setFailing(true);
+        long start = System.nanoTime();
+        try {
+            getBean(MyEJBService.class).persistEntityAndWait(10000);
+            fail("Exception expected");
+        } catch (TransactionTimeoutException e) {
+            assertThat(e.getMessage(), containsString("MyEJBService.persistEntityAndWait"));
+        }
+
+        assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(5)));
+        assertThat(Thread.currentThread().isInterrupted(), is(false));
+        assertThat(getBean(MyOtherEJBService.class).getAllEntities(), is(empty()));
+    }
+
+}
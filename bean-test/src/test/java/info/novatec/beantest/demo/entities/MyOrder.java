@@ -0,0 +1,63 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.CascadeType;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+
+/**
+ * Demo entity with an association to {@link MyOrderLine} and a {@link MyOrderStatus}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Entity
+public class MyOrder implements Serializable {
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @OneToMany(cascade = CascadeType.ALL)
+    private List<MyOrderLine> lines = new ArrayList<MyOrderLine>();
+
+    @Enumerated(EnumType.STRING)
+    private MyOrderStatus status = MyOrderStatus.OPEN;
+
+    public long getId() {
+        return id;
+    }
+
+    public List<MyOrderLine> getLines() {
+        return lines;
+    }
+
+    public MyOrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(MyOrderStatus status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.entities;
+
+import java.io.Serializable;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * Demo entity which is only reachable through the association of {@link MyOrder}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Entity
+public class MyOrderLine implements Serializable {
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    private String article;
+
+    /**
+     * Constructor for JPA
+     */
+    protected MyOrderLine() {}
+
+    public MyOrderLine(String article) {
+        this.article = article;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getArticle() {
+        return article;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.exceptions;
+
+import javax.ejb.ApplicationException;
+
+/**
+ * Demo checked application exception that causes a rollback. Its subclasses inherit this behavior.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@ApplicationException(rollback = true)
+public class MyRollbackException extends Exception {
+
+    public MyRollbackException(String message) {
+        super(message);
+    }
+
+}
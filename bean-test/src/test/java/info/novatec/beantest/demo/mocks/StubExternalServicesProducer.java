@@ -0,0 +1,46 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.demo.mocks;
+
+import info.novatec.beantest.demo.ejb.MyExternalService;
+import javax.enterprise.inject.Alternative;
+import javax.enterprise.inject.Produces;
+
+/**
+ * Alternative producer for external services that returns a stub instead of a Mockito mock.
+ * <p>
+ * It is only active in tests that enable it via {@link info.novatec.beantest.api.BeanTestConfiguration}.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+@Alternative
+public class StubExternalServicesProducer {
+
+    public static final String STUB_RESPONSE = "Stubbed response";
+
+    @Produces
+    public static MyExternalService getExternalService() {
+        return new MyExternalService() {
+
+            @Override
+            public String doSomething() {
+                return STUB_RESPONSE;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.impact;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import info.novatec.beantest.impact.TestImpactAnalysis.Mode;
+import org.junit.Test;
+
+/**
+ * This test verifies that the mode of the test impact analysis is parsed leniently from its system property.
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public class TestTestImpactAnalysisMode {
+
+    @Test
+    public void shouldIgnoreCaseOfMode() {
+        assertThat(TestImpactAnalysis.parseMode("Select"), is(Mode.SELECT));
+        assertThat(TestImpactAnalysis.parseMode(" record "), is(Mode.RECORD));
+    }
+
+    @Test
+    public void shouldTurnAnalysisOffIfModeIsMissingOrUnknown() {
+        assertThat(TestImpactAnalysis.parseMode(null), is(Mode.OFF));
+        assertThat(TestImpactAnalysis.parseMode("selct"), is(Mode.OFF));
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.startup;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+/**
+ * Executes the main method of a class loaded by an isolated class loader, the way Surefire loads the test classpath
+ * when <code>useSystemClassLoader</code> is disabled.
+ * <p>
+ * Class data sharing only archives classes of the application class path if the class path contains no (non-empty)
+ * directories, and it only uses the archive if the class path of the JVM starts with the one used at dump time. Classes
+ * loaded by other class loaders are archived if they come from JAR files and are looked up by their content instead of
+ * their class path. Thus dumping the archive with an empty class path and loading everything with this launcher results
+ * in an archive which can be used by any JVM loading the same JAR files with an isolated class loader.
+ * <p>
+ * The launcher depends on JDK classes only, so it can be executed as source file:
+ * <code>java -cp &lt;empty directory&gt; IsolatedLauncher.java &lt;classpath&gt; &lt;main class&gt; [arguments]</code>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class IsolatedLauncher {
+
+    private IsolatedLauncher() {
+        // Empty on purpose.
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: IsolatedLauncher <classpath> <main class> [arguments]");
+        }
+        String[] entries = args[0].split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            urls[i] = new File(entries[i]).toURI().toURL();
+        }
+        ClassLoader classLoader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+        Thread.currentThread().setContextClassLoader(classLoader);
+        Method main = classLoader.loadClass(args[1]).getMethod("main", String[].class);
+        main.invoke(null, (Object) Arrays.copyOfRange(args, 2, args.length));
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.startup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Measures the startup time of JVMs executing the {@link TrainingRun}, with and without a class data sharing archive.
+ * <p>
+ * The benchmark must run on JDK 13 or later. The training runs load the class path of the benchmark with the
+ * {@link IsolatedLauncher}, as the Surefire forks of the <i>appcds</i> profile do. The archive is created by a first
+ * training run with <code>-XX:ArchiveClassesAtExit</code>, then the average wall clock time of the training run is
+ * measured with and without the archive.
+ * <p>
+ * Usage: <code>java -cp &lt;test classpath&gt; info.novatec.beantest.startup.StartupBenchmark [work directory] [runs]</code>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class StartupBenchmark {
+
+    private static final int DEFAULT_RUNS = 5;
+
+    /**
+     * Weld generates proxies by calling <code>ClassLoader.defineClass</code> via reflection.
+     */
+    private static final String ADD_OPENS = "--add-opens=java.base/java.lang=ALL-UNNAMED";
+
+    private StartupBenchmark() {
+        // Empty on purpose.
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File workDirectory = new File(args.length > 0 ? args[0] : "target/appcds-benchmark");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+        if (!workDirectory.isDirectory() && !workDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + workDirectory);
+        }
+        File launcher = createLauncherJar(workDirectory);
+        File archive = new File(workDirectory, "beantest-benchmark.jsa");
+        if (archive.exists() && !archive.delete()) {
+            throw new IOException("Cannot delete " + archive);
+        }
+
+        execute(launcher, ADD_OPENS, "-XX:ArchiveClassesAtExit=" + archive.getPath());
+        if (!archive.isFile()) {
+            throw new IllegalStateException("The archive was not created, JDK 13 or later is required");
+        }
+
+        long withoutArchive = measure(runs, launcher, ADD_OPENS);
+        long withArchive = measure(runs, launcher, ADD_OPENS, "-XX:SharedArchiveFile=" + archive.getPath());
+
+        System.out.println(String.format("Average startup without archive: %d ms", withoutArchive));
+        System.out.println(String.format("Average startup with archive:    %d ms", withArchive));
+        System.out.println(String.format("Reduction: %d %%", 100 - (withArchive * 100 / withoutArchive)));
+    }
+
+    /**
+     * Creates a JAR file containing only the {@link IsolatedLauncher}, which is the class path of the training runs.
+     */
+    private static File createLauncherJar(File workDirectory) throws IOException {
+        String name = IsolatedLauncher.class.getName().replace('.', '/') + ".class";
+        File jar = new File(workDirectory, "launcher.jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            output.putNextEntry(new JarEntry(name));
+            InputStream input = StartupBenchmark.class.getClassLoader().getResourceAsStream(name);
+            try {
+                copy(input, output);
+            } finally {
+                input.close();
+            }
+            output.closeEntry();
+        } finally {
+            output.close();
+        }
+        return jar;
+    }
+
+    /**
+     * Returns the average wall clock time in milliseconds of the given number of training runs. One additional warm-up
+     * run (for the file system cache) is not measured.
+     */
+    private static long measure(int runs, File launcher, String... jvmOptions) throws IOException, InterruptedException {
+        long total = 0;
+        for (int i = 0; i <= runs; i++) {
+            long start = System.nanoTime();
+            execute(launcher, jvmOptions);
+            if (i > 0) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / runs / 1000000;
+    }
+
+    private static void execute(File launcher, String... jvmOptions) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(Arrays.asList(jvmOptions));
+        command.add("-cp");
+        command.add(launcher.getPath());
+        command.add(IsolatedLauncher.class.getName());
+        command.add(System.getProperty("java.class.path"));
+        command.add(TrainingRun.class.getName());
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        // The output of a successful run would disturb the results, but it is the only hint why a run failed.
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        copy(process.getInputStream(), output);
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            System.out.write(output.toByteArray());
+            System.out.flush();
+            throw new IllegalStateException("Training run failed with exit code " + exitCode + ", see its output above");
+        }
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read = input.read(buffer);
+        while (read >= 0) {
+            output.write(buffer, 0, read);
+            read = input.read(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Bean Testing.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.novatec.beantest.startup;
+
+import info.novatec.beantest.api.BeanProviderHelper;
+import info.novatec.beantest.api.ContainerConfiguration;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+/**
+ * Boots the CDI container and creates an entity manager factory once, as a test would do.
+ * <p>
+ * It is used as training run for the class data sharing (AppCDS) archive: the classes loaded by this run (Weld,
+ * DeltaSpike, Hibernate, the JDBC driver, ...) are dumped into the archive, so that forked test JVMs can map them
+ * instead of loading them again. It is also the workload measured by the {@link StartupBenchmark}.
+ * <p>
+ * Usage: <code>java -XX:ArchiveClassesAtExit=beantest.jsa -cp &lt;test classpath&gt;
+ * info.novatec.beantest.startup.TrainingRun [persistence unit]</code>
+ *
+ * @author Carlos Barragan (carlos.barragan@novatec-gmbh.de)
+ */
+public final class TrainingRun {
+
+    private TrainingRun() {
+        // Empty on purpose.
+    }
+
+    public static void main(String[] args) {
+        String persistenceUnit = args.length > 0 ? args[0] : ContainerConfiguration.DEFAULT_PERSISTENCE_UNIT;
+        long start = System.nanoTime();
+        run(persistenceUnit);
+        System.out.println(String.format("Training run took %d ms", (System.nanoTime() - start) / 1000000));
+    }
+
+    /**
+     * Boots the container, creates an entity manager factory for the given persistence unit and executes an empty
+     * transaction.
+     *
+     * @param persistenceUnit
+     *            the persistence unit.
+     */
+    public static void run(String persistenceUnit) {
+        BeanProviderHelper beanProviderHelper = BeanProviderHelper.getInstance();
+        try {
+            beanProviderHelper.getBeanManager();
+            EntityManagerFactory emf = Persistence.createEntityManagerFactory(persistenceUnit);
+            try {
+                EntityManager em = emf.createEntityManager();
+                em.getTransaction().begin();
+                em.getTransaction().commit();
+                em.close();
+            } finally {
+                emf.close();
+            }
+        } finally {
+            beanProviderHelper.shutdown();
+        }
+    }
+
+}